@@ -1,14 +1,14 @@
 package me.tuplugin.privatechest;
 
+import me.tuplugin.privatechest.enums.ContainerType;
 import me.tuplugin.privatechest.util.SchedulerUtils;
+import me.tuplugin.privatechest.util.BlockKey;
 import org.bukkit.Bukkit;
-import org.bukkit.Location;
 import org.bukkit.Material;
+import org.bukkit.World;
 import org.bukkit.block.Block;
 import org.bukkit.scheduler.BukkitTask;
 
-import java.util.Iterator;
-import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -132,41 +132,84 @@ public class AutoCleanupManager {
 
     /**
      * Cleans up containers that no longer exist in the world.
+     * Walks the chunk-bucketed index so unloaded chunks are skipped with a single check
+     * instead of one check per protection.
      * This method respects the cleanup limits to prevent server lag.
+     *
+     * Only loaded worlds are checked. Before 2.4, protections whose world was not loaded were
+     * removed as orphaned, which also wiped worlds that were just unloaded for a while (e.g. by a
+     * world manager plugin); they are now kept and checked once their world is loaded again.
      * 
      * @param cleanedCounter Counter to track cleaned containers
      * @param cleanupType The type of cleanup being performed
      */
     private void cleanupOrphanedContainers(AtomicInteger cleanedCounter, CleanupType cleanupType) {
-        Map<Location, String> owners = chestLocker.getChestOwners();
-        Map<Location, String> passwords = chestLocker.getChestPasswords();
-
         int processed = 0;
         int maxToProcess = cleanupType == CleanupType.STARTUP ? Integer.MAX_VALUE : MAX_CLEANUP_PER_CYCLE;
 
-        Iterator<Map.Entry<Location, String>> it = owners.entrySet().iterator();
-        while (it.hasNext() && processed < maxToProcess) {
-            Map.Entry<Location, String> entry = it.next();
-            Location loc = entry.getKey();
-            processed++;
-
-            if (isOrphanedContainer(loc)) {
-                // Remove from both maps
-                passwords.remove(loc);
-                it.remove();
-                cleanedCounter.incrementAndGet();
+        for (String worldName : chestLocker.getIndexedWorlds()) {
+            World world = Bukkit.getWorld(worldName);
+            if (world == null) {
+                // World is not loaded - its containers might be valid, so leave them alone
+                // (earlier versions removed them; see the method comment)
+                continue;
+            }
 
-                plugin.getLogger().fine(String.format(
-                        "[AutoCleanup] Removed orphaned container at %s:%d,%d,%d",
-                        loc.getWorld() != null ? loc.getWorld().getName() : "null",
-                        loc.getBlockX(),
-                        loc.getBlockY(),
-                        loc.getBlockZ()
-                ));
+            for (long chunkKey : chestLocker.getProtectedChunks(worldName)) {
+                int chunkX = BlockKey.chunkX(chunkKey);
+                int chunkZ = BlockKey.chunkZ(chunkKey);
+
+                // Check if chunk is loaded (avoid loading chunks during cleanup)
+                if (!world.isChunkLoaded(chunkX, chunkZ)) {
+                    continue;
+                }
+
+                for (ProtectionRecord record : chestLocker.getProtectionsInChunk(world, chunkX, chunkZ)) {
+                    if (processed >= maxToProcess) {
+                        return;
+                    }
+                    processed++;
+
+                    Block block = world.getBlockAt(record.getX(), record.getY(), record.getZ());
+                    if (!isLockableContainer(block) || isPartnerMissing(world, record)) {
+                        chestLocker.removeProtection(record);
+                        cleanedCounter.incrementAndGet();
+
+                        plugin.getLogger().fine(String.format(
+                                "[AutoCleanup] Removed orphaned container at %s:%d,%d,%d",
+                                worldName,
+                                block.getX(),
+                                block.getY(),
+                                block.getZ()
+                        ));
+                    } else if (record.getType() == null) {
+                        // Legacy record stored without a type - fill it in while we have the block
+                        chestLocker.resolveType(record, ContainerType.fromMaterial(block.getType()));
+                    }
+                }
             }
         }
     }
 
+    /**
+     * Checks if the other half of a grouped double chest is gone.
+     * A whole group is dropped in that case, just like breaking one half does.
+     * Partners in unloaded chunks are left alone.
+     */
+    private boolean isPartnerMissing(World world, ProtectionRecord record) {
+        if (!record.hasPartner()) {
+            return false;
+        }
+
+        long partnerKey = record.getPartnerKey();
+        int x = BlockKey.x(partnerKey);
+        int z = BlockKey.z(partnerKey);
+        if (!world.isChunkLoaded(x >> 4, z >> 4)) {
+            return false;
+        }
+        return !isLockableContainer(world.getBlockAt(x, BlockKey.y(partnerKey), z));
+    }
+
     /**
      * Cleans up trust relationships for players who no longer own any containers.
      * This helps prevent the trust map from growing indefinitely.
@@ -174,60 +217,19 @@ public class AutoCleanupManager {
      * @param cleanedCounter Counter to track cleaned relationships
      */
     private void cleanupOrphanedTrustRelations(AtomicInteger cleanedCounter) {
-        Map<String, String> owners = chestLocker.getChestOwners().entrySet().stream()
-                .collect(java.util.stream.Collectors.toMap(
-                        entry -> entry.getValue(), // UUID as key
-                        entry -> entry.getValue(), // UUID as value
-                        (existing, replacement) -> existing // Keep existing on conflict
-                ));
-
-        // Get all trust relations
-        Map<String, java.util.Set<String>> allTrustRelations = trustManager.getAllTrustRelations();
-        Iterator<Map.Entry<String, java.util.Set<String>>> it = allTrustRelations.entrySet().iterator();
-
-        while (it.hasNext()) {
-            Map.Entry<String, java.util.Set<String>> entry = it.next();
-            String ownerUUID = entry.getKey();
-
+        for (int ownerId : trustManager.getTrustingOwnerIds()) {
             // If this owner no longer has any containers, remove their trust relations
-            if (!owners.containsKey(ownerUUID)) {
-                it.remove();
-                cleanedCounter.addAndGet(entry.getValue().size());
+            if (!chestLocker.hasProtections(ownerId)) {
+                cleanedCounter.addAndGet(trustManager.removeAllTrustFrom(ownerId));
 
                 plugin.getLogger().fine(String.format(
                         "[AutoCleanup] Removed trust relations for player UUID %s (no longer owns containers)",
-                        ownerUUID
+                        OwnerRegistry.getInstance().getUUIDString(ownerId)
                 ));
             }
         }
     }
 
-    /**
-     * Checks if a container location represents orphaned data.
-     * A container is considered orphaned if:
-     * - The world no longer exists
-     * - The block is no longer a lockable container type
-     * 
-     * @param loc The location to check
-     * @return true if the container is orphaned
-     */
-    private boolean isOrphanedContainer(Location loc) {
-        // Check if world exists
-        if (loc.getWorld() == null) {
-            return true;
-        }
-
-        // Check if chunk is loaded (avoid loading chunks during cleanup)
-        if (!loc.getWorld().isChunkLoaded(loc.getBlockX() >> 4, loc.getBlockZ() >> 4)) {
-            // Don't consider unloaded chunks as orphaned - they might be valid
-            return false;
-        }
-
-        // Check if block is still a lockable container
-        Block block = loc.getBlock();
-        return !isLockableContainer(block);
-    }
-
     /**
      * Checks if a block is a lockable container type.
      * This mirrors the logic from HopperProtectionListener for consistency.
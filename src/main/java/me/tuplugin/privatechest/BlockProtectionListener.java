@@ -1,8 +1,9 @@
 package me.tuplugin.privatechest;
 
 import java.util.Iterator;
-import java.util.Set;
+import java.util.List;
 
+import org.bukkit.World;
 import org.bukkit.block.Block;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
@@ -28,45 +29,39 @@ public class BlockProtectionListener implements Listener {
         Block blockBeingBroken = event.getBlock();
         Player player = event.getPlayer();
 
+        if (!chestLocker.mayBeProtected(blockBeingBroken)) return;
         if (!ContainerUtils.isLockableContainer(blockBeingBroken.getType())) return;
 
-        // Get all blocks of the container (handles double chests)
-        Set<Block> containerBlocks = ContainerUtils.getContainerBlocks(blockBeingBroken);
-        Block lockedBlock = null;
-
-        // Find if any part of the container is locked
-        for (Block part : containerBlocks) {
-            if (chestLocker.isChestLocked(part)) {
-                lockedBlock = part;
-                break;
-            }
-        }
+        // Find if any part of the container is locked (handles double chests)
+        ProtectionRecord protection = chestLocker.getContainerProtection(blockBeingBroken);
 
         // If no part is locked, do nothing (allow break)
-        if (lockedBlock == null) {
+        if (protection == null) {
+            // Unless the chunk's protections are still being read; breaking would skip removing them
+            if (chestLocker.isProtectionPending(blockBeingBroken)) {
+                event.setCancelled(true);
+                player.sendMessage(messages.get("protection_loading"));
+            }
             return;
         }
 
         // A part is locked, check ownership
-        if (!chestLocker.isOwner(lockedBlock, player) && !player.hasPermission("privatechest.admin")) {
+        boolean isOwner = protection.isOwnedBy(player.getUniqueId());
+        if (!isOwner && !player.hasPermission("privatechest.admin")) {
             // Not the owner and not admin, deny break
             event.setCancelled(true);
             player.sendMessage(messages.get("not_your_chest"));
         } else {
             // It's the owner or an admin, allow break BUT remove protection from ALL parts.
             // Send message only to owner if they are the one breaking it
-            if (chestLocker.isOwner(lockedBlock, player)) {
+            if (isOwner) {
                 player.sendMessage(messages.get("chest_break_warning"));
             } else {
                 player.sendMessage(messages.get("admin_chest_break_notice")); // Consider adding this message
             }
 
-            // Remove protection from ALL blocks in the set
-            for (Block part : containerBlocks) {
-                if (chestLocker.isChestLocked(part)) {
-                    chestLocker.removeProtection(part);
-                }
-            }
+            // Remove protection from ALL blocks of the container
+            chestLocker.removeContainerProtection(blockBeingBroken);
             plugin.getDataManager().saveData(); // Save changes
         }
     }
@@ -74,36 +69,49 @@ public class BlockProtectionListener implements Listener {
     // --- Explosion Handlers: protect both halves of double chests ---
     @EventHandler
     public void onEntityExplode(EntityExplodeEvent event) {
-        Iterator<Block> it = event.blockList().iterator();
-        while (it.hasNext()) {
-            Block block = it.next();
-            if (ContainerUtils.isLockableContainer(block.getType()) && isAnyPartLocked(block)) {
-                it.remove();
-            }
-        }
+        protectLockedBlocks(event.blockList());
     }
 
     @EventHandler
     public void onBlockExplode(BlockExplodeEvent event) {
-        Iterator<Block> it = event.blockList().iterator();
-        while (it.hasNext()) {
-            Block block = it.next();
-            if (ContainerUtils.isLockableContainer(block.getType()) && isAnyPartLocked(block)) {
-                it.remove();
-            }
-        }
+        protectLockedBlocks(event.blockList());
     }
 
     /**
-     * Checks if any part of a container (including the other half of a double chest) is locked.
+     * Removes locked containers from an explosion's block list.
+     * Skips the per-block checks entirely when the index has no protection inside the blast area.
      */
-    private boolean isAnyPartLocked(Block block) {
-        Set<Block> parts = ContainerUtils.getContainerBlocks(block);
-        for (Block part : parts) {
-            if (chestLocker.isChestLocked(part)) {
-                return true;
+    private void protectLockedBlocks(List<Block> blocks) {
+        if (blocks.isEmpty()) {
+            return;
+        }
+
+        World world = blocks.get(0).getWorld();
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, minZ = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE, maxZ = Integer.MIN_VALUE;
+        for (Block block : blocks) {
+            minX = Math.min(minX, block.getX());
+            minY = Math.min(minY, block.getY());
+            minZ = Math.min(minZ, block.getZ());
+            maxX = Math.max(maxX, block.getX());
+            maxY = Math.max(maxY, block.getY());
+            maxZ = Math.max(maxZ, block.getZ());
+        }
+
+        // Expand by one block so the other half of a double chest at the edge is still considered
+        if (chestLocker.getProtectionsInRange(world, minX - 1, minY, minZ - 1, maxX + 1, maxY, maxZ + 1).isEmpty()
+                && !chestLocker.hasPendingChunks(world)) {
+            return;
+        }
+
+        Iterator<Block> it = blocks.iterator();
+        while (it.hasNext()) {
+            Block block = it.next();
+            // Covers the other half of a double chest as well, and containers whose protections are still being read
+            if (chestLocker.mayBeProtected(block) && ContainerUtils.isLockableContainer(block.getType())
+                    && (chestLocker.getContainerProtection(block) != null || chestLocker.isProtectionPending(block))) {
+                it.remove();
             }
         }
-        return false;
     }
 }
\ No newline at end of file
@@ -1,7 +1,5 @@
 package me.tuplugin.privatechest;
 
-import java.util.Set;
-
 import org.bukkit.block.Block;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.entity.Player;
@@ -35,33 +33,34 @@ public class ChestListener implements Listener {
         Block clickedBlock = event.getClickedBlock();
         Player player = event.getPlayer();
 
+        // Nothing nearby is protected - skip the container checks entirely
+        if (!chestLocker.mayBeProtected(clickedBlock)) {
+            return;
+        }
+
         // Ensure it's a lockable container
         if (!ContainerUtils.isLockableContainer(clickedBlock.getType())) {
             return;
         }
 
-        // Get all blocks of the container (handles double chests)
-        Set<Block> containerBlocks = ContainerUtils.getContainerBlocks(clickedBlock);
-        Block lockedBlock = null;
-
-        // Check if ANY part of the container is locked
-        for (Block part : containerBlocks) {
-            if (chestLocker.isChestLocked(part)) {
-                lockedBlock = part; // We found a locked part, use this for checks
-                break;
-            }
-        }
+        // Check if ANY part of the container is locked (handles double chests)
+        ProtectionRecord protection = chestLocker.getContainerProtection(clickedBlock);
 
         // If no part is locked, allow access (do nothing)
-        if (lockedBlock == null) {
+        if (protection == null) {
+            // Unless the chunk's protections are still being read: its owner is not known yet
+            if (chestLocker.isProtectionPending(clickedBlock) && !player.hasPermission("privatechest.admin")) {
+                event.setCancelled(true);
+                player.sendMessage(messages.get("protection_loading"));
+            }
             return;
         }
 
         // If we reach here, at least one part is locked.
-        // Now we check ownership, trust, or admin bypass using the 'lockedBlock'
+        // Now we check ownership, trust, or admin bypass using its protection record
 
         // Allow if player is the owner
-        if (chestLocker.isOwner(lockedBlock, player)) {
+        if (protection.isOwnedBy(player.getUniqueId())) {
             if (config.getBoolean("notify-owner-on-open", true)) {
                 player.sendMessage(messages.get("owner_access_notice"));
             }
@@ -77,8 +76,7 @@ public class ChestListener implements Listener {
         }
 
         // Check if player is trusted by the owner
-        String ownerUUID = chestLocker.getOwnerUUID(lockedBlock);
-        if (ownerUUID != null && trustManager.isTrusted(ownerUUID, player.getUniqueId().toString())) {
+        if (trustManager.isTrusted(protection.getOwnerId(), player.getUniqueId())) {
             if (config.getBoolean("notify-trusted-on-open", true)) {
                 player.sendMessage(messages.get("trusted_access_notice"));
             }
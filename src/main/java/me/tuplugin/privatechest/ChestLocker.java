@@ -1,7 +1,19 @@
 package me.tuplugin.privatechest;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
@@ -9,11 +21,40 @@ import org.bukkit.World;
 import org.bukkit.block.Block;
 import org.bukkit.entity.Player;
 
+import me.tuplugin.privatechest.enums.ContainerType;
+import me.tuplugin.privatechest.util.BlockKey;
+import me.tuplugin.privatechest.util.SchedulerUtils;
+
 public class ChestLocker {
 
-    // Thread-safe maps for concurrent access from listeners, commands, and async cleanup
-    private final Map<Location, String> chestOwners = new ConcurrentHashMap<>();
-    private final Map<Location, String> chestPasswords = new ConcurrentHashMap<>();
+    // Single source of truth: world name -> packed block key -> protection record.
+    // Thread-safe for concurrent access from listeners, commands, and async cleanup.
+    private final Map<String, WorldProtectionIndex> worldIndexes = new ConcurrentHashMap<>();
+
+    // Reverse index: owner id -> that owner's protections and per-type counters, so limit checks
+    // never scan records or read blocks. Kept in sync by addProtection/removeProtection/clearProtections.
+    private final Map<Integer, OwnerProtections> protectionsByOwner = new ConcurrentHashMap<>();
+    private final Object mutationLock = new Object();
+
+    // Worlds whose shard is live in worldIndexes. Protections of other worlds stay in storage and only
+    // contribute their per-owner counters (parkedCounts), so limits still see them.
+    private final Set<String> boundWorlds = ConcurrentHashMap.newKeySet();
+    // World name -> owner id -> block counters (per type by ordinal, total in the last slot). Guarded by mutationLock.
+    private final Map<String, Map<Integer, int[]>> parkedCounts = new HashMap<>();
+
+    // Lazy loading: only the protections of loaded chunks are cached, and the owner counters come from
+    // a storage aggregate instead of the records, so caching and evicting chunks never changes them.
+    private volatile boolean lazyLoading;
+    // World name -> packed keys of the chunks whose protections are cached (lazy loading only)
+    private final Map<String, Set<Long>> cachedChunks = new ConcurrentHashMap<>();
+    // World name -> packed keys of loaded chunks whose protections are still being read, or failed to be
+    // and wait for a retry. Their containers count as protected by an unknown owner until cached.
+    private final Map<String, Set<Long>> pendingChunks = new ConcurrentHashMap<>();
+
+    // Change journal since the last save, keyed by world and primary block so the latest change wins.
+    // Guarded by mutationLock.
+    private final Map<String, ProtectionRecord> changedRecords = new LinkedHashMap<>();
+    private final Map<String, ProtectionRecord> removedRecords = new LinkedHashMap<>();
 
     private static ChestLocker instance;
     private final PrivateChest plugin;
@@ -28,29 +69,46 @@ public class ChestLocker {
     }
 
     /**
-     * Locks the given chest block with a password and owner.
+     * Locks the given container with a password and owner.
+     * Both halves of a double chest are locked together as one record.
      */
     public boolean lockChest(Block block, Player player, String password) {
         if (block == null || player == null || password == null || password.isEmpty()) {
             return false;
         }
-        
-        Location loc = block.getLocation();
 
-        if (chestOwners.containsKey(loc)) {
+        if (getContainerProtection(block) != null) {
             return false; // Already locked
         }
+        if (isProtectionPending(block)) {
+            return false; // It may be locked in storage; not known until its chunk is read
+        }
 
         // Hash the password before storing
         String hashedPassword = PasswordManager.hashPassword(password);
         if (hashedPassword == null) {
-            plugin.getLogger().warning("Failed to hash password for chest at " + serializeLocation(loc) + ". Lock operation aborted.");
+            plugin.getLogger().warning("Failed to hash password for chest at " + serializeLocation(block.getLocation()) + ". Lock operation aborted.");
             return false;
         }
 
-        chestOwners.put(loc, player.getUniqueId().toString());
-        chestPasswords.put(loc, hashedPassword);
-        return true;
+        Block otherHalf = ContainerUtils.getOtherChestHalf(block);
+        ProtectionRecord record = new ProtectionRecord(
+                block.getWorld().getName(),
+                BlockKey.pack(block.getX(), block.getY(), block.getZ()),
+                otherHalf != null ? BlockKey.pack(otherHalf.getX(), otherHalf.getY(), otherHalf.getZ()) : ProtectionRecord.NO_PARTNER,
+                OwnerRegistry.getInstance().getOrCreateId(player.getUniqueId()),
+                hashedPassword,
+                null,
+                ContainerType.fromMaterial(block.getType()),
+                System.currentTimeMillis());
+
+        synchronized (mutationLock) {
+            if (!addProtection(record)) {
+                return false;
+            }
+            journalChange(record);
+            return true;
+        }
     }
 
     /**
@@ -58,13 +116,12 @@ public class ChestLocker {
      * Automatically migrates plain text passwords to hashed format.
      */
     public boolean unlockChest(Block block, Player player, String password) {
-        Location loc = block.getLocation();
-
-        if (!chestOwners.containsKey(loc)) {
+        ProtectionRecord record = getContainerProtection(block);
+        if (record == null) {
             return false;
         }
 
-        String storedPassword = chestPasswords.get(loc);
+        String storedPassword = record.getPasswordHash();
         if (storedPassword == null) {
             return false;
         }
@@ -76,11 +133,12 @@ public class ChestLocker {
             if (isCorrect) {
                 String hashedPassword = PasswordManager.migratePlainPassword(password);
                 if (hashedPassword != null) {
-                    chestPasswords.put(loc, hashedPassword);
-                    plugin.getLogger().info("Migrated plain text password to hashed format for chest at " + serializeLocation(loc));
+                    record.setPasswordHash(hashedPassword);
+                    markChanged(record);
+                    plugin.getLogger().info("Migrated plain text password to hashed format for chest at " + record);
                     plugin.getDataManager().saveData();
                 } else {
-                    plugin.getLogger().warning("Failed to migrate password for chest at " + serializeLocation(loc));
+                    plugin.getLogger().warning("Failed to migrate password for chest at " + record);
                 }
             }
 
@@ -90,43 +148,1037 @@ public class ChestLocker {
         }
     }
 
+    /**
+     * Gets the protection record of a block.
+     *
+     * @param block The block
+     * @return The record, or null if the block is not protected
+     */
+    public ProtectionRecord getProtection(Block block) {
+        return getProtection(block.getWorld(), block.getX(), block.getY(), block.getZ());
+    }
+
+    /**
+     * Gets the protection record of the container a block belongs to.
+     * Probes the block itself first (which also covers both halves of a grouped double chest)
+     * and only looks at the other chest half when that misses, e.g. for a chest that was
+     * extended into a double chest after it was locked, or legacy per-half data.
+     *
+     * @param block Any block of the container
+     * @return The record, or null if no part of the container is protected
+     * @since 2.4
+     */
+    public ProtectionRecord getContainerProtection(Block block) {
+        ProtectionRecord record = getProtection(block);
+        if (record != null) {
+            return record;
+        }
+
+        Block otherHalf = ContainerUtils.getOtherChestHalf(block);
+        return otherHalf != null ? getProtection(otherHalf) : null;
+    }
+
+    /**
+     * Removes the protection of the container a block belongs to.
+     * Also removes a separate record on the other chest half, which legacy data stored per half.
+     *
+     * @param block Any block of the container
+     * @return The removed record, or null if no part of the container was protected
+     * @since 2.4
+     */
+    public ProtectionRecord removeContainerProtection(Block block) {
+        ProtectionRecord removed = removeProtection(block.getWorld().getName(), BlockKey.pack(block.getX(), block.getY(), block.getZ()));
+
+        Block otherHalf = ContainerUtils.getOtherChestHalf(block);
+        if (otherHalf != null) {
+            ProtectionRecord other = removeProtection(otherHalf.getWorld().getName(),
+                    BlockKey.pack(otherHalf.getX(), otherHalf.getY(), otherHalf.getZ()));
+            if (removed == null) {
+                removed = other;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Gets the protection record of the block at the given coordinates.
+     * Does not allocate a Location, so it is safe to call from high-frequency events.
+     */
+    public ProtectionRecord getProtection(World world, int x, int y, int z) {
+        if (world == null) {
+            return null;
+        }
+        WorldProtectionIndex index = worldIndexes.get(world.getName());
+        return index != null ? index.get(BlockKey.pack(x, y, z)) : null;
+    }
+
+    /**
+     * Gets the protection record at a location.
+     */
+    public ProtectionRecord getProtection(Location loc) {
+        if (loc == null) {
+            return null;
+        }
+        return getProtection(loc.getWorld(), loc.getBlockX(), loc.getBlockY(), loc.getBlockZ());
+    }
+
+    /**
+     * Cheap pre-check for high-frequency events: answers from the per-world chunk
+     * presence filter without touching block state or taking the index lock.
+     * A false answer means neither the block nor a neighbouring container half can be
+     * protected; a true answer only means the caller should do the real lookup.
+     * Chunks whose protections are not read yet always answer true (see {@link #isProtectionPending}).
+     *
+     * @param world The world
+     * @param x Block X coordinate
+     * @param z Block Z coordinate
+     * @return false if the block is definitely unprotected
+     * @since 2.4
+     */
+    public boolean mayBeProtected(World world, int x, int z) {
+        if (world == null) {
+            return false;
+        }
+        if (isProtectionPending(world, x, z)) {
+            return true;
+        }
+        WorldProtectionIndex index = worldIndexes.get(world.getName());
+        if (index == null) {
+            return false;
+        }
+
+        int chunkX = x >> 4;
+        int chunkZ = z >> 4;
+        if (index.mayContainProtections(chunkX, chunkZ)) {
+            return true;
+        }
+
+        // The other half of a double chest can sit across a chunk border
+        int localX = x & 15;
+        int localZ = z & 15;
+        return (localX == 0 && index.mayContainProtections(chunkX - 1, chunkZ))
+                || (localX == 15 && index.mayContainProtections(chunkX + 1, chunkZ))
+                || (localZ == 0 && index.mayContainProtections(chunkX, chunkZ - 1))
+                || (localZ == 15 && index.mayContainProtections(chunkX, chunkZ + 1));
+    }
+
+    /**
+     * Checks if the protections of a block's chunk are not known yet (lazy loading only): the chunk
+     * is loaded but its protections are still being read from storage, or failed to be and wait
+     * for a retry. Callers treat such a container as locked by someone else until they are known.
+     * Like {@link #mayBeProtected(World, int, int)}, a neighbouring chunk counts at chunk borders.
+     *
+     * @param world The world
+     * @param x Block X coordinate
+     * @param z Block Z coordinate
+     * @return true if the block may be protected by a record not read yet
+     * @since 2.4
+     */
+    public boolean isProtectionPending(World world, int x, int z) {
+        Set<Long> pending = world != null && !pendingChunks.isEmpty() ? pendingChunks.get(world.getName()) : null;
+        if (pending == null || pending.isEmpty()) {
+            return false;
+        }
+
+        int chunkX = x >> 4;
+        int chunkZ = z >> 4;
+        if (pending.contains(BlockKey.chunk(chunkX, chunkZ))) {
+            return true;
+        }
+
+        int localX = x & 15;
+        int localZ = z & 15;
+        return (localX == 0 && pending.contains(BlockKey.chunk(chunkX - 1, chunkZ)))
+                || (localX == 15 && pending.contains(BlockKey.chunk(chunkX + 1, chunkZ)))
+                || (localZ == 0 && pending.contains(BlockKey.chunk(chunkX, chunkZ - 1)))
+                || (localZ == 15 && pending.contains(BlockKey.chunk(chunkX, chunkZ + 1)));
+    }
+
+    /**
+     * Checks if the protections of a block's chunk are not known yet, see {@link #isProtectionPending(World, int, int)}.
+     *
+     * @since 2.4
+     */
+    public boolean isProtectionPending(Block block) {
+        return isProtectionPending(block.getWorld(), block.getX(), block.getZ());
+    }
+
+    /**
+     * Checks if any loaded chunk of a world waits for its protections (lazy loading only).
+     *
+     * @since 2.4
+     */
+    public boolean hasPendingChunks(World world) {
+        Set<Long> pending = world != null ? pendingChunks.get(world.getName()) : null;
+        return pending != null && !pending.isEmpty();
+    }
+
+    /**
+     * Cheap pre-check for a block, see {@link #mayBeProtected(World, int, int)}.
+     *
+     * @since 2.4
+     */
+    public boolean mayBeProtected(Block block) {
+        return mayBeProtected(block.getWorld(), block.getX(), block.getZ());
+    }
+
+    /**
+     * Cheap pre-check for a location, see {@link #mayBeProtected(World, int, int)}.
+     *
+     * @since 2.4
+     */
+    public boolean mayBeProtected(Location loc) {
+        return loc != null && mayBeProtected(loc.getWorld(), loc.getBlockX(), loc.getBlockZ());
+    }
+
     /**
      * Checks if a chest is locked.
      */
     public boolean isChestLocked(Block block) {
-        return chestOwners.containsKey(block.getLocation());
+        return isChestLocked(block.getWorld(), block.getX(), block.getY(), block.getZ());
+    }
+
+    /**
+     * Checks if the block at the given coordinates is locked.
+     * Does not allocate a Location, so it is safe to call from high-frequency events.
+     */
+    public boolean isChestLocked(World world, int x, int y, int z) {
+        if (world == null) {
+            return false;
+        }
+        WorldProtectionIndex index = worldIndexes.get(world.getName());
+        return index != null && index.contains(BlockKey.pack(x, y, z));
     }
 
     /**
      * Checks if the player is the owner of the chest.
      */
     public boolean isOwner(Block block, Player player) {
-        String ownerUUID = chestOwners.get(block.getLocation());
-        return ownerUUID != null && ownerUUID.equals(player.getUniqueId().toString());
+        ProtectionRecord record = getProtection(block);
+        return record != null && record.isOwnedBy(player.getUniqueId());
     }
 
     /**
      * Gets the owner UUID of a chest.
      */
     public String getOwnerUUID(Block block) {
-        return chestOwners.get(block.getLocation());
+        return getOwnerUUID(block.getWorld(), block.getX(), block.getY(), block.getZ());
+    }
+
+    /**
+     * Gets the owner UUID of the block at the given coordinates without allocating a Location.
+     */
+    public String getOwnerUUID(World world, int x, int y, int z) {
+        ProtectionRecord record = getProtection(world, x, y, z);
+        return record != null ? record.getOwnerUUID() : null;
     }
 
     /**
      * Removes protection from a chest.
+     * The custom name goes with it, since it lives on the same record.
+     * For a grouped double chest, either half removes the whole group.
      */
     public void removeProtection(Block block) {
-        Location loc = block.getLocation();
-        chestOwners.remove(loc);
-        chestPasswords.remove(loc);
+        removeProtection(block.getWorld().getName(), BlockKey.pack(block.getX(), block.getY(), block.getZ()));
+    }
+
+    /**
+     * Removes protection from the chest at the given location.
+     */
+    public void removeProtection(Location loc) {
+        if (loc.getWorld() != null) {
+            removeProtection(loc.getWorld().getName(), BlockKey.pack(loc.getBlockX(), loc.getBlockY(), loc.getBlockZ()));
+        }
+    }
+
+    /**
+     * Removes the given protection record.
+     */
+    public void removeProtection(ProtectionRecord record) {
+        removeProtection(record.getWorld(), record.getBlockKey());
+    }
+
+    private ProtectionRecord removeProtection(String worldName, long blockKey) {
+        WorldProtectionIndex index = worldIndexes.get(worldName);
+        if (index == null) {
+            return null;
+        }
+
+        synchronized (mutationLock) {
+            ProtectionRecord removed = index.remove(blockKey);
+            if (removed != null) {
+                OwnerProtections owned = protectionsByOwner.get(removed.getOwnerId());
+                if (owned != null && owned.remove(removed) && owned.isEmpty()) {
+                    protectionsByOwner.remove(removed.getOwnerId());
+                }
+
+                String key = journalKey(removed);
+                changedRecords.remove(key);
+                removedRecords.put(key, removed);
+            }
+            return removed;
+        }
+    }
+
+    /**
+     * Records that the password, name or type of a protection changed, so the next save writes it.
+     * Ignored if the protection has been removed in the meantime.
+     *
+     * @param record The changed record
+     * @since 2.4
+     */
+    public void markChanged(ProtectionRecord record) {
+        synchronized (mutationLock) {
+            WorldProtectionIndex index = worldIndexes.get(record.getWorld());
+            if (index != null && index.get(record.getBlockKey()) == record) {
+                journalChange(record);
+            }
+        }
+    }
+
+    private void journalChange(ProtectionRecord record) {
+        String key = journalKey(record);
+        removedRecords.remove(key);
+        changedRecords.put(key, record);
+    }
+
+    private static String journalKey(ProtectionRecord record) {
+        return record.getWorld() + ":" + record.getBlockKey();
     }
 
+    /**
+     * Moves the journaled changes into the given collections and clears the journal.
+     * Called by DataManager when saving.
+     */
+    void drainChanges(Collection<ProtectionRecord> changed, Collection<ProtectionRecord> removed) {
+        synchronized (mutationLock) {
+            changed.addAll(changedRecords.values());
+            removed.addAll(removedRecords.values());
+            changedRecords.clear();
+            removedRecords.clear();
+        }
+    }
+
+    /**
+     * Puts back changes whose save failed, unless a newer change to the same protection was journaled since.
+     */
+    void requeueChanges(Collection<ProtectionRecord> changed, Collection<ProtectionRecord> removed) {
+        synchronized (mutationLock) {
+            for (ProtectionRecord record : changed) {
+                String key = journalKey(record);
+                if (!removedRecords.containsKey(key)) {
+                    changedRecords.putIfAbsent(key, record);
+                }
+            }
+            for (ProtectionRecord record : removed) {
+                String key = journalKey(record);
+                if (!changedRecords.containsKey(key)) {
+                    removedRecords.putIfAbsent(key, record);
+                }
+            }
+        }
+    }
+
+    /**
+     * Applies a protection change another server saved to shared storage, without journaling it.
+     * Skipped if this server has an unsaved change to the same protection (saving it overwrites the
+     * remote one), for unbound worlds (their records are read from storage when they bind) and in
+     * lazy mode (chunks read the stored state when they load).
+     * Local records that overlap the remote one are replaced; their own changes are reported too.
+     *
+     * @param worldName The world name
+     * @param blockKey The primary block key of the changed protection
+     * @param current The stored record, or null if the protection was removed
+     * @since 2.4
+     */
+    void applyRemoteChange(String worldName, long blockKey, ProtectionRecord current) {
+        synchronized (mutationLock) {
+            if (lazyLoading || !boundWorlds.contains(worldName) || isJournaled(worldName, blockKey)) {
+                return;
+            }
+
+            WorldProtectionIndex index = indexFor(worldName);
+            ProtectionRecord existing = index.get(blockKey);
+            if (existing != null && existing.getBlockKey() == blockKey) {
+                dropRecord(index, existing);
+            }
+            if (current == null) {
+                return;
+            }
+
+            for (long key : current.hasPartner() ? new long[]{blockKey, current.getPartnerKey()} : new long[]{blockKey}) {
+                ProtectionRecord overlapping = index.get(key);
+                if (overlapping != null) {
+                    if (isJournaled(worldName, overlapping.getBlockKey())) {
+                        return;
+                    }
+                    dropRecord(index, overlapping);
+                }
+            }
+            addProtection(current);
+        }
+    }
+
+    private boolean isJournaled(String worldName, long blockKey) {
+        String key = worldName + ":" + blockKey;
+        return changedRecords.containsKey(key) || removedRecords.containsKey(key);
+    }
+
+    private void dropRecord(WorldProtectionIndex index, ProtectionRecord record) {
+        index.remove(record.getBlockKey());
+        OwnerProtections owned = protectionsByOwner.get(record.getOwnerId());
+        if (owned != null && owned.remove(record) && owned.isEmpty()) {
+            protectionsByOwner.remove(record.getOwnerId());
+        }
+    }
+
+    /**
+     * Adds a protection record (used by lockChest and by the storage backends while loading).
+     * Loading does not go through the change journal; see {@link #markChanged(ProtectionRecord)}.
+     *
+     * @param record The record to add
+     * @return true if added, false if the block was already protected
+     */
+    public boolean addProtection(ProtectionRecord record) {
+        synchronized (mutationLock) {
+            if (!indexFor(record.getWorld()).add(record)) {
+                return false;
+            }
+            protectionsByOwner.computeIfAbsent(record.getOwnerId(), k -> new OwnerProtections()).add(record);
+            return true;
+        }
+    }
+
+    /**
+     * Removes every protection from memory and unbinds every world. Used before reloading from storage.
+     * Unsaved journaled changes are discarded, since memory is about to match storage again.
+     */
+    public void clearProtections() {
+        synchronized (mutationLock) {
+            worldIndexes.clear();
+            protectionsByOwner.clear();
+            boundWorlds.clear();
+            parkedCounts.clear();
+            cachedChunks.clear();
+            pendingChunks.clear();
+            changedRecords.clear();
+            removedRecords.clear();
+        }
+    }
+
+    /**
+     * Puts protections that were read from storage in place of the ones in memory, in one step under
+     * the mutation lock. Unlike {@link #clearProtections()} followed by a reload, lookups never see
+     * memory empty or half loaded: each world's index is swapped for the staged one as a whole.
+     *
+     * Journaled changes are kept and applied on top of the staged protections, since they are newer
+     * than what was read. Worlds not in boundWorlds keep only the counters of their staged protections.
+     *
+     * @param staged Protections read off the main thread; not to be used afterwards
+     * @param boundWorlds The worlds to bind (the loaded ones)
+     * @since 2.4
+     */
+    void replaceProtections(StagedProtections staged, Collection<String> boundWorlds) {
+        synchronized (mutationLock) {
+            for (ProtectionRecord record : removedRecords.values()) {
+                staged.remove(record.getWorld(), record.getBlockKey());
+            }
+            for (ProtectionRecord record : changedRecords.values()) {
+                staged.replace(record);
+            }
+
+            Map<String, Map<Integer, int[]>> parked = new HashMap<>();
+            for (Iterator<Map.Entry<String, WorldProtectionIndex>> it = staged.worldIndexes.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<String, WorldProtectionIndex> entry = it.next();
+                if (boundWorlds.contains(entry.getKey())) {
+                    continue;
+                }
+                // Same as releaseWorld: the records go, their counters stay with the owner
+                for (ProtectionRecord record : entry.getValue().getAll()) {
+                    OwnerProtections owned = staged.protectionsByOwner.get(record.getOwnerId());
+                    if (owned != null) {
+                        owned.records.remove(record);
+                    }
+                    if (!lazyLoading) {
+                        parkCounts(parked, record);
+                    }
+                }
+                it.remove();
+            }
+
+            // New entries go in before stale ones are removed, so no lookup finds a world or owner missing
+            worldIndexes.putAll(staged.worldIndexes);
+            worldIndexes.keySet().retainAll(staged.worldIndexes.keySet());
+            protectionsByOwner.putAll(staged.protectionsByOwner);
+            protectionsByOwner.keySet().retainAll(staged.protectionsByOwner.keySet());
+            this.boundWorlds.addAll(boundWorlds);
+            this.boundWorlds.retainAll(boundWorlds);
+            parkedCounts.clear();
+            parkedCounts.putAll(parked);
+            cachedChunks.clear();
+            pendingChunks.clear();
+        }
+    }
+
+    /**
+     * Switches between eager loading (every protection of a bound world is in memory) and
+     * lazy loading (only protections of cached chunks are). Set before loading any data.
+     *
+     * @since 2.4
+     */
+    public void setLazyLoading(boolean lazyLoading) {
+        this.lazyLoading = lazyLoading;
+    }
+
+    public boolean isLazyLoading() {
+        return lazyLoading;
+    }
+
+    /**
+     * Marks a world as live so its protections can be added to the index.
+     * The counters parked for the world are dropped first, since its records are about to be loaded again.
+     *
+     * @param worldName The world name
+     * @return false if the world was already bound
+     * @since 2.4
+     */
+    public boolean bindWorld(String worldName) {
+        synchronized (mutationLock) {
+            if (!boundWorlds.add(worldName)) {
+                return false;
+            }
+
+            Map<Integer, int[]> parked = parkedCounts.remove(worldName);
+            if (parked != null) {
+                for (Map.Entry<Integer, int[]> entry : parked.entrySet()) {
+                    OwnerProtections owned = protectionsByOwner.get(entry.getKey());
+                    if (owned != null) {
+                        owned.addCounts(entry.getValue(), -1);
+                        if (owned.isEmpty()) {
+                            protectionsByOwner.remove(entry.getKey());
+                        }
+                    }
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Drops the shard of a world from memory, keeping only the per-owner counters so limits still apply.
+     * Journaled changes of the world are kept until the next save.
+     *
+     * @param worldName The world name
+     * @since 2.4
+     */
+    public void releaseWorld(String worldName) {
+        synchronized (mutationLock) {
+            if (!boundWorlds.remove(worldName)) {
+                return;
+            }
+
+            WorldProtectionIndex index = worldIndexes.remove(worldName);
+            if (index == null) {
+                return;
+            }
+
+            cachedChunks.remove(worldName);
+            pendingChunks.remove(worldName);
+            List<ProtectionRecord> released = index.getAll();
+            for (ProtectionRecord record : released) {
+                OwnerProtections owned = protectionsByOwner.get(record.getOwnerId());
+                if (owned != null) {
+                    owned.records.remove(record);
+                }
+                if (!lazyLoading) {
+                    // Lazy counters already cover every world
+                    parkCounts(record);
+                }
+            }
+        }
+    }
+
+    /**
+     * Accounts for a protection of an unbound world without keeping the record in memory.
+     * Used while loading, so the owner's limits include protections in worlds that are not loaded.
+     *
+     * @param record The record read from storage
+     * @since 2.4
+     */
+    public void parkProtection(ProtectionRecord record) {
+        synchronized (mutationLock) {
+            parkCounts(record);
+            OwnerProtections owned = protectionsByOwner.computeIfAbsent(record.getOwnerId(), k -> new OwnerProtections());
+            owned.addCounts(record.getType(), record.getBlockCount());
+        }
+    }
+
+    private void parkCounts(ProtectionRecord record) {
+        parkCounts(parkedCounts, record);
+    }
+
+    private static void parkCounts(Map<String, Map<Integer, int[]>> parkedCounts, ProtectionRecord record) {
+        int[] counts = parkedCounts.computeIfAbsent(record.getWorld(), k -> new HashMap<>())
+                .computeIfAbsent(record.getOwnerId(), k -> new int[ContainerType.values().length + 1]);
+        if (record.getType() != null) {
+            counts[record.getType().ordinal()] += record.getBlockCount();
+        }
+        counts[counts.length - 1] += record.getBlockCount();
+    }
+
+    /**
+     * Adds protections read from storage to the aggregate owner counters, without any record.
+     * Used by lazy loading, where the records are only cached per chunk.
+     *
+     * @param ownerUUID The owner UUID string
+     * @param type The container type, or null if unknown (legacy data)
+     * @param blocks The number of protected blocks
+     * @since 2.4
+     */
+    public void addOwnerCount(String ownerUUID, ContainerType type, int blocks) {
+        int ownerId = OwnerRegistry.getInstance().getOrCreateId(ownerUUID);
+        synchronized (mutationLock) {
+            protectionsByOwner.computeIfAbsent(ownerId, k -> new OwnerProtections()).addCounts(type, blocks);
+        }
+    }
+
+    /**
+     * Marks a chunk that just loaded as waiting for its protections (lazy loading only), until
+     * {@link #cacheChunk} caches them or the chunk unloads.
+     *
+     * @param worldName The world name
+     * @param chunkX Chunk X coordinate
+     * @param chunkZ Chunk Z coordinate
+     * @return false if the world is not bound, or the chunk is already cached or pending
+     * @since 2.4
+     */
+    public boolean markChunkPending(String worldName, int chunkX, int chunkZ) {
+        synchronized (mutationLock) {
+            if (!boundWorlds.contains(worldName) || isChunkCached(worldName, chunkX, chunkZ)) {
+                return false;
+            }
+            return pendingChunks.computeIfAbsent(worldName, k -> ConcurrentHashMap.newKeySet()).add(BlockKey.chunk(chunkX, chunkZ));
+        }
+    }
+
+    /**
+     * Checks if a chunk still waits for its protections (lazy loading only).
+     *
+     * @since 2.4
+     */
+    public boolean isChunkPending(String worldName, int chunkX, int chunkZ) {
+        Set<Long> pending = pendingChunks.get(worldName);
+        return pending != null && pending.contains(BlockKey.chunk(chunkX, chunkZ));
+    }
+
+    /**
+     * Caches the protections of a chunk marked by {@link #markChunkPending} (lazy loading only).
+     * Skipped if the chunk is no longer pending, i.e. it unloaded while its protections were read.
+     * Records already cached through the other half of a double chest are skipped, and owner
+     * counters are left alone since they already include every stored protection.
+     * Unsaved changes of the chunk win over the records read, see {@link #addStoredProtections}.
+     *
+     * @param worldName The world name
+     * @param chunkX Chunk X coordinate
+     * @param chunkZ Chunk Z coordinate
+     * @param records The records with at least one block in the chunk
+     * @since 2.4
+     */
+    public void cacheChunk(String worldName, int chunkX, int chunkZ, List<ProtectionRecord> records) {
+        synchronized (mutationLock) {
+            long chunkKey = BlockKey.chunk(chunkX, chunkZ);
+            Set<Long> pending = pendingChunks.get(worldName);
+            if (!boundWorlds.contains(worldName) || pending == null || !pending.remove(chunkKey)) {
+                return;
+            }
+
+            cachedChunks.computeIfAbsent(worldName, k -> ConcurrentHashMap.newKeySet()).add(chunkKey);
+            addStored(worldName, records, record -> BlockKey.chunkOf(record.getBlockKey()) == chunkKey
+                    || (record.hasPartner() && BlockKey.chunkOf(record.getPartnerKey()) == chunkKey));
+        }
+    }
+
+    /**
+     * Adds the protections of a world that was bound after startup (eager loading only).
+     * Storage lags memory until the writer saves the change journal, so the journal wins over
+     * what was read: protections removed or changed since the last save are skipped, and the
+     * journaled records of the world, which the journal kept while the world was unloaded, are put back.
+     *
+     * @param worldName The world name
+     * @param records The records read from storage
+     * @since 2.4
+     */
+    public void addStoredProtections(String worldName, List<ProtectionRecord> records) {
+        synchronized (mutationLock) {
+            if (boundWorlds.contains(worldName)) {
+                addStored(worldName, records, record -> true);
+            }
+        }
+    }
+
+    private void addStored(String worldName, List<ProtectionRecord> records, Predicate<ProtectionRecord> inScope) {
+        WorldProtectionIndex index = indexFor(worldName);
+        for (ProtectionRecord record : records) {
+            if (!isJournaled(worldName, record.getBlockKey())) {
+                cacheRecord(index, record);
+            }
+        }
+
+        for (ProtectionRecord record : changedRecords.values()) {
+            if (!record.getWorld().equals(worldName) || !inScope.test(record) || index.get(record.getBlockKey()) == record) {
+                continue;
+            }
+            // Stored records still in the way are older than the journaled one
+            uncacheRecord(index, index.get(record.getBlockKey()));
+            if (record.hasPartner()) {
+                uncacheRecord(index, index.get(record.getPartnerKey()));
+            }
+            cacheRecord(index, record);
+        }
+    }
+
+    // Lazy counters come from a storage aggregate kept up to date by every lock and unlock,
+    // so caching and evicting only move records; eager counters follow the records.
+    private void cacheRecord(WorldProtectionIndex index, ProtectionRecord record) {
+        if (!index.add(record)) {
+            return;
+        }
+        OwnerProtections owned = protectionsByOwner.computeIfAbsent(record.getOwnerId(), k -> new OwnerProtections());
+        if (lazyLoading) {
+            owned.records.add(record);
+        } else {
+            owned.add(record);
+        }
+    }
+
+    private void uncacheRecord(WorldProtectionIndex index, ProtectionRecord record) {
+        if (record == null) {
+            return;
+        }
+        if (!lazyLoading) {
+            dropRecord(index, record);
+            return;
+        }
+        index.remove(record.getBlockKey());
+        OwnerProtections owned = protectionsByOwner.get(record.getOwnerId());
+        if (owned != null) {
+            owned.records.remove(record);
+        }
+    }
+
+    /**
+     * Drops the cached protections of a chunk that is unloading (lazy loading only).
+     * A double chest that also touches another cached chunk stays cached, and a chunk
+     * whose protections are still being read stops waiting for them.
+     *
+     * @param worldName The world name
+     * @param chunkX Chunk X coordinate
+     * @param chunkZ Chunk Z coordinate
+     * @since 2.4
+     */
+    public void evictChunk(String worldName, int chunkX, int chunkZ) {
+        synchronized (mutationLock) {
+            long chunkKey = BlockKey.chunk(chunkX, chunkZ);
+            Set<Long> pending = pendingChunks.get(worldName);
+            if (pending != null) {
+                pending.remove(chunkKey);
+            }
+            Set<Long> cached = cachedChunks.get(worldName);
+            if (cached == null || !cached.remove(chunkKey)) {
+                return;
+            }
+
+            WorldProtectionIndex index = worldIndexes.get(worldName);
+            if (index == null) {
+                return;
+            }
+
+            List<ProtectionRecord> touched = index.getInChunk(chunkX, chunkZ);
+            for (ProtectionRecord record : touched) {
+                if (record.hasPartner()) {
+                    long primaryChunk = BlockKey.chunkOf(record.getBlockKey());
+                    long otherChunk = primaryChunk != chunkKey ? primaryChunk : BlockKey.chunkOf(record.getPartnerKey());
+                    if (cached.contains(otherChunk)) {
+                        continue;
+                    }
+                }
+
+                index.remove(record.getBlockKey());
+                OwnerProtections owned = protectionsByOwner.get(record.getOwnerId());
+                if (owned != null) {
+                    owned.records.remove(record);
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks if the protections of a chunk are cached (lazy loading only).
+     *
+     * @since 2.4
+     */
+    public boolean isChunkCached(String worldName, int chunkX, int chunkZ) {
+        Set<Long> cached = cachedChunks.get(worldName);
+        return cached != null && cached.contains(BlockKey.chunk(chunkX, chunkZ));
+    }
+
+    /**
+     * Checks if a world's shard is live in memory.
+     *
+     * @since 2.4
+     */
+    public boolean isWorldBound(String worldName) {
+        return boundWorlds.contains(worldName);
+    }
+
+    /**
+     * Gets the names of the worlds whose shard is live in memory.
+     *
+     * @since 2.4
+     */
+    public Set<String> getBoundWorlds() {
+        return Collections.unmodifiableSet(boundWorlds);
+    }
+
+    /**
+     * Gets a snapshot of all protection records.
+     */
+    public List<ProtectionRecord> getAllProtections() {
+        int expected = 0;
+        for (WorldProtectionIndex index : worldIndexes.values()) {
+            expected += index.recordCount();
+        }
+        List<ProtectionRecord> all = new ArrayList<>(expected);
+        for (WorldProtectionIndex index : worldIndexes.values()) {
+            all.addAll(index.getAll());
+        }
+        return all;
+    }
+
+    /**
+     * Gets the owner UUID of every protected block in loaded worlds (both halves of a double chest).
+     *
+     * @return A read-only snapshot; unlike before 2.4 it is not the live map, so it cannot be used to change protections
+     * @deprecated Protections are kept as {@link ProtectionRecord}s; use {@link #getAllProtections()}.
+     *             Kept for one release for plugins built against 2.3.
+     */
+    @Deprecated
     public Map<Location, String> getChestOwners() {
-        return chestOwners;
+        return toLegacyMap(ProtectionRecord::getOwnerUUID);
     }
 
+    /**
+     * Gets the password hash of every protected block in loaded worlds (both halves of a double chest).
+     *
+     * @return A read-only snapshot; unlike before 2.4 it is not the live map, so it cannot be used to change protections
+     * @deprecated Protections are kept as {@link ProtectionRecord}s; use {@link #getAllProtections()}.
+     *             Kept for one release for plugins built against 2.3.
+     */
+    @Deprecated
     public Map<Location, String> getChestPasswords() {
-        return chestPasswords;
+        return toLegacyMap(ProtectionRecord::getPasswordHash);
+    }
+
+    private Map<Location, String> toLegacyMap(Function<ProtectionRecord, String> value) {
+        Map<Location, String> map = new HashMap<>();
+        for (ProtectionRecord record : getAllProtections()) {
+            Location loc = record.toLocation();
+            if (loc == null) {
+                continue;
+            }
+            map.put(loc, value.apply(record));
+            if (record.hasPartner()) {
+                long partner = record.getPartnerKey();
+                map.put(new Location(loc.getWorld(), BlockKey.x(partner), BlockKey.y(partner), BlockKey.z(partner)), value.apply(record));
+            }
+        }
+        return Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * Gets every protection record, if memory holds exactly what storage holds: no unsaved changes,
+     * no unloaded world whose protections are only counted, and no lazy loading.
+     * Used to write startup snapshots.
+     *
+     * @return The records, or null if memory is not a complete copy of storage
+     */
+    List<ProtectionRecord> getSavedProtections() {
+        synchronized (mutationLock) {
+            if (lazyLoading || !parkedCounts.isEmpty() || !changedRecords.isEmpty() || !removedRecords.isEmpty()) {
+                return null;
+            }
+            return getAllProtections();
+        }
+    }
+
+    /**
+     * Pre-sizes the index of a bound world before a bulk load.
+     *
+     * @param worldName The world name
+     * @param blocks The number of protected blocks about to be added
+     */
+    void ensureCapacity(String worldName, int blocks) {
+        synchronized (mutationLock) {
+            if (boundWorlds.contains(worldName)) {
+                indexFor(worldName).ensureCapacity(blocks);
+            }
+        }
+    }
+
+    /**
+     * Gets the total number of protected blocks (a double chest counts as two).
+     */
+    public int getProtectionCount() {
+        int count = 0;
+        for (WorldProtectionIndex index : worldIndexes.values()) {
+            count += index.size();
+        }
+        return count;
+    }
+
+    /**
+     * Gets the number of blocks protected by an owner (a double chest counts as two).
+     * Constant time - read from the per-owner reverse index.
+     *
+     * @param ownerId The owner id (see {@link OwnerRegistry})
+     * @return The number of protected blocks (0 if none)
+     */
+    public int getProtectionCount(int ownerId) {
+        OwnerProtections owned = protectionsByOwner.get(ownerId);
+        return owned != null ? owned.blockCount.get() : 0;
+    }
+
+    /**
+     * Gets the number of blocks of one container type protected by an owner.
+     * Constant time and never touches the world. Legacy records whose type is not
+     * known yet are not counted until {@link #resolveType} fills it in; limit checks call
+     * {@link #resolveUntypedProtections(int)} first so they are.
+     *
+     * @param ownerId The owner id (see {@link OwnerRegistry})
+     * @param type The container type
+     * @return The number of protected blocks of that type (0 if none)
+     */
+    public int getProtectionCount(int ownerId, ContainerType type) {
+        OwnerProtections owned = protectionsByOwner.get(ownerId);
+        return owned != null ? owned.typeCounts.get(type.ordinal()) : 0;
+    }
+
+    /**
+     * Records the container type of a legacy protection that was stored without one.
+     * Callers that already read the block (e.g. the cleanup pass) use this so the
+     * per-type counters converge without extra world access.
+     *
+     * @param record The protection record
+     * @param type The type read from the block, or null if it is not a known container
+     */
+    public void resolveType(ProtectionRecord record, ContainerType type) {
+        if (type == null || record.getType() != null) {
+            return;
+        }
+
+        synchronized (mutationLock) {
+            if (record.getType() != null) {
+                return;
+            }
+            record.setType(type);
+            markChanged(record);
+            OwnerProtections owned = protectionsByOwner.get(record.getOwnerId());
+            if (owned != null && owned.records.contains(record)) {
+                owned.typeCounts.addAndGet(type.ordinal(), record.getBlockCount());
+            }
+        }
+    }
+
+    /**
+     * Reads the container type of an owner's legacy protections stored without one, so the per-type
+     * counters include them. Each record is read from the world once; afterwards its type is saved.
+     * Does nothing (and touches no block) once all of the owner's records are typed.
+     * Must run on the main thread (on Folia, on the region of the player whose limit is checked):
+     * chunks that are not loaded are loaded, except on Folia, where they are left for a later check.
+     *
+     * @param ownerId The owner id (see {@link OwnerRegistry})
+     */
+    public void resolveUntypedProtections(int ownerId) {
+        OwnerProtections owned = protectionsByOwner.get(ownerId);
+        if (owned == null || !owned.hasUntyped()) {
+            return;
+        }
+
+        boolean folia = SchedulerUtils.isFolia();
+        for (ProtectionRecord record : owned.records) {
+            if (record.getType() != null) {
+                continue;
+            }
+            World world = Bukkit.getWorld(record.getWorld());
+            if (world == null || (folia && !world.isChunkLoaded(record.getX() >> 4, record.getZ() >> 4))) {
+                continue;
+            }
+            // Blocks that are no longer containers stay untyped; the cleanup pass removes them
+            resolveType(record, ContainerType.fromMaterial(world.getBlockAt(record.getX(), record.getY(), record.getZ()).getType()));
+        }
+    }
+
+    /**
+     * Gets a snapshot of the protections owned by an owner in bound worlds.
+     *
+     * @param ownerId The owner id (see {@link OwnerRegistry})
+     * @return The owner's records (empty if none)
+     */
+    public List<ProtectionRecord> getProtectionsOwnedBy(int ownerId) {
+        OwnerProtections owned = protectionsByOwner.get(ownerId);
+        return owned != null ? new ArrayList<>(owned.records) : Collections.<ProtectionRecord>emptyList();
+    }
+
+    /**
+     * Checks if an owner still has at least one protection, including protections in unbound worlds.
+     */
+    public boolean hasProtections(int ownerId) {
+        return protectionsByOwner.containsKey(ownerId);
+    }
+
+    /**
+     * Gets all protections in a chunk.
+     * Cost is proportional to the number of protections in that chunk.
+     *
+     * @param world The world
+     * @param chunkX Chunk X coordinate
+     * @param chunkZ Chunk Z coordinate
+     * @return The records (empty if none)
+     */
+    public List<ProtectionRecord> getProtectionsInChunk(World world, int chunkX, int chunkZ) {
+        WorldProtectionIndex index = world != null ? worldIndexes.get(world.getName()) : null;
+        return index != null ? index.getInChunk(chunkX, chunkZ) : Collections.<ProtectionRecord>emptyList();
+    }
+
+    /**
+     * Gets all protections inside a box (inclusive bounds).
+     * Only the chunks overlapping the box are visited.
+     */
+    public List<ProtectionRecord> getProtectionsInRange(World world, int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        WorldProtectionIndex index = world != null ? worldIndexes.get(world.getName()) : null;
+        return index != null ? index.getInRange(minX, minY, minZ, maxX, maxY, maxZ) : Collections.<ProtectionRecord>emptyList();
+    }
+
+    /**
+     * Gets the packed keys (see {@link BlockKey#chunk(int, int)}) of all chunks that contain protections.
+     *
+     * @param worldName The world name
+     * @return The packed chunk keys (empty if none)
+     */
+    public long[] getProtectedChunks(String worldName) {
+        WorldProtectionIndex index = worldIndexes.get(worldName);
+        return index != null ? index.getProtectedChunks() : new long[0];
+    }
+
+    /**
+     * Gets the names of all worlds that currently hold protections in the index.
+     */
+    public Set<String> getIndexedWorlds() {
+        return Collections.unmodifiableSet(worldIndexes.keySet());
+    }
+
+    private WorldProtectionIndex indexFor(String worldName) {
+        return worldIndexes.computeIfAbsent(worldName, WorldProtectionIndex::new);
     }
 
     /**
@@ -137,17 +1189,18 @@ public class ChestLocker {
         int migrated = 0;
         boolean dataChanged = false;
 
-        for (Map.Entry<Location, String> entry : chestPasswords.entrySet()) {
-            String currentPassword = entry.getValue();
+        for (ProtectionRecord record : getAllProtections()) {
+            String currentPassword = record.getPasswordHash();
 
             if (PasswordManager.isPlainText(currentPassword)) {
                 String hashedPassword = PasswordManager.migratePlainPassword(currentPassword);
                 if (hashedPassword != null) {
-                    entry.setValue(hashedPassword);
+                    record.setPasswordHash(hashedPassword);
+                    markChanged(record);
                     migrated++;
                     dataChanged = true;
                 } else {
-                    plugin.getLogger().warning("Failed to migrate password for chest at " + serializeLocation(entry.getKey()));
+                    plugin.getLogger().warning("Failed to migrate password for chest at " + record);
                 }
             }
         }
@@ -190,4 +1243,113 @@ public class ChestLocker {
             return null;
         }
     }
+
+    /**
+     * Protections read from storage off the main thread, kept in the same structures as the live ones
+     * so {@link #replaceProtections} only has to swap them in. Used by a single thread until then.
+     *
+     * @since 2.4
+     */
+    static final class StagedProtections {
+        private final Map<String, WorldProtectionIndex> worldIndexes = new HashMap<>();
+        private final Map<Integer, OwnerProtections> protectionsByOwner = new HashMap<>();
+
+        /**
+         * Adds a record read from storage; like {@link ChestLocker#addProtection}, the first record of a block wins.
+         */
+        void add(ProtectionRecord record) {
+            if (worldIndexes.computeIfAbsent(record.getWorld(), WorldProtectionIndex::new).add(record)) {
+                protectionsByOwner.computeIfAbsent(record.getOwnerId(), k -> new OwnerProtections()).add(record);
+            }
+        }
+
+        /**
+         * Counts protections of an owner without any record (lazy loading, see {@link ChestLocker#addOwnerCount}).
+         */
+        void addOwnerCount(String ownerUUID, ContainerType type, int blocks) {
+            int ownerId = OwnerRegistry.getInstance().getOrCreateId(ownerUUID);
+            protectionsByOwner.computeIfAbsent(ownerId, k -> new OwnerProtections()).addCounts(type, blocks);
+        }
+
+        void ensureCapacity(String worldName, int blocks) {
+            worldIndexes.computeIfAbsent(worldName, WorldProtectionIndex::new).ensureCapacity(blocks);
+        }
+
+        private void replace(ProtectionRecord record) {
+            remove(record.getWorld(), record.getBlockKey());
+            if (record.hasPartner()) {
+                remove(record.getWorld(), record.getPartnerKey());
+            }
+            add(record);
+        }
+
+        private void remove(String worldName, long blockKey) {
+            WorldProtectionIndex index = worldIndexes.get(worldName);
+            ProtectionRecord removed = index != null ? index.remove(blockKey) : null;
+            OwnerProtections owned = removed != null ? protectionsByOwner.get(removed.getOwnerId()) : null;
+            if (owned != null && owned.remove(removed) && owned.isEmpty()) {
+                protectionsByOwner.remove(removed.getOwnerId());
+            }
+        }
+    }
+
+    /**
+     * One owner's protections plus block counters, in total and per container type (indexed by ordinal).
+     * Counters are in blocks so a double chest counts as two, as limits always have. They also cover
+     * the owner's protections in unbound worlds, whose records are not kept.
+     * Only mutated under the ChestLocker mutation lock; reads are lock-free.
+     */
+    private static final class OwnerProtections {
+        private final Set<ProtectionRecord> records = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger blockCount = new AtomicInteger();
+        private final AtomicIntegerArray typeCounts = new AtomicIntegerArray(ContainerType.values().length);
+
+        void add(ProtectionRecord record) {
+            if (records.add(record)) {
+                addCounts(record.getType(), record.getBlockCount());
+            }
+        }
+
+        boolean remove(ProtectionRecord record) {
+            if (!records.remove(record)) {
+                return false;
+            }
+            addCounts(record.getType(), -record.getBlockCount());
+            return true;
+        }
+
+        void addCounts(ContainerType type, int blocks) {
+            blockCount.addAndGet(blocks);
+            if (type != null) {
+                typeCounts.addAndGet(type.ordinal(), blocks);
+            }
+        }
+
+        /**
+         * Adds parked counters (per type, total in the last slot), multiplied by sign.
+         */
+        void addCounts(int[] counts, int sign) {
+            for (int i = 0; i < counts.length - 1; i++) {
+                if (counts[i] != 0) {
+                    typeCounts.addAndGet(i, sign * counts[i]);
+                }
+            }
+            blockCount.addAndGet(sign * counts[counts.length - 1]);
+        }
+
+        /**
+         * Checks if some counted blocks have no known type (legacy records or parked counters).
+         */
+        boolean hasUntyped() {
+            int typed = 0;
+            for (int i = 0; i < typeCounts.length(); i++) {
+                typed += typeCounts.get(i);
+            }
+            return typed < blockCount.get();
+        }
+
+        boolean isEmpty() {
+            return records.isEmpty() && blockCount.get() == 0;
+        }
+    }
 }
@@ -0,0 +1,38 @@
+package me.tuplugin.privatechest;
+
+import org.bukkit.Chunk;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+
+/**
+ * Caches protections per chunk when lazy loading is enabled.
+ * Protections are read from storage in the background as their chunk loads and
+ * evicted as it unloads, so memory follows the loaded area instead of the whole dataset.
+ * With eager loading the handlers return immediately.
+ *
+ * @since 2.4
+ */
+public class ChunkLoadListener implements Listener {
+
+    private final PrivateChest plugin;
+
+    public ChunkLoadListener(PrivateChest plugin) {
+        this.plugin = plugin;
+    }
+
+    // Runs first so the chunk's containers count as protected before other plugins react to it
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onChunkLoad(ChunkLoadEvent event) {
+        Chunk chunk = event.getChunk();
+        plugin.getDataManager().loadChunk(chunk.getWorld().getName(), chunk.getX(), chunk.getZ());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkUnload(ChunkUnloadEvent event) {
+        Chunk chunk = event.getChunk();
+        plugin.getDataManager().unloadChunk(chunk.getWorld().getName(), chunk.getX(), chunk.getZ());
+    }
+}
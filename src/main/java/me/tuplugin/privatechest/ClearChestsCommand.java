@@ -7,9 +7,6 @@ import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
 
-import java.util.Iterator;
-import java.util.Map;
-
 public class ClearChestsCommand implements CommandExecutor {
 
     private final PrivateChest plugin;
@@ -34,19 +31,13 @@ public class ClearChestsCommand implements CommandExecutor {
         sender.sendMessage(messages.raw("cleaning_start")); // Optional: Inform about start
 
         int cleared = 0;
-        Map<Location, String> owners = chestLocker.getChestOwners();
-        Map<Location, String> passwords = chestLocker.getChestPasswords();
-
-        // Use an iterator to safely remove elements while looping
-        Iterator<Map.Entry<Location, String>> it = owners.entrySet().iterator();
-        while (it.hasNext()) {
-            Map.Entry<Location, String> entry = it.next();
-            Location loc = entry.getKey();
+        // Iterate over a snapshot and remove through ChestLocker so the index stays consistent
+        for (ProtectionRecord record : chestLocker.getAllProtections()) {
+            Location loc = record.toLocation();
 
             // Check if the world is loaded. If not, it's orphaned.
-            if (loc.getWorld() == null) {
-                passwords.remove(loc); // Remove from passwords first
-                it.remove(); // Remove from owners
+            if (loc == null) {
+                chestLocker.removeProtection(record);
                 cleared++;
                 continue; // Move to the next entry
             }
@@ -55,8 +46,7 @@ public class ClearChestsCommand implements CommandExecutor {
 
             // Check if the block is no longer a lockable container. If so, it's orphaned.
             if (!isLockableContainer(block)) {
-                passwords.remove(loc); // Remove from passwords
-                it.remove(); // Remove from owners
+                chestLocker.removeProtection(record);
                 cleared++;
             }
         }
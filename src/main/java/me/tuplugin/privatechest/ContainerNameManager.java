@@ -6,8 +6,8 @@ import org.bukkit.block.Block;
 import org.bukkit.entity.Player;
 
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
 /**
@@ -25,7 +25,6 @@ public class ContainerNameManager {
 
     private final PrivateChest plugin;
     private final ChestLocker chestLocker;
-    private final Map<Location, String> containerNames;
 
     // Configuration constants
     private static final int MAX_NAME_LENGTH = 16;
@@ -46,7 +45,6 @@ public class ContainerNameManager {
     public ContainerNameManager(PrivateChest plugin) {
         this.plugin = plugin;
         this.chestLocker = plugin.getChestLocker();
-        this.containerNames = new ConcurrentHashMap<>();
     }
 
     /**
@@ -60,13 +58,13 @@ public class ContainerNameManager {
      */
     public NameResult setContainerName(Location location, Player player, String name) {
         // Validate container exists and is protected
-        Block block = location.getBlock();
-        if (!chestLocker.isChestLocked(block)) {
+        ProtectionRecord record = chestLocker.getProtection(location.getBlock());
+        if (record == null) {
             return new NameResult(false, "container_not_protected");
         }
 
         // Validate ownership (allow admins to override)
-        if (!chestLocker.isOwner(block, player) && !player.hasPermission("privatechest.admin")) {
+        if (!record.isOwnedBy(player.getUniqueId()) && !player.hasPermission("privatechest.admin")) {
             return new NameResult(false, "container_not_owned");
         }
 
@@ -77,12 +75,11 @@ public class ContainerNameManager {
         }
 
         // Set the name
-        containerNames.put(location.clone(), name.trim());
+        record.setName(name.trim());
+        chestLocker.markChanged(record);
 
-        // Save data asynchronously to prevent lag
-        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
-            plugin.getDataManager().saveData();
-        });
+        // Queued for the storage writer thread, so this does not block
+        plugin.getDataManager().saveData();
 
         plugin.getLogger().fine(String.format(
             "[ContainerNames] Player %s named container at %s:%d,%d,%d as '%s'",
@@ -106,27 +103,27 @@ public class ContainerNameManager {
      */
     public NameResult removeContainerName(Location location, Player player) {
         // Validate container exists and is protected
-        Block block = location.getBlock();
-        if (!chestLocker.isChestLocked(block)) {
+        ProtectionRecord record = chestLocker.getProtection(location.getBlock());
+        if (record == null) {
             return new NameResult(false, "container_not_protected");
         }
 
         // Validate ownership (allow admins to override)
-        if (!chestLocker.isOwner(block, player) && !player.hasPermission("privatechest.admin")) {
+        if (!record.isOwnedBy(player.getUniqueId()) && !player.hasPermission("privatechest.admin")) {
             return new NameResult(false, "container_not_owned");
         }
 
         // Check if container has a name to remove
-        if (!hasCustomName(location)) {
+        String oldName = record.getName();
+        if (oldName == null) {
             return new NameResult(false, "container_no_custom_name");
         }
 
-        String oldName = containerNames.remove(location);
+        record.setName(null);
+        chestLocker.markChanged(record);
 
-        // Save data asynchronously
-        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
-            plugin.getDataManager().saveData();
-        });
+        // Queued for the storage writer thread
+        plugin.getDataManager().saveData();
 
         plugin.getLogger().fine(String.format(
             "[ContainerNames] Player %s removed name '%s' from container at %s:%d,%d,%d",
@@ -148,7 +145,8 @@ public class ContainerNameManager {
      * @return The custom name, or null if no custom name is set
      */
     public String getContainerName(Location location) {
-        return containerNames.get(location);
+        ProtectionRecord record = chestLocker.getProtection(location);
+        return record != null ? record.getName() : null;
     }
 
     /**
@@ -159,12 +157,15 @@ public class ContainerNameManager {
      * @return The display name (never null)
      */
     public String getDisplayName(Location location) {
-        String customName = getContainerName(location);
-        if (customName != null) {
-            return customName;
+        ProtectionRecord record = chestLocker.getProtection(location);
+        if (record != null && record.getName() != null) {
+            return record.getName();
         }
 
-        // Fall back to type-based name
+        // Fall back to type-based name (the record knows its type unless it is legacy data)
+        if (record != null && record.getType() != null) {
+            return record.getType().getDisplayName();
+        }
         if (location.getWorld() != null) {
             Block block = location.getBlock();
             ContainerType type = ContainerType.fromMaterial(block.getType());
@@ -183,7 +184,7 @@ public class ContainerNameManager {
      * @return true if the container has a custom name
      */
     public boolean hasCustomName(Location location) {
-        return containerNames.containsKey(location);
+        return getContainerName(location) != null;
     }
 
     /**
@@ -227,28 +228,21 @@ public class ContainerNameManager {
     }
 
     /**
-     * Gets all container names (for storage and debugging purposes).
-     * Returns an unmodifiable view to prevent external modification.
+     * Gets all container names (for debugging purposes).
+     * Names are stored on the protection records, so this is a snapshot built on demand.
      * 
-     * @return An unmodifiable map of all container names
+     * @return An unmodifiable map of all container names in loaded worlds
      */
     public Map<Location, String> getAllContainerNames() {
-        return Collections.unmodifiableMap(containerNames);
-    }
-
-    /**
-     * Loads container names from the provided map.
-     * This is typically called during plugin initialization.
-     * 
-     * @param names The map of container names to load
-     */
-    public void loadContainerNames(Map<Location, String> names) {
-        containerNames.clear();
-        if (names != null) {
-            containerNames.putAll(names);
+        Map<Location, String> names = new HashMap<>();
+        for (ProtectionRecord record : chestLocker.getAllProtections()) {
+            String name = record.getName();
+            Location location = name != null ? record.toLocation() : null;
+            if (location != null) {
+                names.put(location, name);
+            }
         }
-        
-        plugin.getLogger().info("[ContainerNames] Loaded " + containerNames.size() + " custom container names");
+        return Collections.unmodifiableMap(names);
     }
 
     /**
@@ -259,7 +253,13 @@ public class ContainerNameManager {
      * @return true if a name was removed
      */
     boolean removeContainerNameEntry(Location location) {
-        return containerNames.remove(location) != null;
+        ProtectionRecord record = chestLocker.getProtection(location);
+        if (record == null || record.getName() == null) {
+            return false;
+        }
+        record.setName(null);
+        chestLocker.markChanged(record);
+        return true;
     }
 
     /**
@@ -268,7 +268,13 @@ public class ContainerNameManager {
      * @return The count of containers with custom names
      */
     public int getNamedContainerCount() {
-        return containerNames.size();
+        int count = 0;
+        for (ProtectionRecord record : chestLocker.getAllProtections()) {
+            if (record.getName() != null) {
+                count++;
+            }
+        }
+        return count;
     }
 
     /**
@@ -62,6 +62,40 @@ public final class ContainerUtils {
         return blocks;
     }
 
+    /**
+     * Gets the other half of a double chest using only its BlockData.
+     * Cheaper than {@link #getContainerBlocks(Block)}, which takes BlockState snapshots,
+     * so it is used on the lookup paths that run for every interaction.
+     *
+     * @param block One half of a chest
+     * @return The other half, or null if the block is not part of a double chest
+     * @since 2.4
+     */
+    public static Block getOtherChestHalf(Block block) {
+        Material type = block.getType();
+        if (type != Material.CHEST && type != Material.TRAPPED_CHEST) {
+            return null;
+        }
+
+        BlockData blockData = block.getBlockData();
+        if (!(blockData instanceof Chest)) {
+            return null;
+        }
+
+        Chest chestData = (Chest) blockData;
+        if (chestData.getType() == Chest.Type.SINGLE) {
+            return null;
+        }
+
+        BlockFace otherHalfDirection = getOtherChestHalfDirection(chestData.getType(), chestData.getFacing());
+        if (otherHalfDirection == null) {
+            return null;
+        }
+
+        Block otherBlock = block.getRelative(otherHalfDirection);
+        return otherBlock.getType() == type ? otherBlock : null;
+    }
+
     /**
      * Determines the direction of the other half of a double chest.
      *
@@ -1,21 +1,187 @@
 package me.tuplugin.privatechest;
 
+import me.tuplugin.privatechest.storage.ChangeSet;
+import me.tuplugin.privatechest.storage.ChunkedDataStorage;
 import me.tuplugin.privatechest.storage.DataStorage;
+import me.tuplugin.privatechest.storage.DurabilityPolicy;
+import me.tuplugin.privatechest.storage.LogStorage;
+import me.tuplugin.privatechest.storage.MySqlStorage;
+import me.tuplugin.privatechest.storage.ShardedYamlStorage;
+import me.tuplugin.privatechest.storage.SharedDataStorage;
+import me.tuplugin.privatechest.storage.SnapshotFile;
 import me.tuplugin.privatechest.storage.SqliteStorage;
 import me.tuplugin.privatechest.storage.YamlStorage;
-import org.bukkit.Location;
+import me.tuplugin.privatechest.util.SchedulerUtils;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import org.bukkit.Chunk;
+import org.bukkit.World;
 
 public class DataManager {
 
     private final PrivateChest plugin;
-    private DataStorage storage;
+    private volatile DataStorage storage;
+
+    // Write-behind: saveData() only signals the writer thread, which waits out the coalescing window
+    // and then writes every change journaled so far in one go. The queue holds at most one pending
+    // signal, so any number of saves inside the window collapse into a single write.
+    private final BlockingQueue<Object> saveRequests = new ArrayBlockingQueue<>(1);
+    private final Object writeLock = new Object(); // Serializes every write to storage
+    private final long writeDelayMillis;
+    private Thread writerThread;
+
+    // Binary copy of the stored data for fast startup. Invalidated before every write,
+    // rewritten by the writer thread on a timer and at shutdown.
+    private final SnapshotFile snapshot;
+    private final boolean snapshotEnabled;
+    private final long snapshotIntervalMillis;
+    private volatile boolean snapshotCurrent; // The snapshot file matches storage
+
+    // Shared storage: other servers' changes are polled on an async timer and applied to memory
+    private final long pollIntervalMillis;
+    private boolean pollingStarted;
+
+    private final AtomicBoolean migrating = new AtomicBoolean();
+
+    // Lazy loading: delay before a failed chunk read is retried, doubled per attempt up to the maximum
+    private static final long CHUNK_RETRY_TICKS = 20L;
+    private static final long CHUNK_RETRY_MAX_TICKS = 600L;
+
+    // Set while memory waits for data read on an async task: the startup load of a remote storage, or
+    // a migrated storage about to be switched to. The writer holds back local changes until then, since
+    // they have to be applied on top of what was read, or saved to the storage switched to.
+    private volatile boolean writesHeld;
+    private volatile boolean loading; // Startup load of a remote storage
 
     public DataManager(PrivateChest plugin) {
         this.plugin = plugin;
+        this.writeDelayMillis = Math.max(0L, plugin.getConfig().getLong("storage-write-delay", 1000L));
+        this.snapshot = new SnapshotFile(new File(plugin.getDataFolder(), "snapshot.bin"));
+        this.snapshotEnabled = plugin.getConfig().getBoolean("startup-snapshot.enabled", true);
+        this.snapshotIntervalMillis = snapshotEnabled ?
+            TimeUnit.MINUTES.toMillis(Math.max(0L, plugin.getConfig().getLong("startup-snapshot.interval-minutes", 10L))) : 0L;
+        this.pollIntervalMillis = plugin.getConfig().getLong("mysql.poll-interval-ms", 2000L);
         initializeStorage();
-        loadData();
+        configureLoadingMode();
+        if (storage.isRemote() && storage.isReady()) {
+            startWriter();
+            loadDataAsync(); // Starts polling once loaded
+        } else {
+            loadData();
+            startWriter();
+            startRemotePolling();
+        }
+    }
+
+    /**
+     * Starts polling for other servers' changes once the storage is shared between servers.
+     * The timer keeps running if the storage is switched later and only polls while it is shared.
+     */
+    private void startRemotePolling() {
+        if (pollingStarted || pollIntervalMillis <= 0 || !(storage instanceof SharedDataStorage)) {
+            return;
+        }
+        pollingStarted = true;
+        long periodTicks = Math.max(1L, pollIntervalMillis / 50L);
+        SchedulerUtils.runTaskTimerAsync(plugin, this::pollRemoteChanges, periodTicks, periodTicks);
+    }
+
+    /**
+     * Applies the changes other servers saved since the last poll.
+     * Runs under the write lock: a local change is then either still journaled (and wins over the
+     * remote one) or already saved (and part of the state the poll reads), never lost in between.
+     */
+    private void pollRemoteChanges() {
+        synchronized (writeLock) {
+            DataStorage storage = this.storage;
+            if (!(storage instanceof SharedDataStorage) || !storage.isReady()) {
+                return;
+            }
+
+            ChestLocker chestLocker = ChestLocker.getInstance();
+            TrustManager trustManager = plugin.getTrustManager();
+            ((SharedDataStorage) storage).pollChanges(new SharedDataStorage.RemoteChangeConsumer() {
+                @Override
+                public void protectionChanged(String worldName, long blockKey, ProtectionRecord current) {
+                    chestLocker.applyRemoteChange(worldName, blockKey, current);
+                }
+
+                @Override
+                public void trustChanged(String ownerUUID, java.util.Set<String> trusted) {
+                    if (trustManager != null) {
+                        trustManager.applyRemoteTrust(ownerUUID, trusted);
+                    }
+                }
+            });
+        }
+    }
+
+    private void startWriter() {
+        writerThread = new Thread(this::runWriter, "PrivateChest-Writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    private void runWriter() {
+        try {
+            long nextSnapshot = snapshotIntervalMillis > 0 ? System.currentTimeMillis() + snapshotIntervalMillis : Long.MAX_VALUE;
+            while (!Thread.currentThread().isInterrupted()) {
+                // Wake up for the snapshot timer or for syncs the durability policy deferred, whichever comes first
+                long wait = Math.min(nextSnapshot - System.currentTimeMillis(), getSyncDelay());
+                if (wait <= 0 || (wait == Long.MAX_VALUE ? saveRequests.take() : saveRequests.poll(wait, TimeUnit.MILLISECONDS)) == null) {
+                    syncDeferred();
+                    if (System.currentTimeMillis() >= nextSnapshot) {
+                        writeSnapshot();
+                        nextSnapshot = System.currentTimeMillis() + snapshotIntervalMillis;
+                    }
+                    continue;
+                }
+                if (writeDelayMillis > 0) {
+                    Thread.sleep(writeDelayMillis);
+                }
+                // Requests that arrived during the window are covered by this write
+                saveRequests.clear();
+                if (!writesHeld) {
+                    writeChanges(); // Otherwise saved once the load or switch is done
+                }
+            }
+        } catch (InterruptedException e) {
+            // Shutting down - close() writes whatever is left
+        }
+    }
+
+    /**
+     * Enables lazy loading if configured and supported by the storage backend.
+     */
+    private void configureLoadingMode() {
+        boolean lazy = plugin.getConfig().getBoolean("lazy-loading", false);
+        if (lazy && !(storage instanceof ChunkedDataStorage)) {
+            plugin.getLogger().warning("[PrivateChest] lazy-loading requires SQLite storage. Loading all protections at startup instead.");
+            lazy = false;
+        }
+        ChestLocker.getInstance().setLazyLoading(lazy);
+    }
+
+    private boolean usesLazyLoading(DataStorage storage) {
+        return plugin.getConfig().getBoolean("lazy-loading", false) && storage instanceof ChunkedDataStorage;
+    }
+
+    /**
+     * Checks if protections are loaded per chunk instead of all at startup.
+     */
+    public boolean isLazyLoading() {
+        return ChestLocker.getInstance().isLazyLoading();
     }
 
     /**
@@ -37,6 +203,42 @@ public class DataManager {
                 }
                 break;
 
+            case "log":
+                plugin.getLogger().info("[PrivateChest] Attempting to initialize log storage...");
+                storage = new LogStorage(plugin);
+                if (!storage.initialize()) {
+                    plugin.getLogger().warning("[PrivateChest] Log storage initialization failed! Falling back to YAML storage.");
+                    storage = new YamlStorage(plugin);
+                    if (!storage.initialize()) {
+                        plugin.getLogger().severe("[PrivateChest] YAML storage initialization also failed! Plugin may not work correctly.");
+                    }
+                }
+                break;
+
+            case "mysql":
+                plugin.getLogger().info("[PrivateChest] Attempting to initialize MySQL storage...");
+                storage = new MySqlStorage(plugin);
+                if (!storage.initialize()) {
+                    plugin.getLogger().warning("[PrivateChest] MySQL initialization failed! Falling back to YAML storage.");
+                    storage = new YamlStorage(plugin);
+                    if (!storage.initialize()) {
+                        plugin.getLogger().severe("[PrivateChest] YAML storage initialization also failed! Plugin may not work correctly.");
+                    }
+                }
+                break;
+
+            case "sharded-yaml":
+                plugin.getLogger().info("[PrivateChest] Attempting to initialize sharded YAML storage...");
+                storage = new ShardedYamlStorage(plugin);
+                if (!storage.initialize()) {
+                    plugin.getLogger().warning("[PrivateChest] Sharded YAML initialization failed! Falling back to YAML storage.");
+                    storage = new YamlStorage(plugin);
+                    if (!storage.initialize()) {
+                        plugin.getLogger().severe("[PrivateChest] YAML storage initialization also failed! Plugin may not work correctly.");
+                    }
+                }
+                break;
+
             case "yaml":
             default:
                 plugin.getLogger().info("[PrivateChest] Using YAML storage.");
@@ -60,146 +262,726 @@ public class DataManager {
         }
 
         ChestLocker chestLocker = ChestLocker.getInstance();
-        Map<Location, String> owners = chestLocker.getChestOwners();
-        Map<Location, String> passwords = chestLocker.getChestPasswords();
-        
-        // Get container names and trust relations maps
-        ContainerNameManager nameManager = plugin.getContainerNameManager();
         TrustManager trustManager = plugin.getTrustManager();
-        
-        Map<Location, String> containerNames = nameManager != null ? 
-            new java.util.concurrent.ConcurrentHashMap<>() : null;
         Map<String, java.util.Set<String>> trustRelations = trustManager != null ? 
-            trustManager.getAllTrustRelations() : null;
+            new java.util.HashMap<>() : null;
+
+        // Only loaded worlds get a live shard; protections of other worlds stay in storage
+        // (their counters are kept for limits) until WorldLoadEvent binds them
+        chestLocker.clearProtections();
+        for (World world : plugin.getServer().getWorlds()) {
+            chestLocker.bindWorld(world.getName());
+        }
+
+        if (chestLocker.isLazyLoading()) {
+            // Limits only need the per-owner aggregate; records are read as their chunks load
+            ChunkedDataStorage chunked = (ChunkedDataStorage) storage;
+            if (!chunked.loadOwnerCounts(chestLocker::addOwnerCount)) {
+                plugin.getLogger().severe("[PrivateChest] Failed to load owner counters from storage!");
+            }
+            for (World world : plugin.getServer().getWorlds()) {
+                loadLoadedChunks(world);
+            }
+            if (trustManager != null) {
+                if (chunked.loadTrust(trustRelations)) {
+                    trustManager.loadTrustRelations(trustRelations);
+                } else {
+                    plugin.getLogger().severe("[PrivateChest] Failed to load trust relations from storage!");
+                }
+            }
+            return;
+        }
+
+        Consumer<ProtectionRecord> addOrPark = record -> {
+            if (chestLocker.isWorldBound(record.getWorld())) {
+                chestLocker.addProtection(record);
+            } else {
+                chestLocker.parkProtection(record);
+            }
+        };
+
+        snapshotCurrent = false;
+        if (snapshotEnabled && snapshot.matches(storage)) {
+            if (loadSnapshot(addOrPark, trustRelations)) {
+                return;
+            }
+            chestLocker.clearProtections();
+            for (World world : plugin.getServer().getWorlds()) {
+                chestLocker.bindWorld(world.getName());
+            }
+        }
+
+        // Records carry owner, password and custom name, so one pass fills everything
+        boolean loaded = storage.loadData(addOrPark, trustRelations);
 
-        if (!storage.loadData(owners, passwords, containerNames, trustRelations)) {
+        if (!loaded) {
             plugin.getLogger().severe("[PrivateChest] Failed to load data from storage!");
-        } else {
-            // Load container names into the name manager
-            if (nameManager != null && containerNames != null) {
-                nameManager.loadContainerNames(containerNames);
+        } else if (trustManager != null) {
+            trustManager.loadTrustRelations(trustRelations);
+        }
+    }
+
+    /**
+     * Loads everything from a remote storage on an async task, so startup does not wait for the database.
+     * The protections are read into a {@link ChestLocker.StagedProtections} and put in place on the main
+     * thread in one step; changes players make meanwhile are applied on top and saved afterwards.
+     */
+    private void loadDataAsync() {
+        DataStorage remote = storage;
+        loading = true;
+        writesHeld = true;
+        plugin.getLogger().info("[PrivateChest] Loading protections from " + remote.getStorageType() + " storage in the background...");
+
+        SchedulerUtils.runTaskAsync(plugin, () -> {
+            ChestLocker.StagedProtections staged = new ChestLocker.StagedProtections();
+            Map<String, java.util.Set<String>> trustRelations = new java.util.HashMap<>();
+            boolean loaded = remote.loadData(staged::add, trustRelations);
+            if (!plugin.isEnabled()) {
+                return;
+            }
+
+            SchedulerUtils.runTask(plugin, () -> {
+                loading = false;
+                writesHeld = false;
+                if (storage != remote) {
+                    return; // Closed meanwhile
+                }
+                if (!loaded) {
+                    plugin.getLogger().severe("[PrivateChest] Failed to load data from storage!");
+                } else {
+                    ChestLocker chestLocker = ChestLocker.getInstance();
+                    chestLocker.replaceProtections(staged, getLoadedWorldNames());
+
+                    // Memory only holds trust changes made meanwhile, which are journaled and kept
+                    TrustManager trustManager = plugin.getTrustManager();
+                    if (trustManager != null) {
+                        for (Map.Entry<String, java.util.Set<String>> entry : trustRelations.entrySet()) {
+                            trustManager.applyRemoteTrust(entry.getKey(), entry.getValue());
+                        }
+                    }
+                    chestLocker.migrateAllPasswords();
+                }
+                saveData();
+                startRemotePolling();
+            });
+        });
+    }
+
+    private List<String> getLoadedWorldNames() {
+        List<String> worlds = new ArrayList<>();
+        for (World world : plugin.getServer().getWorlds()) {
+            worlds.add(world.getName());
+        }
+        return worlds;
+    }
+
+    /**
+     * Loads everything from the startup snapshot instead of the primary storage.
+     *
+     * @return true if loaded, false if the snapshot could not be read (memory may hold part of it)
+     */
+    private boolean loadSnapshot(Consumer<ProtectionRecord> addOrPark, Map<String, java.util.Set<String>> trustRelations) {
+        ChestLocker chestLocker = ChestLocker.getInstance();
+        long start = System.currentTimeMillis();
+        try {
+            int loaded = snapshot.load(addOrPark, trustRelations, chestLocker::ensureCapacity);
+            TrustManager trustManager = plugin.getTrustManager();
+            if (trustManager != null) {
+                trustManager.loadTrustRelations(trustRelations);
+            }
+            snapshotCurrent = true;
+            plugin.getLogger().info("[PrivateChest] Loaded " + loaded + " locked chests from the startup snapshot in "
+                + (System.currentTimeMillis() - start) + " ms.");
+            return true;
+        } catch (IOException e) {
+            plugin.getLogger().warning("[PrivateChest] Could not read the startup snapshot, loading from storage instead.");
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    private long getSyncDelay() {
+        DataStorage storage = this.storage;
+        DurabilityPolicy durability = storage != null ? storage.getDurability() : null;
+        return durability != null ? durability.getSyncDelay() : Long.MAX_VALUE;
+    }
+
+    /**
+     * Runs the syncs the durability policy grouped, once they are due.
+     */
+    private void syncDeferred() {
+        synchronized (writeLock) {
+            DataStorage storage = this.storage;
+            DurabilityPolicy durability = storage != null && storage.isReady() ? storage.getDurability() : null;
+            if (durability == null) {
+                return;
+            }
+            try {
+                durability.commit();
+            } catch (IOException e) {
+                plugin.getLogger().warning("[PrivateChest] Failed to sync saved data to disk, retrying later: " + e.getMessage());
             }
         }
     }
 
+    /**
+     * Writes the startup snapshot, unless it is still current or memory differs from storage
+     * (unsaved changes, unloaded worlds, lazy loading). Skipped rounds are retried on the next timer.
+     */
+    private void writeSnapshot() {
+        if (!snapshotEnabled) {
+            return;
+        }
+
+        synchronized (writeLock) {
+            DataStorage storage = this.storage;
+            TrustManager trustManager = plugin.getTrustManager();
+            if (snapshotCurrent || storage == null || !storage.isReady() || storage.getLastModified() == 0L
+                    || trustManager == null || trustManager.hasUnsavedChanges()) {
+                return;
+            }
+
+            Map<String, java.util.Set<String>> trustRelations = trustManager.getAllTrustRelations();
+            List<ProtectionRecord> records = ChestLocker.getInstance().getSavedProtections();
+            if (records == null || trustManager.hasUnsavedChanges()) {
+                return;
+            }
+
+            try {
+                // Settle the files first, so closing the storage later does not change what the snapshot records
+                storage.checkpoint();
+                snapshot.write(storage, records, trustRelations);
+                snapshotCurrent = true;
+            } catch (IOException e) {
+                plugin.getLogger().warning("[PrivateChest] Failed to write the startup snapshot!");
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Marks the snapshot as outdated; called with the write lock held before storage changes.
+     */
+    private void invalidateSnapshot() {
+        if (!snapshotCurrent) {
+            return;
+        }
+        try {
+            snapshot.invalidate();
+            snapshotCurrent = false;
+        } catch (IOException e) {
+            // The changed last-modified time of the storage still keeps the snapshot from being used
+            plugin.getLogger().warning("[PrivateChest] Failed to invalidate the startup snapshot: " + e.getMessage());
+            snapshotCurrent = false;
+        }
+    }
+
     /**
      * Saves chest data to the configured storage system.
+     * Returns immediately: the writer thread writes the changes after the coalescing window
+     * (storage-write-delay). Only the protections and trust owners changed since the last write are written.
      */
     public void saveData() {
-        if (storage == null || !storage.isReady()) {
-            plugin.getLogger().warning("[PrivateChest] Storage system is not ready! Cannot save data.");
+        Thread writer = writerThread;
+        if (writer == null || !writer.isAlive()) {
+            // Writer not running (startup or shutdown) - write on the calling thread
+            writeChanges();
             return;
         }
+        saveRequests.offer(Boolean.TRUE); // A full queue means a write is already pending
+    }
+
+    /**
+     * Writes all pending changes now, on the calling thread, and waits for any write in progress.
+     * Called from onDisable so nothing journaled is lost.
+     *
+     * @since 2.4
+     */
+    public void flushNow() {
+        saveRequests.clear();
+        writeChanges();
+    }
+
+    private void writeChanges() {
+        synchronized (writeLock) {
+            DataStorage storage = this.storage;
+            if (storage == null || !storage.isReady()) {
+                plugin.getLogger().warning("[PrivateChest] Storage system is not ready! Cannot save data.");
+                return;
+            }
+            writeChanges(storage);
+        }
+    }
+
+    private void writeChanges(DataStorage storage) {
 
         ChestLocker chestLocker = ChestLocker.getInstance();
-        Map<Location, String> owners = chestLocker.getChestOwners();
-        Map<Location, String> passwords = chestLocker.getChestPasswords();
-        
-        // Get container names and trust relations for saving
-        ContainerNameManager nameManager = plugin.getContainerNameManager();
         TrustManager trustManager = plugin.getTrustManager();
-        
-        Map<Location, String> containerNames = nameManager != null ? 
-            nameManager.getAllContainerNames() : null;
-        Map<String, java.util.Set<String>> trustRelations = trustManager != null ? 
-            trustManager.getAllTrustRelations() : null;
 
-        if (!storage.saveData(owners, passwords, containerNames, trustRelations)) {
-            plugin.getLogger().severe("[PrivateChest] Failed to save data to storage!");
+        List<ProtectionRecord> changed = new ArrayList<>();
+        List<ProtectionRecord> removed = new ArrayList<>();
+        chestLocker.drainChanges(changed, removed);
+        Map<String, java.util.Set<String>> trustChanges = trustManager != null ?
+            trustManager.drainTrustChanges() : Collections.<String, java.util.Set<String>>emptyMap();
+
+        ChangeSet changes = new ChangeSet(changed, removed, trustChanges);
+        if (changes.isEmpty()) {
+            return;
+        }
+
+        invalidateSnapshot();
+        if (!storage.applyChanges(changes)) {
+            // A storage that saves in parts reports the ones that failed; the rest is saved
+            boolean partly = changes.hasFailedParts();
+            List<ProtectionRecord> retryChanged = partly ? changes.getFailedUpserts() : changed;
+            List<ProtectionRecord> retryRemoved = partly ? changes.getFailedRemovals() : removed;
+            boolean retryTrust = !partly || changes.isTrustFailed();
+
+            int retried = retryChanged.size() + retryRemoved.size() + (retryTrust ? trustChanges.size() : 0);
+            plugin.getLogger().severe("[PrivateChest] Failed to save data to storage! " + retried + " changes will be retried on the next save.");
+            chestLocker.requeueChanges(retryChanged, retryRemoved);
+            if (trustManager != null && retryTrust) {
+                trustManager.requeueTrustChanges(trustChanges.keySet());
+            }
         }
     }
 
     /**
-     * Migrates data from one storage type to another.
-     * Useful when switching between YAML and SQLite.
+     * Lazy loading: reads the protections of a chunk that just loaded on an async task and caches them.
+     * The main thread only marks the chunk; until its protections are cached its containers stay
+     * closed (see {@link ChestLocker#isProtectionPending}), so a chunk costs one indexed query off
+     * the main thread plus a short wait before its containers open. Failed reads are retried with
+     * a growing delay for as long as the chunk stays loaded.
+     *
+     * @since 2.4
      */
-    public boolean migrateStorage(String fromType, String toType) {
-        if (fromType.equals(toType)) {
-            plugin.getLogger().info("[PrivateChest] Source and target storage types are the same. No migration needed.");
-            return true;
+    public void loadChunk(String worldName, int chunkX, int chunkZ) {
+        ChestLocker chestLocker = ChestLocker.getInstance();
+        if (chestLocker.isLazyLoading() && chestLocker.markChunkPending(worldName, chunkX, chunkZ)) {
+            SchedulerUtils.runTaskAsync(plugin, () -> readChunk(worldName, chunkX, chunkZ, 0));
         }
+    }
 
-        plugin.getLogger().info("[PrivateChest] Starting migration from " + fromType + " to " + toType + "...");
+    private void readChunk(String worldName, int chunkX, int chunkZ, int attempt) {
+        ChestLocker chestLocker = ChestLocker.getInstance();
+        // Under the write lock, so the journal cannot be drained between reading the chunk and overlaying it
+        synchronized (writeLock) {
+            if (!chestLocker.isChunkPending(worldName, chunkX, chunkZ)) {
+                return; // Unloaded meanwhile
+            }
+            DataStorage storage = this.storage;
+            List<ProtectionRecord> records = new ArrayList<>();
+            if (storage instanceof ChunkedDataStorage && storage.isReady()
+                    && ((ChunkedDataStorage) storage).loadChunk(worldName, chunkX, chunkZ, records::add)) {
+                chestLocker.cacheChunk(worldName, chunkX, chunkZ, records);
+                return;
+            }
+        }
 
-        // Initialize source storage
-        DataStorage sourceStorage;
-        switch (fromType.toLowerCase()) {
-            case "yaml":
-                sourceStorage = new YamlStorage(plugin);
-                break;
-            case "sqlite":
-                sourceStorage = new SqliteStorage(plugin);
-                break;
-            default:
-                plugin.getLogger().severe("[PrivateChest] Unknown source storage type: " + fromType);
-                return false;
+        if (!plugin.isEnabled()) {
+            return;
+        }
+        if (attempt == 0) {
+            plugin.getLogger().warning("[PrivateChest] Could not read the protections of chunk " + chunkX + ", " + chunkZ
+                    + " in world '" + worldName + "'. Its containers stay closed until a retry succeeds.");
         }
+        long delay = Math.min(CHUNK_RETRY_MAX_TICKS, CHUNK_RETRY_TICKS << Math.min(attempt, 5));
+        SchedulerUtils.runTaskLater(plugin, () -> SchedulerUtils.runTaskAsync(plugin,
+                () -> readChunk(worldName, chunkX, chunkZ, attempt + 1)), delay);
+    }
 
-        if (!sourceStorage.initialize()) {
-            plugin.getLogger().severe("[PrivateChest] Failed to initialize source storage for migration!");
-            return false;
+    /**
+     * Lazy loading: evicts the protections of a chunk that is unloading.
+     * Nothing is written here. Storage can lag memory until the writer runs, so the change journal
+     * keeps every changed or removed record until it is saved, and loading the chunk again puts the
+     * journaled state over what storage returns (see {@link ChestLocker#cacheChunk}).
+     *
+     * @since 2.4
+     */
+    public void unloadChunk(String worldName, int chunkX, int chunkZ) {
+        ChestLocker chestLocker = ChestLocker.getInstance();
+        if (chestLocker.isLazyLoading()) {
+            chestLocker.evictChunk(worldName, chunkX, chunkZ);
+        }
+    }
+
+    private void loadLoadedChunks(World world) {
+        for (Chunk chunk : world.getLoadedChunks()) {
+            loadChunk(world.getName(), chunk.getX(), chunk.getZ());
         }
+    }
+
+    /**
+     * Binds a world that was loaded after startup and loads its protections from storage.
+     *
+     * @param worldName The world name
+     * @since 2.4
+     */
+    public void loadWorld(String worldName) {
+        if (storage == null || !storage.isReady()) {
+            plugin.getLogger().warning("[PrivateChest] Storage system is not ready! Cannot load world '" + worldName + "'.");
+            return;
+        }
+
+        ChestLocker chestLocker = ChestLocker.getInstance();
+        if (!chestLocker.bindWorld(worldName)) {
+            return; // Already live
+        }
+
+        if (chestLocker.isLazyLoading()) {
+            // Chunks loaded before the world was bound never reached the chunk listener
+            World world = plugin.getServer().getWorld(worldName);
+            if (world != null) {
+                loadLoadedChunks(world);
+            }
+            return;
+        }
+
+        if (storage.isRemote()) {
+            // Keep the database round trip off the main thread; a world unloaded meanwhile gets nothing
+            DataStorage remote = storage;
+            SchedulerUtils.runTaskAsync(plugin, () -> loadBoundWorld(remote, worldName));
+            return;
+        }
+
+        loadBoundWorld(storage, worldName);
+    }
 
-        // Initialize target storage
-        DataStorage targetStorage;
-        switch (toType.toLowerCase()) {
+    /**
+     * Reads the protections of a bound world and adds them with unsaved changes on top. Holds the
+     * write lock, so the journal cannot be drained between reading the world and overlaying it.
+     */
+    private void loadBoundWorld(DataStorage storage, String worldName) {
+        synchronized (writeLock) {
+            List<ProtectionRecord> records = new ArrayList<>();
+            if (!storage.loadWorld(worldName, records::add)) {
+                plugin.getLogger().severe("[PrivateChest] Failed to load protections of world '" + worldName + "'!");
+                return;
+            }
+            ChestLocker.getInstance().addStoredProtections(worldName, records);
+        }
+    }
+
+    /**
+     * Saves pending changes and releases the protections of an unloading world from memory.
+     *
+     * @param worldName The world name
+     * @since 2.4
+     */
+    public void unloadWorld(String worldName) {
+        ChestLocker chestLocker = ChestLocker.getInstance();
+        if (!chestLocker.isWorldBound(worldName)) {
+            return;
+        }
+
+        // Pending changes of the world stay in the journal until the writer saves them
+        chestLocker.releaseWorld(worldName);
+        saveData();
+    }
+
+    /**
+     * Creates an uninitialized storage of the given type.
+     *
+     * @param type A storage-type value ('yaml', 'sharded-yaml', 'sqlite', 'log' or 'mysql')
+     * @return The storage, or null if the type is unknown
+     */
+    private DataStorage createStorage(String type) {
+        switch (type.toLowerCase()) {
             case "yaml":
-                targetStorage = new YamlStorage(plugin);
-                break;
+                return new YamlStorage(plugin);
             case "sqlite":
-                targetStorage = new SqliteStorage(plugin);
-                break;
+                return new SqliteStorage(plugin);
+            case "log":
+                return new LogStorage(plugin);
+            case "sharded-yaml":
+                return new ShardedYamlStorage(plugin);
+            case "mysql":
+                return new MySqlStorage(plugin);
             default:
-                plugin.getLogger().severe("[PrivateChest] Unknown target storage type: " + toType);
-                sourceStorage.close();
-                return false;
+                return null;
         }
+    }
 
-        if (!targetStorage.initialize()) {
-            plugin.getLogger().severe("[PrivateChest] Failed to initialize target storage for migration!");
-            sourceStorage.close();
+    /**
+     * Migrates all data from one storage type to another and switches to the target.
+     * Records are streamed in batches and the target is verified against the source before
+     * the switch (see {@link StorageMigration}); the target is emptied first.
+     * Runs on the calling thread, which has to be the main thread; see {@link #migrateStorageAsync}.
+     *
+     * @return true if the data was migrated, verified and the target is now in use
+     */
+    public boolean migrateStorage(String fromType, String toType) {
+        if (fromType.equalsIgnoreCase(toType)) {
+            plugin.getLogger().info("[PrivateChest] Source and target storage types are the same. No migration needed.");
+            return true;
+        }
+        if (!startMigration()) {
             return false;
         }
-
         try {
-            // Load data from source
-            ChestLocker chestLocker = ChestLocker.getInstance();
-            Map<Location, String> owners = chestLocker.getChestOwners();
-            Map<Location, String> passwords = chestLocker.getChestPasswords();
+            PreparedMigration migration = prepareMigration(fromType, toType);
+            return migration != null && switchStorage(migration);
+        } finally {
+            migrating.set(false);
+        }
+    }
 
-            if (!sourceStorage.loadData(owners, passwords)) {
-                plugin.getLogger().severe("[PrivateChest] Failed to load data from source storage during migration!");
-                return false;
+    /**
+     * Runs {@link #migrateStorage(String, String)} with the copy, the verification and the read of
+     * the new data on an async task. Only the switch itself runs on the main thread.
+     *
+     * @param callback Receives the result on the main thread, or null
+     * @since 2.4
+     */
+    public void migrateStorageAsync(String fromType, String toType, Consumer<Boolean> callback) {
+        if (fromType.equalsIgnoreCase(toType)) {
+            migrateStorage(fromType, toType);
+            if (callback != null) {
+                callback.accept(true);
             }
+            return;
+        }
+        if (!startMigration()) {
+            if (callback != null) {
+                callback.accept(false);
+            }
+            return;
+        }
 
-            int dataCount = owners.size();
-            plugin.getLogger().info("[PrivateChest] Loaded " + dataCount + " entries from " + fromType + " storage.");
+        SchedulerUtils.runTaskAsync(plugin, () -> {
+            PreparedMigration migration;
+            try {
+                migration = prepareMigration(fromType, toType);
+            } catch (RuntimeException e) {
+                migrating.set(false);
+                throw e;
+            }
+            if (migration == null || !plugin.isEnabled()) {
+                if (migration != null) {
+                    migration.discard();
+                }
+                migrating.set(false);
+                if (callback != null && plugin.isEnabled()) {
+                    SchedulerUtils.runTask(plugin, () -> callback.accept(false));
+                }
+                return;
+            }
 
-            // Save data to target
-            if (!targetStorage.saveData(owners, passwords)) {
-                plugin.getLogger().severe("[PrivateChest] Failed to save data to target storage during migration!");
-                return false;
+            SchedulerUtils.runTask(plugin, () -> {
+                boolean success;
+                try {
+                    success = switchStorage(migration);
+                } finally {
+                    migrating.set(false);
+                }
+                if (callback != null) {
+                    callback.accept(success);
+                }
+            });
+        });
+    }
+
+    private boolean startMigration() {
+        if (!migrating.compareAndSet(false, true)) {
+            plugin.getLogger().warning("[PrivateChest] A storage migration is already running.");
+            return false;
+        }
+        if (loading) {
+            migrating.set(false);
+            plugin.getLogger().warning("[PrivateChest] Protections are still being loaded; try the migration again later.");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Checks if a storage migration is running.
+     *
+     * @since 2.4
+     */
+    public boolean isMigrating() {
+        return migrating.get();
+    }
+
+    /**
+     * A copied and verified target storage, waiting for {@link #switchStorage(PreparedMigration)}.
+     */
+    private static final class PreparedMigration {
+        private final String fromType;
+        private final String toType;
+        private final DataStorage target;
+        // Protections and trust read back from the target, if memory has to be replaced; null otherwise
+        private final ChestLocker.StagedProtections staged;
+        private final Map<String, java.util.Set<String>> trustRelations;
+
+        PreparedMigration(String fromType, String toType, DataStorage target,
+                          ChestLocker.StagedProtections staged, Map<String, java.util.Set<String>> trustRelations) {
+            this.fromType = fromType;
+            this.toType = toType;
+            this.target = target;
+            this.staged = staged;
+            this.trustRelations = trustRelations;
+        }
+
+        void discard() {
+            target.close();
+        }
+    }
+
+    /**
+     * Copies and verifies the data, then reads what memory needs from the target. Safe off the main thread:
+     * only storages are touched. On success, writes are held back until the switch.
+     *
+     * @return The migration to switch to, or null if it failed (the current storage stays in use)
+     */
+    private PreparedMigration prepareMigration(String fromType, String toType) {
+        DataStorage sourceStorage = createStorage(fromType);
+        if (sourceStorage == null) {
+            plugin.getLogger().severe("[PrivateChest] Unknown source storage type: " + fromType);
+            return null;
+        }
+        DataStorage targetStorage = createStorage(toType);
+        if (targetStorage == null) {
+            plugin.getLogger().severe("[PrivateChest] Unknown target storage type: " + toType);
+            return null;
+        }
+
+        plugin.getLogger().info("[PrivateChest] Starting migration from " + fromType + " to " + toType + "...");
+
+        // The storage in use is read directly rather than opened a second time
+        DataStorage liveStorage = storage;
+        boolean sourceIsLive = liveStorage != null && liveStorage.getClass() == sourceStorage.getClass();
+        if (sourceIsLive) {
+            sourceStorage = liveStorage;
+        } else if (!sourceStorage.initialize()) {
+            plugin.getLogger().severe("[PrivateChest] Failed to initialize source storage for migration!");
+            return null;
+        }
+
+        if (!targetStorage.initialize()) {
+            plugin.getLogger().severe("[PrivateChest] Failed to initialize target storage for migration!");
+            if (!sourceIsLive) {
+                sourceStorage.close();
             }
+            return null;
+        }
 
-            plugin.getLogger().info("[PrivateChest] Successfully migrated " + dataCount + " entries to " + toType + " storage.");
+        boolean prepared = false;
+        try {
+            synchronized (writeLock) {
+                // Write pending changes so the source is complete; holding the write lock
+                // keeps the writer thread away until the copy is done
+                if (storage != null && storage.isReady()) {
+                    writeChanges(storage);
+                }
+                invalidateSnapshot();
 
-            // Switch to new storage
-            if (storage != null) {
-                storage.close();
+                if (!new StorageMigration(plugin, sourceStorage, targetStorage).run()) {
+                    plugin.getLogger().severe("[PrivateChest] Migration from " + fromType + " to " + toType
+                            + " failed. Still using " + getStorageType() + " storage.");
+                    return null;
+                }
+
+                // Changes made from here on have to reach the target: a live source would no longer
+                // be copied, so they stay journaled until the switch
+                writesHeld = true;
             }
-            storage = targetStorage;
 
-            plugin.getLogger().info("[PrivateChest] Migration from " + fromType + " to " + toType + " completed successfully!");
-            return true;
+            ChestLocker.StagedProtections staged = null;
+            Map<String, java.util.Set<String>> trustRelations = null;
+            boolean lazy = usesLazyLoading(targetStorage);
+            if (!sourceIsLive || lazy != isLazyLoading()) {
+                // Memory does not hold the migrated data; read it back now rather than during the switch
+                staged = new ChestLocker.StagedProtections();
+                trustRelations = new java.util.HashMap<>();
+                boolean loaded;
+                if (lazy) {
+                    ChunkedDataStorage chunked = (ChunkedDataStorage) targetStorage;
+                    loaded = chunked.loadOwnerCounts(staged::addOwnerCount) && chunked.loadTrust(trustRelations);
+                } else {
+                    loaded = targetStorage.loadData(staged::add, trustRelations);
+                }
+                if (!loaded) {
+                    plugin.getLogger().severe("[PrivateChest] Failed to read the migrated data back from " + toType
+                            + " storage. Still using " + getStorageType() + " storage.");
+                    return null;
+                }
+            }
+
+            prepared = true;
+            return new PreparedMigration(fromType, toType, targetStorage, staged, trustRelations);
 
         } catch (Exception e) {
             plugin.getLogger().severe("[PrivateChest] Error during storage migration!");
             e.printStackTrace();
-            return false;
+            return null;
         } finally {
-            sourceStorage.close();
-            if (targetStorage != storage) {
+            if (!sourceIsLive) {
+                sourceStorage.close();
+            }
+            if (!prepared) {
                 targetStorage.close();
+                if (writesHeld) {
+                    writesHeld = false;
+                    saveData(); // Changes held back meanwhile
+                }
+            }
+        }
+    }
+
+    /**
+     * Switches to a prepared target storage. Runs on the main thread: memory is replaced in one step
+     * (see {@link ChestLocker#replaceProtections}), so protections never disappear in between.
+     *
+     * @return true if the target is now in use
+     */
+    private boolean switchStorage(PreparedMigration migration) {
+        synchronized (writeLock) {
+            try {
+                DataStorage oldStorage = storage;
+                if (migration.staged != null && oldStorage != null && oldStorage.isReady()) {
+                    // Changes made meanwhile were made to the old data, which memory is about to drop
+                    writeChanges(oldStorage);
+                }
+
+                storage = migration.target;
+                configureLoadingMode();
+
+                if (migration.staged != null) {
+                    ChestLocker chestLocker = ChestLocker.getInstance();
+                    chestLocker.replaceProtections(migration.staged, getLoadedWorldNames());
+                    TrustManager trustManager = plugin.getTrustManager();
+                    if (trustManager != null) {
+                        trustManager.loadTrustRelations(migration.trustRelations);
+                    }
+                    if (chestLocker.isLazyLoading()) {
+                        for (World world : plugin.getServer().getWorlds()) {
+                            loadLoadedChunks(world);
+                        }
+                    }
+                }
+                // Otherwise memory already matches the target; changes made meanwhile are still
+                // journaled and go to the new storage with the next save
+
+                if (oldStorage != null) {
+                    oldStorage.close();
+                }
+                startRemotePolling();
+
+                plugin.getLogger().info("[PrivateChest] Migration from " + migration.fromType + " to " + migration.toType
+                        + " completed successfully!");
+                return true;
+
+            } catch (Exception e) {
+                plugin.getLogger().severe("[PrivateChest] Error during storage migration!");
+                e.printStackTrace();
+                if (storage != migration.target) {
+                    migration.discard();
+                }
+                return false;
+            } finally {
+                writesHeld = false;
+                saveData();
             }
         }
     }
@@ -223,9 +1005,26 @@ public class DataManager {
      * Should be called when the plugin is disabled.
      */
     public void close() {
-        if (storage != null) {
-            storage.close();
-            storage = null;
+        Thread writer = writerThread;
+        writerThread = null;
+        if (writer != null) {
+            writer.interrupt();
+            try {
+                writer.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        synchronized (writeLock) {
+            if (storage != null) {
+                if (storage.isReady()) {
+                    writeChanges(storage);
+                    writeSnapshot();
+                }
+                storage.close();
+                storage = null;
+            }
         }
     }
 
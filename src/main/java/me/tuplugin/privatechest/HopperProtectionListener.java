@@ -1,7 +1,6 @@
 package me.tuplugin.privatechest;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.util.List;
 
 import org.bukkit.Location;
 import org.bukkit.Material;
@@ -131,42 +130,35 @@ public class HopperProtectionListener implements Listener {
     private boolean isInventoryProtected(Inventory inventory) {
         if (inventory == null) return false;
 
+        // Most moves happen in farms far away from any protection. getLocation() does not
+        // snapshot a BlockState the way getHolder() does, so bail out on it first
+        Location loc = inventory.getLocation();
+        if (loc != null && !chestLocker.mayBeProtected(loc)) return false;
+
         InventoryHolder holder = inventory.getHolder();
         if (holder == null) return false;
 
-        Set<Block> containerBlocks = new HashSet<>();
+        Block block = null;
 
         // Try getting block from BlockState first (single chests, barrels, etc.)
         if (holder instanceof BlockState) {
-            containerBlocks.addAll(getContainerBlocks(((BlockState) holder).getBlock()));
-        } else {
-            // If not a BlockState, try getting location (might be DoubleChest)
-            Location loc = inventory.getLocation();
-            if (loc != null) {
-                containerBlocks.addAll(getContainerBlocks(loc.getBlock()));
-            }
+            block = ((BlockState) holder).getBlock();
+        } else if (loc != null) {
+            // If not a BlockState, use the location (might be DoubleChest)
+            block = loc.getBlock();
         }
 
-        // If we couldn't find any blocks, it's likely not a protectable container
-        if (containerBlocks.isEmpty()) {
+        // If we couldn't find a block, or it is not a protectable container, there is nothing to protect
+        if (block == null || !isLockableContainer(block.getType())) {
             return false;
         }
 
-        // Check if any of the found blocks are locked
-        for (Block block : containerBlocks) {
-            if (chestLocker.isChestLocked(block)) {
-                return true; // Found a locked part, so the whole inventory is protected
-            }
-        }
-
-        return false; // No part was locked
+        // A locked part (either half of a double chest) protects the whole inventory, and so does
+        // a chunk whose protections are still being read
+        return chestLocker.getContainerProtection(block) != null || chestLocker.isProtectionPending(block);
     }
 
     // --- Helper Methods ---
-    private Set<Block> getContainerBlocks(Block block) {
-        return ContainerUtils.getContainerBlocks(block);
-    }
-
     private BlockFace getOtherChestHalfDirection(Chest.Type type, BlockFace facing) {
         return ContainerUtils.getOtherChestHalfDirection(type, facing);
     }
@@ -218,25 +210,28 @@ public class HopperProtectionListener implements Listener {
      * @return true if any protected containers are found within range
      */
     private boolean hasProtectedContainersNearby(Block centerBlock, int range) {
-        Location centerLoc = centerBlock.getLocation();
-        
-        // Check all blocks within the specified range
-        for (int x = -range; x <= range; x++) {
-            for (int y = -range; y <= range; y++) {
-                for (int z = -range; z <= range; z++) {
-                    Location checkLoc = centerLoc.clone().add(x, y, z);
-                    Block checkBlock = checkLoc.getBlock();
-                    
-                    // Skip the center block itself
-                    if (checkBlock.equals(centerBlock)) {
-                        continue;
-                    }
-                    
-                    // Check if this block is a protected container
-                    if (isLockableContainer(checkBlock.getType()) && chestLocker.isChestLocked(checkBlock)) {
-                        return true;
-                    }
-                }
+        int cx = centerBlock.getX();
+        int cy = centerBlock.getY();
+        int cz = centerBlock.getZ();
+
+        // Ask the chunk-bucketed index instead of probing every block in the cube
+        List<ProtectionRecord> nearby = chestLocker.getProtectionsInRange(centerBlock.getWorld(),
+                cx - range, cy - range, cz - range, cx + range, cy + range, cz + range);
+
+        for (ProtectionRecord record : nearby) {
+            int x = record.getX();
+            int y = record.getY();
+            int z = record.getZ();
+
+            // Skip the center block itself
+            if (x == cx && y == cy && z == cz) {
+                continue;
+            }
+
+            // Only count it if the protected block is still a container
+            Block checkBlock = centerBlock.getWorld().getBlockAt(x, y, z);
+            if (isLockableContainer(checkBlock.getType())) {
+                return true;
             }
         }
         
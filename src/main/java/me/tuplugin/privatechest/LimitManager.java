@@ -1,8 +1,6 @@
 package me.tuplugin.privatechest;
 
 import me.tuplugin.privatechest.enums.ContainerType;
-import org.bukkit.Location;
-import org.bukkit.block.Block;
 import org.bukkit.entity.Player;
 
 import java.util.HashMap;
@@ -107,24 +105,9 @@ public class LimitManager {
      * @return The number of locked containers of this type
      */
     public int getPlayerContainerCountByType(Player player, ContainerType containerType) {
-        String playerUUID = player.getUniqueId().toString();
-        Map<Location, String> chestOwners = chestLocker.getChestOwners();
-
-        int count = 0;
-        for (Map.Entry<Location, String> entry : chestOwners.entrySet()) {
-            if (playerUUID.equals(entry.getValue())) {
-                Location loc = entry.getKey();
-                if (loc.getWorld() != null) {
-                    Block block = loc.getBlock();
-                    ContainerType blockType = ContainerType.fromMaterial(block.getType());
-                    if (blockType == containerType) {
-                        count++;
-                    }
-                }
-            }
-        }
-
-        return count;
+        int ownerId = OwnerRegistry.getInstance().getId(player.getUniqueId());
+        chestLocker.resolveUntypedProtections(ownerId); // Legacy records count once their type is known
+        return chestLocker.getProtectionCount(ownerId, containerType);
     }
 
     /**
@@ -135,26 +118,12 @@ public class LimitManager {
      */
     public Map<ContainerType, Integer> getPlayerContainerCountsByType(Player player) {
         Map<ContainerType, Integer> counts = new HashMap<>();
-        String playerUUID = player.getUniqueId().toString();
-        Map<Location, String> chestOwners = chestLocker.getChestOwners();
+        int ownerId = OwnerRegistry.getInstance().getId(player.getUniqueId());
+        chestLocker.resolveUntypedProtections(ownerId);
 
-        // Initialize all types to 0
+        // Read the incrementally maintained per-type counters
         for (ContainerType type : ContainerType.values()) {
-            counts.put(type, 0);
-        }
-
-        // Count actual containers
-        for (Map.Entry<Location, String> entry : chestOwners.entrySet()) {
-            if (playerUUID.equals(entry.getValue())) {
-                Location loc = entry.getKey();
-                if (loc.getWorld() != null) {
-                    Block block = loc.getBlock();
-                    ContainerType blockType = ContainerType.fromMaterial(block.getType());
-                    if (blockType != null) {
-                        counts.put(blockType, counts.get(blockType) + 1);
-                    }
-                }
-            }
+            counts.put(type, chestLocker.getProtectionCount(ownerId, type));
         }
 
         return counts;
@@ -210,17 +179,7 @@ public class LimitManager {
      * @return The number of locked chests
      */
     public int getPlayerChestCount(Player player) {
-        String playerUUID = player.getUniqueId().toString();
-        Map<Location, String> chestOwners = chestLocker.getChestOwners();
-
-        int count = 0;
-        for (String ownerUUID : chestOwners.values()) {
-            if (playerUUID.equals(ownerUUID)) {
-                count++;
-            }
-        }
-
-        return count;
+        return chestLocker.getProtectionCount(OwnerRegistry.getInstance().getId(player.getUniqueId()));
     }
 
     /**
@@ -229,16 +188,7 @@ public class LimitManager {
      * @return The number of locked chests
      */
     public int getPlayerChestCount(String playerUUID) {
-        Map<Location, String> chestOwners = chestLocker.getChestOwners();
-
-        int count = 0;
-        for (String ownerUUID : chestOwners.values()) {
-            if (playerUUID.equals(ownerUUID)) {
-                count++;
-            }
-        }
-
-        return count;
+        return chestLocker.getProtectionCount(OwnerRegistry.getInstance().getId(playerUUID));
     }
 
     /**
@@ -349,4 +299,4 @@ public class LimitManager {
 
         return null;
     }
-}
\ No newline at end of file
+}
@@ -57,11 +57,13 @@ public class LockCommand implements CommandExecutor {
         }
 
         // Check if any part is already locked
-        for (Block block : blocksToLock) {
-            if (chestLocker.isChestLocked(block)) {
-                player.sendMessage(messages.get("already_locked"));
-                return true;
-            }
+        if (chestLocker.getContainerProtection(targetBlock) != null) {
+            player.sendMessage(messages.get("already_locked"));
+            return true;
+        }
+        if (chestLocker.isProtectionPending(targetBlock)) {
+            player.sendMessage(messages.get("protection_loading"));
+            return true;
         }
 
         // Check chest limits (only if not admin)
@@ -83,14 +85,8 @@ public class LockCommand implements CommandExecutor {
             }
         }
 
-        // Lock all parts
-        boolean allLockedSuccessfully = true;
-        for (Block block : blocksToLock) {
-            if (!chestLocker.lockChest(block, player, password)) {
-                allLockedSuccessfully = false;
-                break;
-            }
-        }
+        // Lock the container - both halves of a double chest share one record
+        boolean allLockedSuccessfully = chestLocker.lockChest(targetBlock, player, password);
 
         // Send feedback
         if (allLockedSuccessfully) {
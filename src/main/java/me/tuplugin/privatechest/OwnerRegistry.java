@@ -0,0 +1,130 @@
+package me.tuplugin.privatechest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns player UUIDs as small int ids.
+ * Protection records and trust relations store the int id instead of a 36-character
+ * UUID string, so ownership checks are int compares and each record stays small.
+ *
+ * Ids are only meaningful in memory - storage always writes the UUID string.
+ * Ids are never reused; the table grows with the number of distinct owners,
+ * which is small compared to the number of protections.
+ *
+ * @since 2.4
+ */
+public final class OwnerRegistry {
+
+    /** Returned by lookups for UUIDs that own nothing and are trusted by nobody. */
+    public static final int UNKNOWN = -1;
+
+    private static final OwnerRegistry INSTANCE = new OwnerRegistry();
+
+    private final Map<UUID, Integer> ids = new ConcurrentHashMap<>();
+
+    // Written under the registry lock, published through the volatile reference
+    private volatile String[] uuidStrings = new String[64];
+    private int nextId;
+
+    private OwnerRegistry() {
+    }
+
+    public static OwnerRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Gets the id of a UUID without registering it.
+     *
+     * @param uuid The player UUID
+     * @return The id, or {@link #UNKNOWN} if the UUID has never been registered
+     */
+    public int getId(UUID uuid) {
+        if (uuid == null) {
+            return UNKNOWN;
+        }
+        Integer id = ids.get(uuid);
+        return id != null ? id : UNKNOWN;
+    }
+
+    /**
+     * Gets the id of a UUID string without registering it.
+     *
+     * @param uuid The player UUID as a string
+     * @return The id, or {@link #UNKNOWN} if the UUID has never been registered
+     */
+    public int getId(String uuid) {
+        return uuid != null ? getId(keyOf(uuid)) : UNKNOWN;
+    }
+
+    /**
+     * Gets the id of a UUID, registering it if needed.
+     */
+    public int getOrCreateId(UUID uuid) {
+        Integer id = ids.get(uuid);
+        return id != null ? id : register(uuid, uuid.toString());
+    }
+
+    /**
+     * Gets the id of a UUID string, registering it if needed.
+     * The string is kept as-is, so data written back to storage is unchanged.
+     */
+    public int getOrCreateId(String uuid) {
+        UUID key = keyOf(uuid);
+        Integer id = ids.get(key);
+        return id != null ? id : register(key, uuid);
+    }
+
+    /**
+     * Gets the UUID string registered for an id.
+     *
+     * @param id The owner id
+     * @return The UUID string, or null if the id is unknown
+     */
+    public String getUUIDString(int id) {
+        String[] strings = uuidStrings;
+        return id >= 0 && id < strings.length ? strings[id] : null;
+    }
+
+    /**
+     * Gets the number of ids handed out so far (ids range from 0 to size - 1).
+     */
+    public synchronized int size() {
+        return nextId;
+    }
+
+    private synchronized int register(UUID key, String uuid) {
+        Integer existing = ids.get(key);
+        if (existing != null) {
+            return existing;
+        }
+
+        int id = nextId++;
+        String[] strings = uuidStrings;
+        if (id == strings.length) {
+            strings = Arrays.copyOf(strings, strings.length * 2);
+        }
+        strings[id] = uuid;
+        uuidStrings = strings;
+
+        // Publish the id last so readers that find it can always resolve it
+        ids.put(key, id);
+        return id;
+    }
+
+    /**
+     * Parses a UUID string. Malformed legacy owner strings get a stable name-based key
+     * instead of being dropped, so their protections still load and save unchanged.
+     */
+    private static UUID keyOf(String uuid) {
+        try {
+            return UUID.fromString(uuid);
+        } catch (IllegalArgumentException e) {
+            return UUID.nameUUIDFromBytes(("PrivateChest:" + uuid).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -1,11 +1,15 @@
 package me.tuplugin.privatechest;
 
 import me.tuplugin.privatechest.util.SchedulerUtils;
+import org.bukkit.plugin.PluginDescriptionFile;
 import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.plugin.java.JavaPluginLoader;
 import org.bstats.bukkit.Metrics;
 import me.tuplugin.privatechest.commands.TrustCommand;
 import me.tuplugin.privatechest.commands.UntrustCommand;
 
+import java.io.File;
+
 public class PrivateChest extends JavaPlugin {
 
     private static PrivateChest instance;
@@ -18,6 +22,17 @@ public class PrivateChest extends JavaPlugin {
     private ContainerNameManager containerNameManager;
     private BedrockUtils bedrockUtils;
 
+    public PrivateChest() {
+        super();
+    }
+
+    /**
+     * Creates the plugin outside a server, for unit tests. Bukkit refuses this constructor at runtime.
+     */
+    protected PrivateChest(JavaPluginLoader loader, PluginDescriptionFile description, File dataFolder, File file) {
+        super(loader, description, dataFolder, file);
+    }
+
     @Override
     public void onEnable() {
         instance = this;
@@ -78,6 +93,8 @@ public class PrivateChest extends JavaPlugin {
         getServer().getPluginManager().registerEvents(new BlockProtectionListener(this), this);
         getServer().getPluginManager().registerEvents(new HopperProtectionListener(this), this);
         getServer().getPluginManager().registerEvents(new SignProtectionListener(this), this);
+        getServer().getPluginManager().registerEvents(new WorldLoadListener(this), this);
+        getServer().getPluginManager().registerEvents(new ChunkLoadListener(this), this);
 
         getLogger().info("PrivateChest v" + getDescription().getVersion() + " enabled successfully!");
     }
@@ -89,8 +106,9 @@ public class PrivateChest extends JavaPlugin {
             autoCleanupManager.shutdown();
         }
         
-        // Close storage connection properly
+        // Write pending changes, then close storage connection properly
         if (dataManager != null) {
+            dataManager.flushNow();
             dataManager.close();
         }
         getLogger().info("PrivateChest disabled.");
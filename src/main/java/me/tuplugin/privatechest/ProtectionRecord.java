@@ -0,0 +1,178 @@
+package me.tuplugin.privatechest;
+
+import java.util.UUID;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+
+import me.tuplugin.privatechest.enums.ContainerType;
+import me.tuplugin.privatechest.util.BlockKey;
+
+/**
+ * Everything PrivateChest knows about one protected block, in a single compact object.
+ * Replaces the former parallel owner, password and name maps, so an access decision
+ * needs one index lookup and a name can never outlive its protection.
+ *
+ * The location is stored as a world name plus a packed {@link BlockKey}, so a record
+ * does not depend on its world being loaded.
+ *
+ * @since 2.4
+ */
+public final class ProtectionRecord {
+
+    /** Partner key of a record that covers a single block. Lies outside the world border, so it never collides. */
+    public static final long NO_PARTNER = Long.MIN_VALUE;
+
+    private final String world;
+    private final long blockKey;
+    private final long partnerKey;
+    private final int ownerId;
+    private final long createdAt;
+
+    // Mutable fields may be read by the async cleanup/save paths
+    private volatile String passwordHash;
+    private volatile String name;
+    private volatile ContainerType type;
+
+    /**
+     * Creates a protection record.
+     *
+     * @param world The world name
+     * @param blockKey The packed block coordinates (see {@link BlockKey#pack(int, int, int)})
+     * @param ownerId The owner id (see {@link OwnerRegistry})
+     * @param passwordHash The hashed (or legacy plain text) password
+     * @param name The custom container name, or null
+     * @param type The container type, or null if unknown (legacy data)
+     * @param createdAt Creation time in epoch millis, or 0 if unknown
+     */
+    public ProtectionRecord(String world, long blockKey, int ownerId, String passwordHash,
+                            String name, ContainerType type, long createdAt) {
+        this(world, blockKey, NO_PARTNER, ownerId, passwordHash, name, type, createdAt);
+    }
+
+    /**
+     * Creates a protection record for a container group (e.g. both halves of a double chest).
+     * Both blocks are indexed to this one record, so the pair shares one owner, one password
+     * hash and one storage entry.
+     *
+     * @param world The world name
+     * @param blockKey The packed coordinates of the primary block
+     * @param partnerKey The packed coordinates of the other half, or {@link #NO_PARTNER}
+     * @param ownerId The owner id (see {@link OwnerRegistry})
+     * @param passwordHash The hashed (or legacy plain text) password
+     * @param name The custom container name, or null
+     * @param type The container type, or null if unknown (legacy data)
+     * @param createdAt Creation time in epoch millis, or 0 if unknown
+     */
+    public ProtectionRecord(String world, long blockKey, long partnerKey, int ownerId, String passwordHash,
+                            String name, ContainerType type, long createdAt) {
+        this.world = world;
+        this.blockKey = blockKey;
+        this.partnerKey = partnerKey;
+        this.ownerId = ownerId;
+        this.passwordHash = passwordHash;
+        this.name = name;
+        this.type = type;
+        this.createdAt = createdAt;
+    }
+
+    public String getWorld() {
+        return world;
+    }
+
+    public long getBlockKey() {
+        return blockKey;
+    }
+
+    public long getPartnerKey() {
+        return partnerKey;
+    }
+
+    /**
+     * Checks if this record covers a second block (the other half of a double chest).
+     */
+    public boolean hasPartner() {
+        return partnerKey != NO_PARTNER;
+    }
+
+    /**
+     * Gets the number of blocks covered by this record (1, or 2 for a double chest).
+     */
+    public int getBlockCount() {
+        return hasPartner() ? 2 : 1;
+    }
+
+    public int getX() {
+        return BlockKey.x(blockKey);
+    }
+
+    public int getY() {
+        return BlockKey.y(blockKey);
+    }
+
+    public int getZ() {
+        return BlockKey.z(blockKey);
+    }
+
+    public int getOwnerId() {
+        return ownerId;
+    }
+
+    /**
+     * Gets the owner UUID as a string.
+     */
+    public String getOwnerUUID() {
+        return OwnerRegistry.getInstance().getUUIDString(ownerId);
+    }
+
+    /**
+     * Checks if the given UUID owns this protection (an int compare after one registry lookup).
+     */
+    public boolean isOwnedBy(UUID uuid) {
+        return ownerId == OwnerRegistry.getInstance().getId(uuid);
+    }
+
+    public String getPasswordHash() {
+        return passwordHash;
+    }
+
+    void setPasswordHash(String passwordHash) {
+        this.passwordHash = passwordHash;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    void setName(String name) {
+        this.name = name;
+    }
+
+    public ContainerType getType() {
+        return type;
+    }
+
+    void setType(ContainerType type) {
+        this.type = type;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    /**
+     * Builds a Location for this record.
+     *
+     * @return The location, or null if the world is not loaded
+     */
+    public Location toLocation() {
+        World bukkitWorld = Bukkit.getWorld(world);
+        return bukkitWorld != null ? new Location(bukkitWorld, getX(), getY(), getZ()) : null;
+    }
+
+    @Override
+    public String toString() {
+        return world + ":" + getX() + ":" + getY() + ":" + getZ();
+    }
+}
@@ -21,6 +21,10 @@ public class ReloadCommand implements CommandExecutor {
             return true;
         }
 
+        if (args.length > 0 && args[0].equalsIgnoreCase("migrate")) {
+            return migrate(sender, args);
+        }
+
         // Reload the main configuration file (config.yml)
         plugin.reloadConfig();
 
@@ -31,4 +35,30 @@ public class ReloadCommand implements CommandExecutor {
         sender.sendMessage(messages.get("reload_success"));
         return true;
     }
-}
\ No newline at end of file
+
+    /**
+     * /privatechest migrate &lt;from&gt; &lt;to&gt;: copies all data to another storage type and switches to it.
+     * Runs in the background; progress is logged to the console.
+     */
+    private boolean migrate(CommandSender sender, String[] args) {
+        if (args.length != 3) {
+            sender.sendMessage(messages.get("migrate_usage"));
+            return true;
+        }
+
+        DataManager dataManager = plugin.getDataManager();
+        if (dataManager.isMigrating()) {
+            sender.sendMessage(messages.get("migrate_running"));
+            return true;
+        }
+
+        String from = args[1].toLowerCase();
+        String to = args[2].toLowerCase();
+        sender.sendMessage(messages.get("migrate_started").replace("{from}", from).replace("{to}", to));
+        dataManager.migrateStorageAsync(from, to, success -> {
+            String key = success ? "migrate_success" : "migrate_failed";
+            sender.sendMessage(messages.get(key).replace("{from}", from).replace("{to}", to));
+        });
+        return true;
+    }
+}
@@ -71,6 +71,11 @@ public class SignProtectionListener implements Listener {
 
         // Check if any of the chests are already locked
         for (Block chestBlock : chestBlocks) {
+            if (chestLocker.isProtectionPending(chestBlock)) {
+                player.sendMessage(messages.get("protection_loading"));
+                event.setCancelled(true);
+                return;
+            }
             if (chestLocker.isChestLocked(chestBlock)) {
                 player.sendMessage(messages.get("sign_chest_already_locked"));
                 event.setCancelled(true);
@@ -115,10 +120,10 @@ public class SignProtectionListener implements Listener {
         // Generate a default password for sign-based protection
         String defaultPassword = generateSignPassword(player, signBlock);
 
-        // Lock all associated chests
+        // Lock all associated chests (a double chest is locked as one record, so its second half is skipped)
         boolean anyLocked = false;
         for (Block chestBlock : chestBlocks) {
-            if (chestLocker.lockChest(chestBlock, player, defaultPassword)) {
+            if (!chestLocker.isChestLocked(chestBlock) && chestLocker.lockChest(chestBlock, player, defaultPassword)) {
                 anyLocked = true;
             }
         }
@@ -199,14 +204,15 @@ public class SignProtectionListener implements Listener {
             return; // No locked chest, allow sign break
         }
 
-        // Check ownership or admin permission
-        if (!chestLocker.isOwner(lockedChest, player) && !player.hasPermission("privatechest.admin")) {
+        // Check ownership or admin permission (before the protection is removed below)
+        boolean isOwner = chestLocker.isOwner(lockedChest, player);
+        if (!isOwner && !player.hasPermission("privatechest.admin")) {
             event.setCancelled(true);
             player.sendMessage(messages.get("sign_cannot_break"));
             return;
         }
 
-        // Allow break and unlock the associated chests
+        // Allow break and unlock the associated chests (removing one half of a double chest removes both)
         for (Block chestBlock : chestBlocks) {
             if (chestLocker.isChestLocked(chestBlock)) {
                 chestLocker.removeProtection(chestBlock);
@@ -217,7 +223,7 @@ public class SignProtectionListener implements Listener {
         plugin.getDataManager().saveData();
 
         // Send confirmation
-        if (chestLocker.isOwner(lockedChest, player)) {
+        if (isOwner) {
             player.sendMessage(messages.get("sign_chest_unlocked"));
         } else {
             player.sendMessage(messages.get("admin_sign_break_notice"));
@@ -0,0 +1,297 @@
+package me.tuplugin.privatechest;
+
+import me.tuplugin.privatechest.storage.DataImport;
+import me.tuplugin.privatechest.storage.DataStorage;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Copies everything stored in one storage into another: protection records (owner, password,
+ * partner, name, type, creation time) and trust lists.
+ *
+ * Records are streamed: the source hands them over in batches of {@code migration.batch-size}
+ * through a small bounded queue to a writer thread that imports them into the target, so reading
+ * and writing overlap and only a few batches are ever in memory. Progress and throughput are logged
+ * while it runs. At the end the target is read back and compared with what was read from the
+ * source by count and by an order-independent checksum over every field.
+ *
+ * @since 2.4
+ */
+final class StorageMigration {
+
+    private static final int QUEUED_BATCHES = 4;
+    private static final long PROGRESS_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(5);
+    private static final long OFFER_TIMEOUT_MILLIS = 100L;
+
+    // Marks the end of the records in the queue
+    private static final List<ProtectionRecord> END = Collections.emptyList();
+
+    private final PrivateChest plugin;
+    private final DataStorage source;
+    private final DataStorage target;
+    private final int batchSize;
+
+    private final BlockingQueue<List<ProtectionRecord>> queue = new ArrayBlockingQueue<>(QUEUED_BATCHES);
+    private volatile boolean writeFailed;
+    private List<ProtectionRecord> batch; // Filled by the reading thread
+
+    StorageMigration(PrivateChest plugin, DataStorage source, DataStorage target) {
+        this.plugin = plugin;
+        this.source = source;
+        this.target = target;
+        this.batchSize = Math.max(1, plugin.getConfig().getInt("migration.batch-size", 1000));
+    }
+
+    /**
+     * Runs the migration on the calling thread; the target is emptied first.
+     *
+     * @return true if everything was copied and verified, false otherwise
+     */
+    boolean run() {
+        long start = System.currentTimeMillis();
+        Checksum sourceRecords = new Checksum();
+        Checksum sourceTrust = new Checksum();
+        Map<String, Set<String>> trustRelations = new HashMap<>();
+
+        try (DataImport importer = target.beginImport()) {
+            if (importer == null) {
+                plugin.getLogger().severe("[PrivateChest] Failed to prepare target storage for migration!");
+                return false;
+            }
+
+            Thread writer = new Thread(() -> writeRecords(importer, start), "PrivateChest-Migration");
+            writer.setDaemon(true);
+            writer.start();
+
+            batch = new ArrayList<>(batchSize);
+            boolean loaded = source.loadData(record -> {
+                if (writeFailed || record.getPasswordHash() == null) {
+                    return; // Records without a password are never stored
+                }
+                sourceRecords.add(canonical(record));
+                batch.add(record);
+                if (batch.size() >= batchSize) {
+                    enqueue(batch, writer);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }, trustRelations);
+
+            if (!batch.isEmpty()) {
+                enqueue(batch, writer);
+            }
+            batch = null;
+            enqueue(END, writer);
+            joinWriter(writer);
+
+            if (!loaded) {
+                plugin.getLogger().severe("[PrivateChest] Failed to load data from source storage during migration!");
+                return false;
+            }
+            if (writeFailed) {
+                plugin.getLogger().severe("[PrivateChest] Failed to save data to target storage during migration!");
+                return false;
+            }
+
+            // Trust lists come with the source's loadData as one map; they are written in batches of owners
+            Map<String, Set<String>> trustBatch = new LinkedHashMap<>();
+            for (Map.Entry<String, Set<String>> entry : trustRelations.entrySet()) {
+                for (String trusted : entry.getValue()) {
+                    sourceTrust.add(entry.getKey() + '>' + trusted);
+                }
+                trustBatch.put(entry.getKey(), entry.getValue());
+                if (trustBatch.size() >= batchSize) {
+                    if (!importer.addTrust(trustBatch)) {
+                        plugin.getLogger().severe("[PrivateChest] Failed to save trust relations to target storage during migration!");
+                        return false;
+                    }
+                    trustBatch = new LinkedHashMap<>();
+                }
+            }
+            if (!trustBatch.isEmpty() && !importer.addTrust(trustBatch)) {
+                plugin.getLogger().severe("[PrivateChest] Failed to save trust relations to target storage during migration!");
+                return false;
+            }
+
+            if (!importer.finish()) {
+                plugin.getLogger().severe("[PrivateChest] Failed to complete the target storage during migration!");
+                return false;
+            }
+        }
+
+        long elapsed = Math.max(1L, System.currentTimeMillis() - start);
+        plugin.getLogger().info("[PrivateChest] Copied " + sourceRecords.count + " protections and " + sourceTrust.count
+                + " trust entries in " + formatSeconds(elapsed) + " (" + (sourceRecords.count * 1000L / elapsed) + " protections/s). Verifying...");
+
+        return verify(sourceRecords, sourceTrust);
+    }
+
+    /**
+     * Hands a batch to the writer thread, waiting while the queue is full.
+     * Gives up once the writer stopped, so a failed import never leaves the reader blocked.
+     */
+    private void enqueue(List<ProtectionRecord> batch, Thread writer) {
+        try {
+            while (!queue.offer(batch, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (writeFailed || !writer.isAlive()) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            writeFailed = true;
+            writer.interrupt();
+        }
+    }
+
+    private void joinWriter(Thread writer) {
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            writeFailed = true;
+            writer.interrupt();
+        }
+    }
+
+    /**
+     * Writer thread: imports the queued batches until the end marker, logging progress as it goes.
+     */
+    private void writeRecords(DataImport importer, long start) {
+        long nextReport = start + PROGRESS_INTERVAL_MILLIS;
+        long written = 0;
+        try {
+            List<ProtectionRecord> batch;
+            while ((batch = queue.take()) != END) {
+                if (!importer.addRecords(batch)) {
+                    writeFailed = true;
+                    return;
+                }
+                written += batch.size();
+
+                long now = System.currentTimeMillis();
+                if (now >= nextReport) {
+                    long elapsed = Math.max(1L, now - start);
+                    plugin.getLogger().info("[PrivateChest] Migration in progress: " + written + " protections copied in "
+                            + formatSeconds(elapsed) + " (" + (written * 1000L / elapsed) + " protections/s)...");
+                    nextReport = now + PROGRESS_INTERVAL_MILLIS;
+                }
+            }
+        } catch (InterruptedException e) {
+            writeFailed = true;
+        } catch (Exception e) {
+            plugin.getLogger().severe("[PrivateChest] Error while writing migrated data!");
+            e.printStackTrace();
+            writeFailed = true;
+        }
+    }
+
+    /**
+     * Reads the target back and compares it with what was read from the source.
+     */
+    private boolean verify(Checksum sourceRecords, Checksum sourceTrust) {
+        Checksum targetRecords = new Checksum();
+        Checksum targetTrust = new Checksum();
+        Map<String, Set<String>> trustRelations = new HashMap<>();
+
+        if (!target.loadData(record -> targetRecords.add(canonical(record)), trustRelations)) {
+            plugin.getLogger().severe("[PrivateChest] Failed to read back target storage to verify the migration!");
+            return false;
+        }
+        for (Map.Entry<String, Set<String>> entry : trustRelations.entrySet()) {
+            for (String trusted : entry.getValue()) {
+                targetTrust.add(entry.getKey() + '>' + trusted);
+            }
+        }
+
+        if (!sourceRecords.equals(targetRecords)) {
+            plugin.getLogger().severe("[PrivateChest] Migration verification failed: the source has " + sourceRecords.count
+                    + " protections, the target " + targetRecords.count
+                    + (sourceRecords.count == targetRecords.count ? " with different content." : "."));
+            return false;
+        }
+        if (!sourceTrust.equals(targetTrust)) {
+            plugin.getLogger().severe("[PrivateChest] Migration verification failed: the source has " + sourceTrust.count
+                    + " trust entries, the target " + targetTrust.count
+                    + (sourceTrust.count == targetTrust.count ? " with different content." : "."));
+            return false;
+        }
+
+        plugin.getLogger().info("[PrivateChest] Verified " + targetRecords.count + " protections and "
+                + targetTrust.count + " trust entries (checksums " + targetRecords.hex() + ", " + targetTrust.hex() + ").");
+        return true;
+    }
+
+    /**
+     * Every stored field, normalized the way every storage normalizes it on save.
+     */
+    private static String canonical(ProtectionRecord record) {
+        String name = record.getName();
+        if (name != null) {
+            name = name.trim();
+            if (name.isEmpty()) {
+                name = null;
+            }
+        }
+        return record.getWorld() + '|' + record.getBlockKey() + '|' + record.getPartnerKey() + '|' + record.getOwnerUUID()
+                + '|' + record.getPasswordHash() + '|' + name + '|' + (record.getType() != null ? record.getType().name() : null)
+                + '|' + Math.max(0L, record.getCreatedAt());
+    }
+
+    private static String formatSeconds(long millis) {
+        return String.format("%.1fs", millis / 1000.0);
+    }
+
+    /**
+     * Count and sum of 64-bit hashes of the entries. The sum does not depend on the order
+     * the entries are read in, which differs between storages.
+     */
+    private static final class Checksum {
+        private long count;
+        private long sum;
+
+        void add(String entry) {
+            // FNV-1a over the UTF-8 bytes, then the MurmurHash3 finalizer to spread the bits before summing
+            long hash = 0xcbf29ce484222325L;
+            for (byte b : entry.getBytes(StandardCharsets.UTF_8)) {
+                hash ^= b & 0xff;
+                hash *= 0x100000001b3L;
+            }
+            hash ^= hash >>> 33;
+            hash *= 0xff51afd7ed558ccdL;
+            hash ^= hash >>> 33;
+            hash *= 0xc4ceb9fe1a85ec53L;
+            hash ^= hash >>> 33;
+
+            count++;
+            sum += hash;
+        }
+
+        String hex() {
+            return String.format("%016x", sum);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Checksum)) {
+                return false;
+            }
+            Checksum other = (Checksum) o;
+            return count == other.count && sum == other.sum;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(sum) * 31 + Long.hashCode(count);
+        }
+    }
+}
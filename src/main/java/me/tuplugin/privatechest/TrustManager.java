@@ -1,5 +1,6 @@
 package me.tuplugin.privatechest;
 
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
@@ -15,8 +16,12 @@ import org.bukkit.entity.Player;
  */
 public class TrustManager {
 
-    // Thread-safe map: Owner UUID -> Set of trusted player UUIDs
-    private final Map<String, Set<String>> trustRelations = new ConcurrentHashMap<>();
+    // Thread-safe map: Owner id -> Set of trusted player ids (ids from OwnerRegistry)
+    private final Map<Integer, Set<Integer>> trustRelations = new ConcurrentHashMap<>();
+    private final OwnerRegistry owners = OwnerRegistry.getInstance();
+
+    // Change journal: owners whose trusted set changed since the last save
+    private final Set<Integer> changedOwners = ConcurrentHashMap.newKeySet();
 
     private static TrustManager instance;
     private final PrivateChest plugin;
@@ -40,11 +45,7 @@ public class TrustManager {
         if (owner == null || trusted == null) return false;
         if (owner.getUniqueId().equals(trusted.getUniqueId())) return false; // Can't trust yourself
 
-        String ownerUUID = owner.getUniqueId().toString();
-        String trustedUUID = trusted.getUniqueId().toString();
-
-        trustRelations.computeIfAbsent(ownerUUID, k -> ConcurrentHashMap.newKeySet());
-        return trustRelations.get(ownerUUID).add(trustedUUID);
+        return addTrust(owners.getOrCreateId(owner.getUniqueId()), owners.getOrCreateId(trusted.getUniqueId()));
     }
 
     /**
@@ -54,8 +55,21 @@ public class TrustManager {
         if (ownerUUID == null || trustedUUID == null) return false;
         if (ownerUUID.equals(trustedUUID)) return false;
 
-        trustRelations.computeIfAbsent(ownerUUID, k -> ConcurrentHashMap.newKeySet());
-        return trustRelations.get(ownerUUID).add(trustedUUID);
+        return addTrust(owners.getOrCreateId(ownerUUID), owners.getOrCreateId(trustedUUID));
+    }
+
+    private boolean addTrust(int ownerId, int trustedId) {
+        if (!insertTrust(ownerId, trustedId)) {
+            return false;
+        }
+        changedOwners.add(ownerId);
+        return true;
+    }
+
+    // Adds a relation without journaling it; used directly when loading
+    private boolean insertTrust(int ownerId, int trustedId) {
+        if (ownerId == trustedId) return false;
+        return trustRelations.computeIfAbsent(ownerId, k -> ConcurrentHashMap.newKeySet()).add(trustedId);
     }
 
     /**
@@ -67,20 +81,7 @@ public class TrustManager {
     public boolean untrustPlayer(Player owner, Player trusted) {
         if (owner == null || trusted == null) return false;
 
-        String ownerUUID = owner.getUniqueId().toString();
-        String trustedUUID = trusted.getUniqueId().toString();
-
-        Set<String> trusted_players = trustRelations.get(ownerUUID);
-        if (trusted_players == null) return false;
-
-        boolean removed = trusted_players.remove(trustedUUID);
-
-        // Clean up empty sets
-        if (trusted_players.isEmpty()) {
-            trustRelations.remove(ownerUUID);
-        }
-
-        return removed;
+        return removeTrust(owners.getId(owner.getUniqueId()), owners.getId(trusted.getUniqueId()));
     }
 
     /**
@@ -89,14 +90,21 @@ public class TrustManager {
     public boolean untrustPlayer(String ownerUUID, String trustedUUID) {
         if (ownerUUID == null || trustedUUID == null) return false;
 
-        Set<String> trusted_players = trustRelations.get(ownerUUID);
+        return removeTrust(owners.getId(ownerUUID), owners.getId(trustedUUID));
+    }
+
+    private boolean removeTrust(int ownerId, int trustedId) {
+        Set<Integer> trusted_players = trustRelations.get(ownerId);
         if (trusted_players == null) return false;
 
-        boolean removed = trusted_players.remove(trustedUUID);
+        boolean removed = trusted_players.remove(trustedId);
+        if (removed) {
+            changedOwners.add(ownerId);
+        }
 
         // Clean up empty sets
         if (trusted_players.isEmpty()) {
-            trustRelations.remove(ownerUUID);
+            trustRelations.remove(ownerId);
         }
 
         return removed;
@@ -112,10 +120,7 @@ public class TrustManager {
         if (owner == null || accessor == null) return false;
         if (owner.getUniqueId().equals(accessor.getUniqueId())) return true; // Owner always trusts themselves
 
-        String ownerUUID = owner.getUniqueId().toString();
-        String accessorUUID = accessor.getUniqueId().toString();
-
-        return isTrusted(ownerUUID, accessorUUID);
+        return isTrusted(owners.getId(owner.getUniqueId()), accessor.getUniqueId());
     }
 
     /**
@@ -125,8 +130,28 @@ public class TrustManager {
         if (ownerUUID == null || accessorUUID == null) return false;
         if (ownerUUID.equals(accessorUUID)) return true;
 
-        Set<String> trusted_players = trustRelations.get(ownerUUID);
-        return trusted_players != null && trusted_players.contains(accessorUUID);
+        return isTrusted(owners.getId(ownerUUID), owners.getId(accessorUUID));
+    }
+
+    /**
+     * Checks if a player is trusted by the owner of a protection.
+     * Used on the container access path, where the owner id comes straight from the record.
+     *
+     * @param ownerId The owner id (see {@link OwnerRegistry})
+     * @param accessor The UUID of the player trying to access
+     * @return true if accessor is the owner or trusted by the owner
+     * @since 2.4
+     */
+    public boolean isTrusted(int ownerId, UUID accessor) {
+        return isTrusted(ownerId, owners.getId(accessor));
+    }
+
+    private boolean isTrusted(int ownerId, int accessorId) {
+        if (ownerId == OwnerRegistry.UNKNOWN || accessorId == OwnerRegistry.UNKNOWN) return false;
+        if (ownerId == accessorId) return true;
+
+        Set<Integer> trusted_players = trustRelations.get(ownerId);
+        return trusted_players != null && trusted_players.contains(accessorId);
     }
 
     /**
@@ -136,7 +161,7 @@ public class TrustManager {
      */
     public Set<String> getTrustedPlayers(Player owner) {
         if (owner == null) return new HashSet<>();
-        return getTrustedPlayers(owner.getUniqueId().toString());
+        return toUUIDs(trustRelations.get(owners.getId(owner.getUniqueId())));
     }
 
     /**
@@ -144,9 +169,7 @@ public class TrustManager {
      */
     public Set<String> getTrustedPlayers(String ownerUUID) {
         if (ownerUUID == null) return new HashSet<>();
-
-        Set<String> trusted = trustRelations.get(ownerUUID);
-        return trusted != null ? new HashSet<>(trusted) : new HashSet<>();
+        return toUUIDs(trustRelations.get(owners.getId(ownerUUID)));
     }
 
     /**
@@ -156,7 +179,7 @@ public class TrustManager {
      */
     public Set<String> getOwnersTrusting(Player trustedPlayer) {
         if (trustedPlayer == null) return new HashSet<>();
-        return getOwnersTrusting(trustedPlayer.getUniqueId().toString());
+        return getOwnersTrusting(owners.getId(trustedPlayer.getUniqueId()));
     }
 
     /**
@@ -164,14 +187,19 @@ public class TrustManager {
      */
     public Set<String> getOwnersTrusting(String trustedUUID) {
         if (trustedUUID == null) return new HashSet<>();
+        return getOwnersTrusting(owners.getId(trustedUUID));
+    }
+
+    private Set<String> getOwnersTrusting(int trustedId) {
+        Set<String> result = new HashSet<>();
+        if (trustedId == OwnerRegistry.UNKNOWN) return result;
 
-        Set<String> owners = new HashSet<>();
-        for (Map.Entry<String, Set<String>> entry : trustRelations.entrySet()) {
-            if (entry.getValue().contains(trustedUUID)) {
-                owners.add(entry.getKey());
+        for (Map.Entry<Integer, Set<Integer>> entry : trustRelations.entrySet()) {
+            if (entry.getValue().contains(trustedId)) {
+                result.add(owners.getUUIDString(entry.getKey()));
             }
         }
-        return owners;
+        return result;
     }
 
     /**
@@ -181,32 +209,163 @@ public class TrustManager {
     public void removePlayerCompletely(String playerUUID) {
         if (playerUUID == null) return;
 
+        int playerId = owners.getId(playerUUID);
+        if (playerId == OwnerRegistry.UNKNOWN) return;
+
         // Remove as owner
-        trustRelations.remove(playerUUID);
+        if (trustRelations.remove(playerId) != null) {
+            changedOwners.add(playerId);
+        }
 
         // Remove as trusted player from all relationships
-        for (Set<String> trustedSet : trustRelations.values()) {
-            trustedSet.remove(playerUUID);
+        for (Map.Entry<Integer, Set<Integer>> entry : trustRelations.entrySet()) {
+            if (entry.getValue().remove(playerId)) {
+                changedOwners.add(entry.getKey());
+            }
         }
 
         // Clean up empty sets
         trustRelations.entrySet().removeIf(entry -> entry.getValue().isEmpty());
     }
 
+    /**
+     * Gets the ids of all owners that have trusted at least one player.
+     *
+     * @return A snapshot of owner ids (see {@link OwnerRegistry})
+     * @since 2.4
+     */
+    public int[] getTrustingOwnerIds() {
+        return trustRelations.keySet().stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Removes every trust relation granted by an owner.
+     *
+     * @param ownerId The owner id (see {@link OwnerRegistry})
+     * @return The number of relations removed
+     * @since 2.4
+     */
+    public int removeAllTrustFrom(int ownerId) {
+        Set<Integer> removed = trustRelations.remove(ownerId);
+        if (removed == null) {
+            return 0;
+        }
+        changedOwners.add(ownerId);
+        return removed.size();
+    }
+
     /**
      * Gets all trust relationships (for storage purposes).
+     * Returns a UUID-keyed snapshot; changes to it do not affect the trust data.
      */
     public Map<String, Set<String>> getAllTrustRelations() {
-        return trustRelations;
+        Map<String, Set<String>> snapshot = new HashMap<>();
+        for (Map.Entry<Integer, Set<Integer>> entry : trustRelations.entrySet()) {
+            Set<String> trusted = toUUIDs(entry.getValue());
+            if (!trusted.isEmpty()) {
+                snapshot.put(owners.getUUIDString(entry.getKey()), trusted);
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Replaces all trust relationships with the given UUID-keyed data (used when loading from storage).
+     * The loaded relations match storage, so nothing is journaled for the next save.
+     *
+     * @param relations Owner UUID -> Set of trusted UUIDs
+     * @since 2.4
+     */
+    public void loadTrustRelations(Map<String, Set<String>> relations) {
+        trustRelations.clear();
+        changedOwners.clear();
+        for (Map.Entry<String, Set<String>> entry : relations.entrySet()) {
+            int ownerId = owners.getOrCreateId(entry.getKey());
+            for (String trustedUUID : entry.getValue()) {
+                insertTrust(ownerId, owners.getOrCreateId(trustedUUID));
+            }
+        }
+    }
+
+    /**
+     * Applies an owner's trusted set that another server saved to shared storage, without journaling it.
+     * Skipped if this server has unsaved trust changes of the owner; saving them overwrites the remote set.
+     *
+     * @param ownerUUID The owner UUID string
+     * @param trustedUUIDs The owner's complete trusted set (empty if the owner trusts nobody now)
+     * @since 2.4
+     */
+    public void applyRemoteTrust(String ownerUUID, Set<String> trustedUUIDs) {
+        int ownerId = owners.getOrCreateId(ownerUUID);
+        if (changedOwners.contains(ownerId)) {
+            return;
+        }
+
+        Set<Integer> trusted = new HashSet<>();
+        for (String trustedUUID : trustedUUIDs) {
+            int trustedId = owners.getOrCreateId(trustedUUID);
+            if (trustedId != ownerId) {
+                trusted.add(trustedId);
+            }
+        }
+
+        // Updated in place, so a local trust change racing with this still lands in the live set
+        Set<Integer> current = trustRelations.computeIfAbsent(ownerId, k -> ConcurrentHashMap.newKeySet());
+        current.retainAll(trusted);
+        current.addAll(trusted);
+        if (current.isEmpty()) {
+            trustRelations.remove(ownerId, current);
+        }
     }
 
     /**
      * Clears all trust relationships.
      */
     public void clearAllTrust() {
+        changedOwners.addAll(trustRelations.keySet());
         trustRelations.clear();
     }
 
+    /**
+     * Takes the trust changes since the last call (used by DataManager when saving).
+     *
+     * @return Owner UUID -> the owner's complete trusted set (empty if the owner trusts nobody now)
+     * @since 2.4
+     */
+    public Map<String, Set<String>> drainTrustChanges() {
+        Map<String, Set<String>> changes = new HashMap<>();
+        for (Integer ownerId : changedOwners) {
+            // Remove before reading, so a change made meanwhile is journaled again rather than lost
+            changedOwners.remove(ownerId);
+            changes.put(owners.getUUIDString(ownerId), toUUIDs(trustRelations.get(ownerId)));
+        }
+        return changes;
+    }
+
+    /**
+     * Journals owners again after their trust changes could not be saved.
+     *
+     * @param ownerUUIDs The owner UUIDs from a failed save
+     * @since 2.4
+     */
+    public void requeueTrustChanges(Set<String> ownerUUIDs) {
+        for (String ownerUUID : ownerUUIDs) {
+            int ownerId = owners.getId(ownerUUID);
+            if (ownerId != OwnerRegistry.UNKNOWN) {
+                changedOwners.add(ownerId);
+            }
+        }
+    }
+
+    /**
+     * Checks if trust changes are waiting to be saved.
+     *
+     * @since 2.4
+     */
+    public boolean hasUnsavedChanges() {
+        return !changedOwners.isEmpty();
+    }
+
     /**
      * Gets the total number of trust relationships.
      */
@@ -214,6 +373,16 @@ public class TrustManager {
         return trustRelations.values().stream().mapToInt(Set::size).sum();
     }
 
+    private Set<String> toUUIDs(Set<Integer> ids) {
+        Set<String> result = new HashSet<>();
+        if (ids != null) {
+            for (int id : ids) {
+                result.add(owners.getUUIDString(id));
+            }
+        }
+        return result;
+    }
+
     /**
      * Gets player name safely, handling offline players.
      */
@@ -232,4 +401,4 @@ public class TrustManager {
             return "Unknown";
         }
     }
-}
\ No newline at end of file
+}
@@ -1,7 +1,5 @@
 package me.tuplugin.privatechest;
 
-import java.util.Set;
-
 import org.bukkit.block.Block;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
@@ -47,41 +45,27 @@ public class UnlockCommand implements CommandExecutor {
             return true;
         }
 
-        // Get all blocks of the container (handles double chests)
-        Set<Block> containerBlocks = ContainerUtils.getContainerBlocks(targetBlock);
-        Block lockedBlock = null;
-
-        // Find if any part is locked
-        for (Block part : containerBlocks) {
-            if (chestLocker.isChestLocked(part)) {
-                lockedBlock = part;
-                break;
-            }
-        }
-        // --- FIN: Lógica de Cofre Doble ---
+        // Find the protection of the container (either half of a double chest resolves to it)
+        ProtectionRecord protection = chestLocker.getContainerProtection(targetBlock);
 
         // If no part is locked, send message
-        if (lockedBlock == null) {
-            player.sendMessage(messages.raw("not_locked"));
+        if (protection == null) {
+            player.sendMessage(chestLocker.isProtectionPending(targetBlock) ? messages.get("protection_loading") : messages.raw("not_locked"));
             return true;
         }
 
-        // Check ownership using the found locked block
-        if (!chestLocker.isOwner(lockedBlock, player)) {
+        // Check ownership using the found record
+        if (!protection.isOwnedBy(player.getUniqueId())) {
             player.sendMessage(messages.get("not_your_chest"));
             return true;
         }
 
-        // Try to unlock using the found locked block's password
-        boolean success = chestLocker.unlockChest(lockedBlock, player, password);
+        // Try to unlock using the record's password
+        boolean success = chestLocker.unlockChest(targetBlock, player, password);
 
         if (success) {
             // On success, remove protection from ALL parts
-            for (Block part : containerBlocks) {
-                if (chestLocker.isChestLocked(part)) { // Check again in case of weird states
-                    chestLocker.removeProtection(part);
-                }
-            }
+            chestLocker.removeContainerProtection(targetBlock);
             plugin.getDataManager().saveData();
             player.sendMessage(messages.get("unlocked"));
         } else {
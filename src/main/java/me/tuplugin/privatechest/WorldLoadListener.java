@@ -0,0 +1,33 @@
+package me.tuplugin.privatechest;
+
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.WorldLoadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+
+/**
+ * Binds and releases per-world protection shards as worlds come and go.
+ * Worlds loaded after startup (e.g. by Multiverse) get their protections from storage
+ * when they load, and unloaded worlds keep no protection records in memory.
+ *
+ * @since 2.4
+ */
+public class WorldLoadListener implements Listener {
+
+    private final PrivateChest plugin;
+
+    public WorldLoadListener(PrivateChest plugin) {
+        this.plugin = plugin;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onWorldLoad(WorldLoadEvent event) {
+        plugin.getDataManager().loadWorld(event.getWorld().getName());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onWorldUnload(WorldUnloadEvent event) {
+        plugin.getDataManager().unloadWorld(event.getWorld().getName());
+    }
+}
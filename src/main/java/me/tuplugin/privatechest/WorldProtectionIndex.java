@@ -0,0 +1,399 @@
+package me.tuplugin.privatechest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.StampedLock;
+
+import me.tuplugin.privatechest.util.BlockKey;
+import me.tuplugin.privatechest.util.LongObjectHashMap;
+
+/**
+ * Protection index for a single world, keyed by packed block coordinates.
+ * Lets the hot lookup paths (interact, break, explode, hopper moves) answer
+ * without allocating a Location or hashing a World reference.
+ *
+ * Protections are also bucketed per chunk, so chunk and range queries cost
+ * O(protections in the touched chunks) instead of O(all protections).
+ *
+ * A grouped record (double chest) is indexed under both of its block keys and
+ * appears in the bucket of each chunk it touches.
+ *
+ * Reads and writes are guarded by a StampedLock so the index can be used
+ * from the main thread and the async cleanup task at the same time.
+ * {@link #mayContainProtections(int, int)} is the exception: it reads a small
+ * chunk presence filter without taking the lock, so listeners can drop events
+ * in unprotected chunks before doing any block state work.
+ *
+ * @since 2.4
+ */
+class WorldProtectionIndex {
+
+    private final String worldName;
+    private final LongObjectHashMap<ProtectionRecord> records = new LongObjectHashMap<>();
+    private final LongObjectHashMap<ChunkBucket> chunks = new LongObjectHashMap<>();
+    private final StampedLock lock = new StampedLock();
+    private int recordCount;
+
+    // Replaced (never mutated in place) when it grows, so lock-free readers always see a consistent filter
+    private volatile ChunkFilter chunkFilter = new ChunkFilter(ChunkFilter.MIN_SLOTS);
+
+    WorldProtectionIndex(String worldName) {
+        this.worldName = worldName;
+    }
+
+    String getWorldName() {
+        return worldName;
+    }
+
+    /**
+     * Gets the protection stored for a block key.
+     *
+     * @param blockKey The packed block key
+     * @return The record, or null if the block is not protected
+     */
+    ProtectionRecord get(long blockKey) {
+        long stamp = lock.readLock();
+        try {
+            return records.get(blockKey);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Checks if a chunk may hold a protection, without taking the index lock.
+     * A false answer is exact; a true answer can be a false positive, so callers
+     * still do the real lookup afterwards.
+     *
+     * @param chunkX Chunk X coordinate
+     * @param chunkZ Chunk Z coordinate
+     * @return false if the chunk definitely holds no protection
+     */
+    boolean mayContainProtections(int chunkX, int chunkZ) {
+        return chunkFilter.mightContain(BlockKey.chunk(chunkX, chunkZ));
+    }
+
+    /**
+     * Checks if a block key is protected.
+     */
+    boolean contains(long blockKey) {
+        long stamp = lock.readLock();
+        try {
+            return records.containsKey(blockKey);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Adds a protection if none of its blocks is protected yet.
+     *
+     * @return true if the record was added, false if a block was already protected
+     */
+    boolean add(ProtectionRecord record) {
+        long stamp = lock.writeLock();
+        try {
+            long blockKey = record.getBlockKey();
+            if (records.containsKey(blockKey) || (record.hasPartner() && records.containsKey(record.getPartnerKey()))) {
+                return false;
+            }
+
+            records.put(blockKey, record);
+            long chunkKey = BlockKey.chunkOf(blockKey);
+            addToBucket(chunkKey, record);
+
+            if (record.hasPartner()) {
+                records.put(record.getPartnerKey(), record);
+                long partnerChunk = BlockKey.chunkOf(record.getPartnerKey());
+                if (partnerChunk != chunkKey) {
+                    addToBucket(partnerChunk, record);
+                }
+            }
+            recordCount++;
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes the protection covering a block key.
+     * For a grouped record, either block key removes the whole group.
+     *
+     * @return The removed record, or null if the block was not protected
+     */
+    ProtectionRecord remove(long blockKey) {
+        long stamp = lock.writeLock();
+        try {
+            ProtectionRecord removed = records.get(blockKey);
+            if (removed == null) {
+                return null;
+            }
+
+            records.remove(removed.getBlockKey());
+            long chunkKey = BlockKey.chunkOf(removed.getBlockKey());
+            removeFromBucket(chunkKey, removed);
+
+            if (removed.hasPartner()) {
+                records.remove(removed.getPartnerKey());
+                long partnerChunk = BlockKey.chunkOf(removed.getPartnerKey());
+                if (partnerChunk != chunkKey) {
+                    removeFromBucket(partnerChunk, removed);
+                }
+            }
+            recordCount--;
+            return removed;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Pre-sizes the block map for a bulk load, so it does not rehash while growing.
+     *
+     * @param blocks The number of block keys expected
+     */
+    void ensureCapacity(int blocks) {
+        long stamp = lock.writeLock();
+        try {
+            records.ensureCapacity(blocks);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private void addToBucket(long chunkKey, ProtectionRecord record) {
+        ChunkBucket bucket = chunks.get(chunkKey);
+        if (bucket == null) {
+            bucket = new ChunkBucket();
+            chunks.put(chunkKey, bucket);
+            markChunk(chunkKey);
+        }
+        bucket.add(record);
+    }
+
+    private void removeFromBucket(long chunkKey, ProtectionRecord record) {
+        ChunkBucket bucket = chunks.get(chunkKey);
+        if (bucket != null && bucket.remove(record) && bucket.size == 0) {
+            chunks.remove(chunkKey);
+            chunkFilter.remove(chunkKey);
+        }
+    }
+
+    /**
+     * Records a newly protected chunk in the presence filter, growing the filter once it is
+     * an eighth full (not half full: with one hash per chunk the false positive rate is about the
+     * fill ratio, so half full would let ~40% of unprotected chunks through). Called under the write lock.
+     */
+    private void markChunk(long chunkKey) {
+        ChunkFilter filter = chunkFilter;
+        if (chunks.size() > filter.slotCount() / ChunkFilter.SLOTS_PER_CHUNK) {
+            // Build the bigger filter completely before publishing it
+            ChunkFilter grown = new ChunkFilter(filter.slotCount() * 2);
+            for (long key : chunks.keys()) {
+                grown.add(key);
+            }
+            chunkFilter = grown;
+        } else {
+            filter.add(chunkKey);
+        }
+    }
+
+    /**
+     * Gets the number of protected blocks (a double chest counts twice).
+     */
+    int size() {
+        long stamp = lock.readLock();
+        try {
+            return records.size();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Gets the number of distinct protection records.
+     */
+    int recordCount() {
+        long stamp = lock.readLock();
+        try {
+            return recordCount;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Gets a snapshot of every protection in this world (each grouped record once).
+     */
+    List<ProtectionRecord> getAll() {
+        long stamp = lock.readLock();
+        try {
+            List<ProtectionRecord> all = new ArrayList<>(recordCount);
+            records.forEach((key, record) -> {
+                if (key == record.getBlockKey()) {
+                    all.add(record);
+                }
+            });
+            return all;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Gets all protections in a chunk.
+     *
+     * @param chunkX Chunk X coordinate
+     * @param chunkZ Chunk Z coordinate
+     * @return A snapshot of the records (empty if none)
+     */
+    List<ProtectionRecord> getInChunk(int chunkX, int chunkZ) {
+        long stamp = lock.readLock();
+        try {
+            ChunkBucket bucket = chunks.get(BlockKey.chunk(chunkX, chunkZ));
+            return bucket != null ? bucket.snapshot() : Collections.<ProtectionRecord>emptyList();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Gets all protections with at least one block inside an axis-aligned box (inclusive bounds).
+     * Only the chunk buckets overlapping the box are visited.
+     */
+    List<ProtectionRecord> getInRange(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        long stamp = lock.readLock();
+        try {
+            int minCX = minX >> 4, maxCX = maxX >> 4;
+            int minCZ = minZ >> 4, maxCZ = maxZ >> 4;
+            List<ProtectionRecord> result = null;
+            for (int cx = minCX; cx <= maxCX; cx++) {
+                for (int cz = minCZ; cz <= maxCZ; cz++) {
+                    ChunkBucket bucket = chunks.get(BlockKey.chunk(cx, cz));
+                    if (bucket == null) {
+                        continue;
+                    }
+                    for (int i = 0; i < bucket.size; i++) {
+                        ProtectionRecord record = bucket.records[i];
+                        if (record.hasPartner()) {
+                            // A group split across two chunks sits in both buckets - report it from the primary chunk
+                            // only, unless that chunk lies outside the visited area
+                            int primaryCX = record.getX() >> 4;
+                            int primaryCZ = record.getZ() >> 4;
+                            if ((primaryCX != cx || primaryCZ != cz)
+                                    && primaryCX >= minCX && primaryCX <= maxCX && primaryCZ >= minCZ && primaryCZ <= maxCZ) {
+                                continue;
+                            }
+                        }
+                        if (inBox(record.getBlockKey(), minX, minY, minZ, maxX, maxY, maxZ)
+                                || (record.hasPartner() && inBox(record.getPartnerKey(), minX, minY, minZ, maxX, maxY, maxZ))) {
+                            if (result == null) {
+                                result = new ArrayList<>(4);
+                            }
+                            result.add(record);
+                        }
+                    }
+                }
+            }
+            return result != null ? result : Collections.<ProtectionRecord>emptyList();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private static boolean inBox(long key, int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        int x = BlockKey.x(key);
+        int y = BlockKey.y(key);
+        int z = BlockKey.z(key);
+        return x >= minX && x <= maxX && y >= minY && y <= maxY && z >= minZ && z <= maxZ;
+    }
+
+    /**
+     * Gets the packed keys of all chunks that contain at least one protection.
+     */
+    long[] getProtectedChunks() {
+        long stamp = lock.readLock();
+        try {
+            return chunks.keys();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Counting presence filter over chunk keys: each slot counts the protected chunks
+     * hashing to it, so removing a chunk never clears a slot another chunk still needs.
+     * Costs 4 bytes per slot, with at least eight times as many slots as protected chunks.
+     */
+    private static final class ChunkFilter {
+        static final int MIN_SLOTS = 1024;
+        // Grown before it holds more than one protected chunk per this many slots (~10% false positives)
+        static final int SLOTS_PER_CHUNK = 8;
+
+        private final AtomicIntegerArray slots;
+        private final int mask;
+
+        ChunkFilter(int slotCount) {
+            this.slots = new AtomicIntegerArray(slotCount);
+            this.mask = slotCount - 1;
+        }
+
+        int slotCount() {
+            return mask + 1;
+        }
+
+        void add(long chunkKey) {
+            slots.incrementAndGet(slot(chunkKey));
+        }
+
+        void remove(long chunkKey) {
+            slots.decrementAndGet(slot(chunkKey));
+        }
+
+        boolean mightContain(long chunkKey) {
+            return slots.get(slot(chunkKey)) != 0;
+        }
+
+        private int slot(long chunkKey) {
+            // Neighbouring chunks differ only in the low bits of each half - mix before masking
+            long h = chunkKey * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+    }
+
+    /**
+     * Small growable array of the records belonging to one chunk.
+     * Most chunks hold only a handful of protections, so a flat array beats a set.
+     */
+    private static final class ChunkBucket {
+        private ProtectionRecord[] records = new ProtectionRecord[2];
+        private int size;
+
+        void add(ProtectionRecord record) {
+            if (size == records.length) {
+                records = Arrays.copyOf(records, size * 2);
+            }
+            records[size++] = record;
+        }
+
+        boolean remove(ProtectionRecord record) {
+            for (int i = 0; i < size; i++) {
+                if (records[i] == record) {
+                    // Order does not matter - move the last record into the gap
+                    records[i] = records[--size];
+                    records[size] = null;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        List<ProtectionRecord> snapshot() {
+            return Arrays.asList(Arrays.copyOf(records, size));
+        }
+    }
+}
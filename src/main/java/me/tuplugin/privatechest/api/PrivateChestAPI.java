@@ -2,6 +2,7 @@ package me.tuplugin.privatechest.api;
 
 import me.tuplugin.privatechest.ChestLocker;
 import me.tuplugin.privatechest.PrivateChest;
+import me.tuplugin.privatechest.ProtectionRecord;
 import org.bukkit.Bukkit;
 import org.bukkit.Material;
 import org.bukkit.block.Block;
@@ -76,8 +77,8 @@ public class PrivateChestAPI {
         ChestLocker locker = getChestLocker();
         if (locker == null) return false;
 
-        String ownerUUID = locker.getOwnerUUID(block);
-        return ownerUUID != null && ownerUUID.equals(playerUUID.toString());
+        ProtectionRecord record = locker.getProtection(block);
+        return record != null && record.isOwnedBy(playerUUID);
     }
 
     /**
@@ -204,7 +205,7 @@ public class PrivateChestAPI {
         ChestLocker locker = getChestLocker();
         if (locker == null) return 0;
 
-        return locker.getChestOwners().size();
+        return locker.getProtectionCount();
     }
 
     /**
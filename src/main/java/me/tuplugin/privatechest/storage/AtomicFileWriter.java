@@ -0,0 +1,101 @@
+package me.tuplugin.privatechest.storage;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Replaces a file without ever exposing a partly written one: the content goes to a temporary
+ * file next to it, which is synced and then renamed over the target in one step. A crash of the
+ * server, a full disk or a power loss at any point leaves either the old or the new file, never a
+ * truncated one. The durability policy only decides when the rename itself is synced.
+ *
+ * <pre>
+ * try (AtomicFileWriter file = new AtomicFileWriter(target, durability);
+ *      Writer writer = new OutputStreamWriter(file.getStream(), StandardCharsets.UTF_8)) {
+ *     ...
+ *     writer.flush();
+ *     file.commit();
+ * }
+ * </pre>
+ * Closing without {@link #commit()} discards the temporary file and leaves the target untouched.
+ *
+ * @since 2.4
+ */
+public final class AtomicFileWriter implements Closeable {
+
+    private final File target;
+    private final File temp;
+    private final DurabilityPolicy durability;
+    private final FileOutputStream out;
+    private boolean committed;
+
+    /**
+     * @param target The file to replace; it does not need to exist
+     * @param durability Receives the directory, whose sync makes the rename durable, or null if
+     *                   losing the rename in a power loss is harmless (e.g. for caches)
+     */
+    public AtomicFileWriter(File target, DurabilityPolicy durability) throws IOException {
+        this.target = target;
+        this.temp = new File(target.getPath() + ".tmp");
+        this.durability = durability;
+        // Plain streams rather than NIO channels, which would be closed if the writing thread is interrupted
+        this.out = new FileOutputStream(temp);
+    }
+
+    /**
+     * Gets the stream to write the new content to. Closing it does not close this writer,
+     * so it can be wrapped in writers that are closed by try-with-resources.
+     */
+    public OutputStream getStream() {
+        return new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() {
+                // Closed by the AtomicFileWriter
+            }
+        };
+    }
+
+    /**
+     * Syncs the written content and moves it over the target.
+     * Anything buffered on top of {@link #getStream()} must be flushed first.
+     *
+     * The content is synced before the rename in every mode: otherwise a power loss could leave the
+     * target renamed but empty. Only the directory sync that makes the rename durable is left to the policy.
+     */
+    public void commit() throws IOException {
+        out.getFD().sync();
+        out.close();
+        Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        committed = true;
+
+        if (durability != null) {
+            durability.defer(target.getAbsoluteFile().getParentFile().toPath());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!committed) {
+            try {
+                out.close();
+            } finally {
+                Files.deleteIfExists(temp.toPath());
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package me.tuplugin.privatechest.storage;
+
+import me.tuplugin.privatechest.ProtectionRecord;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The changes made since the last save, handed to {@link DataStorage#applyChanges(ChangeSet)}
+ * so a single lock or unlock costs a single row write instead of a full rewrite.
+ *
+ * Each protection appears at most once: the latest change wins.
+ * A storage that saves the set in independent parts (e.g. one file per region) can report the
+ * parts that failed with {@link #markFailed}; only those are retried, the rest counts as saved.
+ *
+ * @since 2.4
+ */
+public final class ChangeSet {
+
+    private final Collection<ProtectionRecord> upserts;
+    private final Collection<ProtectionRecord> removals;
+    private final Map<String, Set<String>> trustChanges;
+
+    // Parts a storage reported as not saved; empty unless the storage saves in parts
+    private final Set<ProtectionRecord> failedRecords = Collections.newSetFromMap(new IdentityHashMap<>());
+    private boolean trustFailed;
+
+    /**
+     * @param upserts Records that were added or changed (owner, password, name, type)
+     * @param removals Records that were removed; storage deletes them by world and primary block
+     * @param trustChanges Owner UUID -> the owner's complete trusted set (empty if the owner trusts nobody now)
+     */
+    public ChangeSet(Collection<ProtectionRecord> upserts, Collection<ProtectionRecord> removals,
+                     Map<String, Set<String>> trustChanges) {
+        this.upserts = upserts;
+        this.removals = removals;
+        this.trustChanges = trustChanges;
+    }
+
+    public Collection<ProtectionRecord> getUpserts() {
+        return Collections.unmodifiableCollection(upserts);
+    }
+
+    public Collection<ProtectionRecord> getRemovals() {
+        return Collections.unmodifiableCollection(removals);
+    }
+
+    public Map<String, Set<String>> getTrustChanges() {
+        return Collections.unmodifiableMap(trustChanges);
+    }
+
+    /**
+     * Reports that a changed or removed protection could not be saved while other parts of the set were.
+     * The storage still returns false from applyChanges.
+     *
+     * @param record A record of {@link #getUpserts()} or {@link #getRemovals()}
+     */
+    public void markFailed(ProtectionRecord record) {
+        failedRecords.add(record);
+    }
+
+    /**
+     * Reports that the trust changes could not be saved while other parts of the set were.
+     */
+    public void markTrustFailed() {
+        trustFailed = true;
+    }
+
+    /**
+     * Checks if the storage reported which parts failed; if not, a failed save failed as a whole.
+     */
+    public boolean hasFailedParts() {
+        return !failedRecords.isEmpty() || trustFailed;
+    }
+
+    public List<ProtectionRecord> getFailedUpserts() {
+        return failed(upserts);
+    }
+
+    public List<ProtectionRecord> getFailedRemovals() {
+        return failed(removals);
+    }
+
+    public boolean isTrustFailed() {
+        return trustFailed;
+    }
+
+    private List<ProtectionRecord> failed(Collection<ProtectionRecord> records) {
+        List<ProtectionRecord> failed = new ArrayList<>();
+        for (ProtectionRecord record : records) {
+            if (failedRecords.contains(record)) {
+                failed.add(record);
+            }
+        }
+        return failed;
+    }
+
+    public boolean isEmpty() {
+        return upserts.isEmpty() && removals.isEmpty() && trustChanges.isEmpty();
+    }
+
+    /**
+     * Gets the number of changed protections and trust owners.
+     */
+    public int size() {
+        return upserts.size() + removals.size() + trustChanges.size();
+    }
+}
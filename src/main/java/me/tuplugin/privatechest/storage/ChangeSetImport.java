@@ -0,0 +1,78 @@
+package me.tuplugin.privatechest.storage;
+
+import me.tuplugin.privatechest.ProtectionRecord;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The default {@link DataImport}: batches are saved through {@link DataStorage#applyChanges(ChangeSet)},
+ * which costs one write per row for the databases and one log entry per record for the log storage.
+ * The storage is emptied before the first batch (see {@link DataStorage#beginImport()}).
+ *
+ * Storages whose saves rewrite every file a change touches can have records collected over several
+ * batches, so each file is rewritten once per save instead of once per batch.
+ *
+ * @since 2.4
+ */
+final class ChangeSetImport implements DataImport {
+
+    private final DataStorage storage;
+    private final int bufferedRecords;
+    private final List<ProtectionRecord> buffer = new ArrayList<>();
+
+    ChangeSetImport(DataStorage storage) {
+        this(storage, 0);
+    }
+
+    /**
+     * @param bufferedRecords Records are collected until this many are waiting, then saved together
+     */
+    ChangeSetImport(DataStorage storage, int bufferedRecords) {
+        this.storage = storage;
+        this.bufferedRecords = bufferedRecords;
+    }
+
+    @Override
+    public boolean addRecords(Collection<ProtectionRecord> records) {
+        if (bufferedRecords <= 0) {
+            return saveRecords(records);
+        }
+        buffer.addAll(records);
+        return buffer.size() < bufferedRecords || flush();
+    }
+
+    @Override
+    public boolean addTrust(Map<String, Set<String>> trustRelations) {
+        return flush() && storage.applyChanges(new ChangeSet(Collections.<ProtectionRecord>emptyList(),
+                Collections.<ProtectionRecord>emptyList(), trustRelations));
+    }
+
+    @Override
+    public boolean finish() {
+        return flush();
+    }
+
+    private boolean flush() {
+        if (buffer.isEmpty()) {
+            return true;
+        }
+        boolean saved = saveRecords(buffer);
+        buffer.clear();
+        return saved;
+    }
+
+    private boolean saveRecords(Collection<ProtectionRecord> records) {
+        return storage.applyChanges(new ChangeSet(records, Collections.<ProtectionRecord>emptyList(),
+                Collections.<String, Set<String>>emptyMap()));
+    }
+
+    @Override
+    public void close() {
+        buffer.clear();
+    }
+}
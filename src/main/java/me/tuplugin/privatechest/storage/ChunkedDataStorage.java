@@ -0,0 +1,60 @@
+package me.tuplugin.privatechest.storage;
+
+import me.tuplugin.privatechest.ProtectionRecord;
+import me.tuplugin.privatechest.enums.ContainerType;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * A storage backend that can be queried per chunk.
+ * Required for lazy loading, where protections are read when their chunk loads
+ * and dropped from memory when it unloads, instead of holding every protection in memory.
+ * Changes are written through {@link #applyChanges(ChangeSet)} as usual.
+ *
+ * @since 2.4
+ */
+public interface ChunkedDataStorage extends DataStorage {
+
+    /**
+     * Loads the protections with at least one block in a chunk.
+     *
+     * @param worldName The world name
+     * @param chunkX Chunk X coordinate
+     * @param chunkZ Chunk Z coordinate
+     * @param records Receives every matching protection record
+     * @return true if loading was successful, false otherwise
+     */
+    boolean loadChunk(String worldName, int chunkX, int chunkZ, Consumer<ProtectionRecord> records);
+
+    /**
+     * Loads the number of protected blocks per owner and container type across all worlds,
+     * without reading the records themselves. Used to keep limits exact in lazy mode.
+     *
+     * @param counts Receives one aggregate per owner and type
+     * @return true if loading was successful, false otherwise
+     */
+    boolean loadOwnerCounts(OwnerCountConsumer counts);
+
+    /**
+     * Loads only the trust relations. In lazy mode the records are read per chunk,
+     * so trust has to be loaded on its own.
+     *
+     * @param trustRelations Receives owner UUID to trusted player UUIDs
+     * @return true if loading was successful, false otherwise
+     */
+    boolean loadTrust(Map<String, Set<String>> trustRelations);
+
+    /**
+     * Receives one owner count aggregate.
+     */
+    interface OwnerCountConsumer {
+        /**
+         * @param ownerUUID The owner UUID string
+         * @param type The container type, or null if unknown (legacy data)
+         * @param blocks The number of protected blocks (a double chest counts as two)
+         */
+        void accept(String ownerUUID, ContainerType type, int blocks);
+    }
+}
@@ -0,0 +1,162 @@
+package me.tuplugin.privatechest.storage;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Properties;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A small bounded JDBC connection pool for the networked storage backends.
+ * At most {@code maxSize} connections exist at once; borrowers wait up to the timeout for a free one.
+ * Idle connections are reused most recently used first and checked before reuse once they sat
+ * idle long enough for the server to have dropped them.
+ *
+ * <pre>
+ * try (ConnectionPool.Lease lease = pool.borrow()) {
+ *     Connection connection = lease.connection();
+ *     ...
+ * }
+ * </pre>
+ *
+ * @since 2.4
+ */
+final class ConnectionPool {
+
+    // Idle connections older than this are validated before reuse
+    private static final long VALIDATE_AFTER_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    private final String url;
+    private final Properties properties;
+    private final int maxSize;
+    private final long timeoutMillis;
+    private final Semaphore permits;
+
+    private final Deque<IdleConnection> idle = new ArrayDeque<>(); // Guarded by this
+    private volatile boolean closed;
+
+    ConnectionPool(String url, Properties properties, int maxSize, long timeoutMillis) {
+        this.url = url;
+        this.properties = properties;
+        this.maxSize = Math.max(1, maxSize);
+        this.timeoutMillis = Math.max(0L, timeoutMillis);
+        this.permits = new Semaphore(this.maxSize, true);
+    }
+
+    /**
+     * Borrows a connection, opening a new one if none is idle.
+     *
+     * @throws SQLTimeoutException If every connection stays in use for the whole timeout
+     * @throws SQLException If a connection cannot be opened
+     */
+    Lease borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        try {
+            if (!permits.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLTimeoutException("No database connection free within " + timeoutMillis + " ms (pool size " + maxSize + ")");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+
+        try {
+            IdleConnection candidate;
+            while ((candidate = pollIdle()) != null) {
+                if (System.currentTimeMillis() - candidate.since < VALIDATE_AFTER_MILLIS
+                        || candidate.connection.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+                    return new Lease(candidate.connection);
+                }
+                closeQuietly(candidate.connection);
+            }
+            return new Lease(DriverManager.getConnection(url, properties));
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Closes the idle connections; borrowed ones are closed when they are returned.
+     */
+    void close() {
+        closed = true;
+        IdleConnection candidate;
+        while ((candidate = pollIdle()) != null) {
+            closeQuietly(candidate.connection);
+        }
+    }
+
+    private synchronized IdleConnection pollIdle() {
+        return idle.pollFirst();
+    }
+
+    private void release(Connection connection) {
+        try {
+            if (closed || connection.isClosed()) {
+                closeQuietly(connection);
+                return;
+            }
+            // A borrower that failed mid-transaction leaves it open; never hand that to the next one
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+            synchronized (this) {
+                idle.addFirst(new IdleConnection(connection, System.currentTimeMillis()));
+            }
+        } catch (SQLException e) {
+            closeQuietly(connection); // Broken - a fresh one is opened on demand
+        } finally {
+            permits.release();
+        }
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+            // Already unusable
+        }
+    }
+
+    private static final class IdleConnection {
+        final Connection connection;
+        final long since;
+
+        IdleConnection(Connection connection, long since) {
+            this.connection = connection;
+            this.since = since;
+        }
+    }
+
+    /**
+     * A borrowed connection; closing the lease returns it to the pool.
+     */
+    final class Lease implements AutoCloseable {
+        private Connection connection;
+
+        private Lease(Connection connection) {
+            this.connection = connection;
+        }
+
+        Connection connection() {
+            return connection;
+        }
+
+        @Override
+        public void close() {
+            if (connection != null) {
+                release(connection);
+                connection = null;
+            }
+        }
+    }
+}
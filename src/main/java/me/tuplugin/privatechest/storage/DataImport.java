@@ -0,0 +1,48 @@
+package me.tuplugin.privatechest.storage;
+
+import me.tuplugin.privatechest.ProtectionRecord;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Fills a storage with data handed over in batches, replacing everything it held before.
+ * Used by migrations, so the data set never has to be in memory at once.
+ * Obtained from {@link DataStorage#beginImport()}.
+ *
+ * Whether a batch is visible before {@link #finish()} depends on the storage; after a failed or
+ * abandoned import the storage holds an undefined part of the data and should be imported again.
+ *
+ * @since 2.4
+ */
+public interface DataImport extends AutoCloseable {
+
+    /**
+     * Writes a batch of protection records. Records without a password are skipped, as by every save.
+     *
+     * @return true if the batch was written, false otherwise
+     */
+    boolean addRecords(Collection<ProtectionRecord> records);
+
+    /**
+     * Writes a batch of trust lists. Called after the last batch of records.
+     *
+     * @param trustRelations Owner UUID -> trusted UUIDs
+     * @return true if the batch was written, false otherwise
+     */
+    boolean addTrust(Map<String, Set<String>> trustRelations);
+
+    /**
+     * Completes the import.
+     *
+     * @return true if everything imported is stored, false otherwise
+     */
+    boolean finish();
+
+    /**
+     * Releases the import. Called whether or not it finished.
+     */
+    @Override
+    void close();
+}
@@ -1,9 +1,18 @@
 package me.tuplugin.privatechest.storage;
 
+import me.tuplugin.privatechest.OwnerRegistry;
+import me.tuplugin.privatechest.ProtectionRecord;
+import me.tuplugin.privatechest.util.BlockKey;
 import org.bukkit.Location;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * Interface for different data storage implementations.
@@ -22,56 +31,160 @@ public interface DataStorage {
 
     /**
      * Loads all plugin data from storage.
-     * This method loads chest protection data, container names, and trust relationships.
+     * This method loads protection records (owner, password, name, type) and trust relationships.
+     * Records of every world are returned, whether or not the world is loaded.
      * 
-     * @param owners Map to populate with location -> owner UUID data
-     * @param passwords Map to populate with location -> password data
-     * @param containerNames Map to populate with location -> custom name data (can be null to skip)
+     * @param records Receives every protection record read from storage
      * @param trustRelations Map to populate with owner UUID -> Set of trusted UUIDs (can be null to skip)
      * @return true if loading was successful, false otherwise
+     * @since 2.4
+     */
+    boolean loadData(Consumer<ProtectionRecord> records, Map<String, Set<String>> trustRelations);
+
+    /**
+     * Loads the protection records of a single world.
+     * Used when a world is loaded after startup (e.g. by a world manager plugin).
+     *
+     * @param worldName The world name
+     * @param records Receives every protection record of that world
+     * @return true if loading was successful, false otherwise
+     * @since 2.4
      */
-    boolean loadData(Map<Location, String> owners, Map<Location, String> passwords, 
-                     Map<Location, String> containerNames, Map<String, Set<String>> trustRelations);
+    boolean loadWorld(String worldName, Consumer<ProtectionRecord> records);
 
     /**
-     * Saves all plugin data to storage.
-     * This method saves chest protection data, container names, and trust relationships.
+     * Saves plugin data to storage, rewriting what it replaces. Used for migrations;
+     * regular saves go through {@link #applyChanges(ChangeSet)}.
+     * This method saves protection records (owner, password, name, type) and trust relationships.
+     * The stored protections of the given worlds are replaced by the given records; protections
+     * of any other world are left untouched, so data of unloaded worlds survives a save.
      * 
-     * @param owners Map containing location -> owner UUID data
-     * @param passwords Map containing location -> password data
-     * @param containerNames Map containing location -> custom name data (can be null to skip)
+     * @param records The protection records of the saved worlds
+     * @param worlds The worlds whose protections are replaced, or null to replace all stored protections
      * @param trustRelations Map containing owner UUID -> Set of trusted UUIDs (can be null to skip)
      * @return true if saving was successful, false otherwise
+     * @since 2.4
      */
-    boolean saveData(Map<Location, String> owners, Map<Location, String> passwords,
-                     Map<Location, String> containerNames, Map<String, Set<String>> trustRelations);
+    boolean saveData(Collection<ProtectionRecord> records, Set<String> worlds, Map<String, Set<String>> trustRelations);
+
+    /**
+     * Persists the changes made since the last save.
+     * This is the regular save path: its cost follows the number of changes, not the size of the data set.
+     *
+     * @param changes The changed and removed protections and the changed trust owners
+     * @return true if saving was successful, false otherwise
+     * @since 2.4
+     */
+    boolean applyChanges(ChangeSet changes);
 
     /**
      * Legacy method for loading only chest data (for backward compatibility).
-     * Implementations should delegate to the new loadData method with null parameters.
-     * 
-     * @param owners Map to populate with location -> owner UUID data
+     * Double chests fill both halves.
+     *
+     * @param owners Map to populate with location -> owner UUID data (protections of loaded worlds only)
      * @param passwords Map to populate with location -> password data
      * @return true if loading was successful, false otherwise
-     * @deprecated Use {@link #loadData(Map, Map, Map, Map)} instead
+     * @deprecated Use {@link #loadData(Consumer, Map)} instead. Kept for one release for plugins built against 2.3.
      */
     @Deprecated
     default boolean loadData(Map<Location, String> owners, Map<Location, String> passwords) {
-        return loadData(owners, passwords, null, null);
+        return loadData(record -> {
+            Location loc = record.toLocation();
+            if (loc == null) {
+                return;
+            }
+            owners.put(loc, record.getOwnerUUID());
+            passwords.put(loc, record.getPasswordHash());
+            if (record.hasPartner()) {
+                long partner = record.getPartnerKey();
+                Location partnerLoc = new Location(loc.getWorld(), BlockKey.x(partner), BlockKey.y(partner), BlockKey.z(partner));
+                owners.put(partnerLoc, record.getOwnerUUID());
+                passwords.put(partnerLoc, record.getPasswordHash());
+            }
+        }, null);
     }
 
     /**
      * Legacy method for saving only chest data (for backward compatibility).
-     * Implementations should delegate to the new saveData method with null parameters.
-     * 
+     * Replaces all stored protections; every location becomes a protection of its own without
+     * a name or type, and stored trust relations are left untouched.
+     *
      * @param owners Map containing location -> owner UUID data
      * @param passwords Map containing location -> password data
      * @return true if saving was successful, false otherwise
-     * @deprecated Use {@link #saveData(Map, Map, Map, Map)} instead
+     * @deprecated Use {@link #saveData(Collection, Set, Map)} instead. Kept for one release for plugins built against 2.3.
      */
     @Deprecated
     default boolean saveData(Map<Location, String> owners, Map<Location, String> passwords) {
-        return saveData(owners, passwords, null, null);
+        List<ProtectionRecord> records = new ArrayList<>(owners.size());
+        for (Map.Entry<Location, String> entry : owners.entrySet()) {
+            Location loc = entry.getKey();
+            String password = passwords.get(loc);
+            if (loc.getWorld() == null || password == null) {
+                continue;
+            }
+            records.add(new ProtectionRecord(loc.getWorld().getName(), BlockKey.pack(loc.getBlockX(), loc.getBlockY(), loc.getBlockZ()),
+                    OwnerRegistry.getInstance().getOrCreateId(entry.getValue()), password, null, null, 0L));
+        }
+        return saveData(records, null, null);
+    }
+
+    /**
+     * Empties the storage and starts filling it in batches (used by migrations).
+     * By default every batch is saved through {@link #applyChanges(ChangeSet)}; storages whose
+     * saves rewrite whole files override this to write fewer, larger files.
+     *
+     * @return The import, or null if the storage could not be emptied
+     * @since 2.4
+     */
+    default DataImport beginImport() {
+        if (!saveData(Collections.<ProtectionRecord>emptyList(), null, Collections.<String, Set<String>>emptyMap())) {
+            return null;
+        }
+        return new ChangeSetImport(this);
+    }
+
+    /**
+     * Gets the time the stored data was last changed, used to tell if a startup snapshot
+     * still matches it (see {@link SnapshotFile}).
+     *
+     * @return The last modification time in epoch millis, or 0 if unknown (snapshots are then never used)
+     * @since 2.4
+     */
+    default long getLastModified() {
+        return 0L;
+    }
+
+    /**
+     * Moves pending writes into the main data file before a startup snapshot records
+     * {@link #getLastModified()}, so that closing the storage afterwards does not change it.
+     *
+     * @throws IOException If the storage could not be checkpointed
+     * @since 2.4
+     */
+    default void checkpoint() throws IOException {
+    }
+
+    /**
+     * Gets the durability policy of a file backend. The storage writer thread runs the syncs
+     * it deferred once they are due (see {@link DurabilityPolicy#getSyncDelay()}).
+     *
+     * @return The policy, or null if the storage syncs on its own terms (e.g. SQLite)
+     * @since 2.4
+     */
+    default DurabilityPolicy getDurability() {
+        return null;
+    }
+
+    /**
+     * Checks if the storage is reached over the network. Queries of remote storages are kept off
+     * the main thread, since their latency is out of the server's hands.
+     *
+     * @return true for database servers, false for local files
+     * @since 2.4
+     */
+    default boolean isRemote() {
+        return false;
     }
 
     /**
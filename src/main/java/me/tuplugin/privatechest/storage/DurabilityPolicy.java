@@ -0,0 +1,139 @@
+package me.tuplugin.privatechest.storage;
+
+import me.tuplugin.privatechest.PrivateChest;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Decides when writes of the file backends are forced to disk (fsync), trading durability
+ * against I/O cost. Configured by {@code durability.fsync}:
+ * <ul>
+ *   <li>{@code always} - every save is on disk before it counts as written</li>
+ *   <li>{@code interval} - syncs are grouped and run at most every {@code durability.interval-ms}</li>
+ *   <li>{@code shutdown} - syncs only run when the storage closes</li>
+ * </ul>
+ * The policy decides when a save counts as durable: a power loss or OS crash can take back the
+ * latest saves that were not synced yet, never corrupt older ones. Files replaced through
+ * {@link AtomicFileWriter} are always synced before their atomic rename, so the policy only groups
+ * the directory syncs that make the renames durable; the log backend's appends are synced by the
+ * policy and a torn tail is cut off on load.
+ * A crash of the server process loses no save in any mode, but changes still waiting in memory for
+ * the storage writer (up to {@code storage-write-delay}) are lost with it.
+ *
+ * Storages hand written paths to {@link #defer(Path)} and call {@link #commit()} at the end of each
+ * save; the storage writer thread calls {@link #commit()} again once {@link #getSyncDelay()} has passed.
+ *
+ * @since 2.4
+ */
+public final class DurabilityPolicy {
+
+    public enum Mode {
+        ALWAYS, INTERVAL, SHUTDOWN
+    }
+
+    private final Mode mode;
+    private final long intervalMillis;
+
+    // Files and directories written since the last sync. Guarded by this.
+    private final Set<Path> pending = new LinkedHashSet<>();
+    private long lastSync = System.currentTimeMillis();
+
+    public DurabilityPolicy(Mode mode, long intervalMillis) {
+        this.mode = mode;
+        this.intervalMillis = Math.max(0L, intervalMillis);
+    }
+
+    /**
+     * Reads the policy from the config, falling back to {@code always} for unknown modes.
+     */
+    public static DurabilityPolicy fromConfig(PrivateChest plugin) {
+        String name = plugin.getConfig().getString("durability.fsync", "always");
+        Mode mode;
+        try {
+            mode = Mode.valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            plugin.getLogger().warning("[PrivateChest] Unknown durability.fsync mode '" + name + "', using always.");
+            mode = Mode.ALWAYS;
+        }
+        return new DurabilityPolicy(mode, plugin.getConfig().getLong("durability.interval-ms", 1000L));
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Records a file or directory whose latest writes still have to be synced.
+     */
+    public synchronized void defer(Path path) {
+        pending.add(path);
+    }
+
+    /**
+     * Ends a save: syncs everything deferred so far if the policy says it is due.
+     * In {@code always} mode that is every time; several files written by one save share the sync.
+     *
+     * @throws IOException If a file cannot be synced; it stays pending
+     */
+    public synchronized void commit() throws IOException {
+        if (mode == Mode.ALWAYS || (mode == Mode.INTERVAL && getSyncDelay() == 0L)) {
+            flush();
+        }
+    }
+
+    /**
+     * Syncs everything deferred so far, whatever the mode. Called when the storage closes.
+     *
+     * @throws IOException If a file cannot be synced; it stays pending
+     */
+    public synchronized void flush() throws IOException {
+        lastSync = System.currentTimeMillis(); // Also after a failure, so it is retried an interval later
+        while (!pending.isEmpty()) {
+            Path path = pending.iterator().next();
+            sync(path);
+            pending.remove(path);
+        }
+    }
+
+    /**
+     * Gets how long until deferred writes are due for a sync.
+     *
+     * @return The delay in millis, 0 if due now, or Long.MAX_VALUE if nothing is waiting for a timed sync
+     */
+    public synchronized long getSyncDelay() {
+        if (mode != Mode.INTERVAL || pending.isEmpty()) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0L, lastSync + intervalMillis - System.currentTimeMillis());
+    }
+
+    private static void sync(Path path) throws IOException {
+        if (Files.isDirectory(path)) {
+            syncDirectory(path);
+        } else if (Files.exists(path)) {
+            // fsync applies to the file, not the handle, so a fresh channel flushes writes made through others
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+        }
+    }
+
+    /**
+     * Syncs a directory, which makes the files created, renamed or deleted in it durable.
+     * Some platforms (Windows) cannot open directories; there renames are durable on their own.
+     */
+    private static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ignored) {
+            // Not supported on this platform
+        }
+    }
+}
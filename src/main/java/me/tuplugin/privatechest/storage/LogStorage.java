@@ -0,0 +1,689 @@
+package me.tuplugin.privatechest.storage;
+
+import me.tuplugin.privatechest.OwnerRegistry;
+import me.tuplugin.privatechest.PrivateChest;
+import me.tuplugin.privatechest.ProtectionRecord;
+import me.tuplugin.privatechest.enums.ContainerType;
+import me.tuplugin.privatechest.util.LongObjectHashMap;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only binary log storage for chest data.
+ * Every change is one small entry appended to privatechest.log, so a lock or unlock costs
+ * a single sequential write instead of a rewrite or a database round trip.
+ *
+ * On startup the log is replayed into memory. Once it holds more superseded entries than
+ * live ones, it is compacted in the background into a fresh log with a single entry per
+ * live protection and trust owner.
+ *
+ * Each entry is framed as payload length (int), payload, CRC32 of the payload (int).
+ * An entry torn by a crash during an append fails its length or checksum and is cut off on load.
+ * A damaged entry in the middle of the log stops the replay as well; the log is then copied to
+ * privatechest.log.corrupt before it is cut, and the loss is logged as an error.
+ *
+ * @since 2.4
+ */
+public class LogStorage implements DataStorage {
+
+    private static final byte OP_PUT = 1;
+    private static final byte OP_REMOVE = 2;
+    private static final byte OP_TRUST = 3;
+
+    // Frame overhead: length before and checksum after the payload
+    private static final int FRAME_OVERHEAD = 8;
+    // No real entry comes close; a larger length means the frame is damaged
+    private static final int MAX_ENTRY_SIZE = 1 << 20;
+    // Small logs are not worth compacting, whatever their garbage ratio
+    private static final int MIN_GARBAGE = 1024;
+
+    private final PrivateChest plugin;
+    private File logFile;
+    private File compactFile;
+    private volatile FileChannel channel;
+    private double compactionRatio;
+    private DurabilityPolicy durability;
+
+    // Live state as encoded entries, so replay, loading and compaction share one format. Guarded by this.
+    private final Map<String, LongObjectHashMap<byte[]>> records = new HashMap<>();
+    private final Map<String, byte[]> trust = new HashMap<>();
+    private int liveRecords;
+    private long logEntries;
+
+    private Thread compactor;
+    // Entries appended while the compactor writes its snapshot; carried over into the new log
+    private List<byte[]> appendedDuringCompaction;
+
+    public LogStorage(PrivateChest plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public synchronized boolean initialize() {
+        try {
+            logFile = new File(plugin.getDataFolder(), "privatechest.log");
+            compactFile = new File(plugin.getDataFolder(), "privatechest.log.compact");
+            compactionRatio = Math.max(0.1, plugin.getConfig().getDouble("log-storage.compaction-ratio", 1.0));
+            durability = DurabilityPolicy.fromConfig(plugin);
+
+            // Left over from a compaction that did not finish; the log itself is still complete
+            Files.deleteIfExists(compactFile.toPath());
+
+            long valid = logFile.exists() ? replay() : 0L;
+            long size = logFile.exists() ? logFile.length() : 0L;
+            if (valid < size) {
+                if (isTornTail(valid, size)) {
+                    plugin.getLogger().warning("[PrivateChest] Discarding " + (size - valid) +
+                            " bytes of an incomplete entry at the end of privatechest.log.");
+                } else {
+                    // Damage in the middle: the entries after it are intact but cannot be framed
+                    // reliably, so the whole log is kept aside for recovery before it is cut
+                    File corruptFile = new File(plugin.getDataFolder(), "privatechest.log.corrupt");
+                    Files.copy(logFile.toPath(), corruptFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                    plugin.getLogger().severe("[PrivateChest] privatechest.log is damaged at byte " + valid + " of " + size +
+                            "! Only the " + logEntries + " entries before the damage were loaded; the protections saved after it are missing."
+                            + " The damaged log was copied to " + corruptFile.getName() + ".");
+                }
+            }
+            openChannel();
+            if (valid < channel.size()) {
+                channel.truncate(valid);
+            }
+
+            plugin.getLogger().info("[PrivateChest] Log storage initialized with " + liveRecords +
+                    " locked chests (" + logEntries + " log entries).");
+            return true;
+        } catch (IOException e) {
+            plugin.getLogger().severe("[PrivateChest] Failed to initialize log storage!");
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Replays the log into memory.
+     *
+     * @return The length of the intact part of the log
+     */
+    private long replay() throws IOException {
+        long valid = 0L;
+        long size = logFile.length();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(logFile.toPath())))) {
+            while (valid + FRAME_OVERHEAD <= size) {
+                int length = in.readInt();
+                if (length <= 0 || length > MAX_ENTRY_SIZE || valid + FRAME_OVERHEAD + length > size) {
+                    break;
+                }
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                if (in.readInt() != checksum(payload)) {
+                    break;
+                }
+                applyEntry(payload);
+                logEntries++;
+                valid += FRAME_OVERHEAD + length;
+            }
+        }
+        return valid;
+    }
+
+    /**
+     * Checks if the bytes after the intact part of the log are what a crash during the last append
+     * leaves behind: a frame cut short by the end of the file, a last frame failing its checksum,
+     * or space the file system allocated but never wrote (zeros). Anything else is damage in the middle.
+     *
+     * @param valid The length of the intact part
+     * @param size The length of the file
+     */
+    private boolean isTornTail(long valid, long size) throws IOException {
+        if (size - valid < FRAME_OVERHEAD) {
+            return true;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(logFile.toPath())))) {
+            skipFully(in, valid);
+            int length = in.readInt();
+            if (length > 0 && length <= MAX_ENTRY_SIZE && valid + FRAME_OVERHEAD + length >= size) {
+                return true; // The last frame reaches the end of the file
+            }
+            if (length != 0) {
+                return false;
+            }
+            for (long pos = valid + 4; pos < size; pos++) {
+                if (in.readByte() != 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static void skipFully(DataInputStream in, long bytes) throws IOException {
+        while (bytes > 0) {
+            long skipped = in.skip(bytes);
+            if (skipped <= 0) {
+                throw new IOException("Unexpected end of privatechest.log");
+            }
+            bytes -= skipped;
+        }
+    }
+
+    @Override
+    public synchronized boolean loadData(Consumer<ProtectionRecord> consumer, Map<String, Set<String>> trustRelations) {
+        if (!isReady()) {
+            plugin.getLogger().warning("[PrivateChest] Log storage is not ready!");
+            return false;
+        }
+
+        try {
+            for (LongObjectHashMap<byte[]> world : records.values()) {
+                for (byte[] payload : world.values()) {
+                    consumer.accept(decodeRecord(payload));
+                }
+            }
+
+            if (trustRelations != null) {
+                trustRelations.clear();
+                for (byte[] payload : trust.values()) {
+                    decodeTrust(payload, trustRelations);
+                }
+            }
+
+            plugin.getLogger().info("[PrivateChest] Loaded " + liveRecords + " locked chests from log storage.");
+            return true;
+        } catch (IOException e) {
+            plugin.getLogger().severe("[PrivateChest] Failed to load data from log storage!");
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    @Override
+    public synchronized boolean loadWorld(String worldName, Consumer<ProtectionRecord> consumer) {
+        if (!isReady()) {
+            plugin.getLogger().warning("[PrivateChest] Log storage is not ready!");
+            return false;
+        }
+
+        LongObjectHashMap<byte[]> world = records.get(worldName);
+        if (world == null) {
+            return true;
+        }
+
+        try {
+            for (byte[] payload : world.values()) {
+                consumer.accept(decodeRecord(payload));
+            }
+            plugin.getLogger().info("[PrivateChest] Loaded " + world.size() + " locked chests for world '" + worldName + "' from log storage.");
+            return true;
+        } catch (IOException e) {
+            plugin.getLogger().severe("[PrivateChest] Failed to load world '" + worldName + "' from log storage!");
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Appends one entry per change and syncs the log once for the whole batch,
+     * or later if the durability policy groups syncs.
+     */
+    @Override
+    public synchronized boolean applyChanges(ChangeSet changes) {
+        if (!isReady()) {
+            plugin.getLogger().warning("[PrivateChest] Log storage is not ready!");
+            return false;
+        }
+
+        try {
+            List<byte[]> entries = new ArrayList<>(changes.size());
+            for (ProtectionRecord record : changes.getRemovals()) {
+                entries.add(encodeRemove(record.getWorld(), record.getBlockKey()));
+            }
+            for (ProtectionRecord record : changes.getUpserts()) {
+                if (record.getPasswordHash() != null) {
+                    entries.add(encodePut(record));
+                }
+            }
+            for (Map.Entry<String, Set<String>> owner : changes.getTrustChanges().entrySet()) {
+                entries.add(encodeTrust(owner.getKey(), owner.getValue()));
+            }
+
+            append(entries);
+            maybeCompact();
+            return true;
+        } catch (IOException e) {
+            plugin.getLogger().severe("[PrivateChest] Failed to append changes to log storage!");
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Replaces the stored protections of the given worlds (or all of them) and, if given, all trust
+     * relations, then rewrites the log. Only used for migrations.
+     */
+    @Override
+    public boolean saveData(Collection<ProtectionRecord> recordsToSave, Set<String> worlds, Map<String, Set<String>> trustRelations) {
+        awaitCompaction();
+
+        synchronized (this) {
+            if (!isReady()) {
+                plugin.getLogger().warning("[PrivateChest] Log storage is not ready!");
+                return false;
+            }
+
+            try {
+                if (worlds == null) {
+                    records.clear();
+                } else {
+                    records.keySet().removeAll(worlds);
+                }
+                if (trustRelations != null) {
+                    trust.clear();
+                }
+                liveRecords = 0;
+                for (LongObjectHashMap<byte[]> world : records.values()) {
+                    liveRecords += world.size();
+                }
+
+                for (ProtectionRecord record : recordsToSave) {
+                    if (record.getPasswordHash() != null) {
+                        applyEntry(encodePut(record));
+                    }
+                }
+                if (trustRelations != null) {
+                    for (Map.Entry<String, Set<String>> owner : trustRelations.entrySet()) {
+                        applyEntry(encodeTrust(owner.getKey(), owner.getValue()));
+                    }
+                }
+
+                List<byte[]> snapshot = snapshotEntries();
+                writeEntries(compactFile, snapshot);
+                replaceLog();
+                logEntries = snapshot.size();
+                return true;
+            } catch (IOException e) {
+                plugin.getLogger().severe("[PrivateChest] Failed to save data to log storage!");
+                e.printStackTrace();
+                return false;
+            }
+        }
+    }
+
+    // --- Log Writing ---
+
+    private void append(List<byte[]> entries) throws IOException {
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        int bytes = 0;
+        for (byte[] payload : entries) {
+            bytes += FRAME_OVERHEAD + payload.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(bytes);
+        for (byte[] payload : entries) {
+            putFrame(buffer, payload);
+        }
+        buffer.flip();
+        long start = channel.position();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            if (durability.getMode() == DurabilityPolicy.Mode.ALWAYS) {
+                channel.force(false); // Through the open channel; the policy would open a new one
+            } else {
+                durability.defer(logFile.toPath());
+                durability.commit();
+            }
+        } catch (IOException e) {
+            // Cut off a partly written batch, so later appends do not land behind a torn entry
+            try {
+                channel.truncate(start);
+                channel.position(start);
+            } catch (IOException ignored) {
+                // The torn entry is cut off on the next load instead
+            }
+            throw e;
+        }
+
+        // Memory follows the log only once the entries are on disk
+        for (byte[] payload : entries) {
+            applyEntry(payload);
+        }
+        logEntries += entries.size();
+        if (appendedDuringCompaction != null) {
+            appendedDuringCompaction.addAll(entries);
+        }
+    }
+
+    private static void putFrame(ByteBuffer buffer, byte[] payload) {
+        buffer.putInt(payload.length);
+        buffer.put(payload);
+        buffer.putInt(checksum(payload));
+    }
+
+    private static int checksum(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        return (int) crc.getValue();
+    }
+
+    private static void writeEntries(File file, List<byte[]> entries) throws IOException {
+        try (FileChannel out = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            appendEntries(out, entries);
+        }
+    }
+
+    private static void appendEntries(FileChannel out, List<byte[]> entries) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        for (byte[] payload : entries) {
+            int frameSize = FRAME_OVERHEAD + payload.length;
+            if (buffer.remaining() < frameSize) {
+                flush(out, buffer);
+                if (buffer.capacity() < frameSize) {
+                    buffer = ByteBuffer.allocate(frameSize);
+                }
+            }
+            putFrame(buffer, payload);
+        }
+        flush(out, buffer);
+        out.force(true);
+    }
+
+    private static void flush(FileChannel out, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void openChannel() throws IOException {
+        channel = FileChannel.open(logFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+    }
+
+    /**
+     * Moves the compacted file over the log and reopens it for appending.
+     * If the move fails the old log, which holds every entry as well, stays in use.
+     */
+    private void replaceLog() throws IOException {
+        channel.close();
+        try {
+            Files.move(compactFile.toPath(), logFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            try {
+                openChannel();
+            } catch (IOException e) {
+                channel = null;
+                throw e;
+            }
+        }
+
+        // The compacted file was synced before the move; the move itself is durable once its directory is
+        durability.defer(logFile.getAbsoluteFile().getParentFile().toPath());
+        durability.commit();
+    }
+
+    // --- Compaction ---
+
+    private int liveEntries() {
+        return liveRecords + trust.size();
+    }
+
+    private List<byte[]> snapshotEntries() {
+        List<byte[]> snapshot = new ArrayList<>(liveEntries());
+        for (LongObjectHashMap<byte[]> world : records.values()) {
+            snapshot.addAll(world.values());
+        }
+        snapshot.addAll(trust.values());
+        return snapshot;
+    }
+
+    /**
+     * Starts a background compaction once superseded entries outnumber the live ones
+     * (times the configured ratio). Called with the lock held.
+     */
+    private void maybeCompact() {
+        long garbage = logEntries - liveEntries();
+        if (compactor != null || garbage < MIN_GARBAGE || garbage < liveEntries() * compactionRatio) {
+            return;
+        }
+
+        // The entries are immutable, so a shallow copy is a consistent snapshot
+        List<byte[]> snapshot = snapshotEntries();
+        appendedDuringCompaction = new ArrayList<>();
+        compactor = new Thread(() -> compact(snapshot), "PrivateChest-Compactor");
+        compactor.start();
+    }
+
+    private void compact(List<byte[]> snapshot) {
+        boolean written = false;
+        try {
+            writeEntries(compactFile, snapshot);
+            written = true;
+        } catch (IOException e) {
+            plugin.getLogger().severe("[PrivateChest] Failed to write compacted log!");
+            e.printStackTrace();
+        }
+        finishCompaction(written, snapshot.size());
+    }
+
+    private synchronized void finishCompaction(boolean written, int snapshotEntries) {
+        List<byte[]> appended = appendedDuringCompaction;
+        appendedDuringCompaction = null;
+        compactor = null;
+
+        try {
+            if (!written || channel == null) {
+                Files.deleteIfExists(compactFile.toPath());
+                return;
+            }
+
+            try (FileChannel out = FileChannel.open(compactFile.toPath(), StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                appendEntries(out, appended);
+            }
+            long before = logEntries;
+            replaceLog();
+            logEntries = snapshotEntries + appended.size();
+            plugin.getLogger().info("[PrivateChest] Compacted privatechest.log from " + before + " to " + logEntries + " entries.");
+        } catch (IOException e) {
+            plugin.getLogger().severe("[PrivateChest] Failed to replace the log with its compacted copy!");
+            e.printStackTrace();
+        }
+    }
+
+    private void awaitCompaction() {
+        Thread running;
+        synchronized (this) {
+            running = compactor;
+        }
+        if (running != null) {
+            try {
+                running.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // --- Entry Encoding ---
+
+    /**
+     * Applies one log entry to the in-memory state.
+     */
+    private void applyEntry(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte op = in.readByte();
+        switch (op) {
+            case OP_PUT: {
+                String world = in.readUTF();
+                long blockKey = in.readLong();
+                if (records.computeIfAbsent(world, k -> new LongObjectHashMap<>()).put(blockKey, payload) == null) {
+                    liveRecords++;
+                }
+                break;
+            }
+            case OP_REMOVE: {
+                LongObjectHashMap<byte[]> world = records.get(in.readUTF());
+                if (world != null && world.remove(in.readLong()) != null) {
+                    liveRecords--;
+                }
+                break;
+            }
+            case OP_TRUST: {
+                String owner = in.readUTF();
+                if (in.readInt() == 0) {
+                    trust.remove(owner);
+                } else {
+                    trust.put(owner, payload);
+                }
+                break;
+            }
+            default:
+                // A valid checksum with an unknown entry type means a newer version wrote the log - do not cut it off
+                throw new IOException("Unknown log entry type " + op + " (written by a newer version?)");
+        }
+    }
+
+    private static byte[] encodePut(ProtectionRecord record) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(OP_PUT);
+        out.writeUTF(record.getWorld());
+        out.writeLong(record.getBlockKey());
+        out.writeLong(record.getPartnerKey());
+        out.writeUTF(record.getOwnerUUID());
+        out.writeUTF(record.getPasswordHash());
+        out.writeUTF(record.getType() != null ? record.getType().name() : "");
+        String name = record.getName();
+        out.writeUTF(name != null ? name.trim() : "");
+        out.writeLong(record.getCreatedAt());
+        return bytes.toByteArray();
+    }
+
+    private static byte[] encodeRemove(String world, long blockKey) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(OP_REMOVE);
+        out.writeUTF(world);
+        out.writeLong(blockKey);
+        return bytes.toByteArray();
+    }
+
+    private static byte[] encodeTrust(String owner, Set<String> trusted) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(48 + trusted.size() * 38);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(OP_TRUST);
+        out.writeUTF(owner);
+        out.writeInt(trusted.size());
+        for (String uuid : trusted) {
+            out.writeUTF(uuid);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static ProtectionRecord decodeRecord(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        in.readByte();
+        String world = in.readUTF();
+        long blockKey = in.readLong();
+        long partnerKey = in.readLong();
+        int ownerId = OwnerRegistry.getInstance().getOrCreateId(in.readUTF());
+        String password = in.readUTF();
+        ContainerType type = parseType(in.readUTF());
+        String name = in.readUTF();
+        long createdAt = in.readLong();
+        return new ProtectionRecord(world, blockKey, partnerKey, ownerId, password,
+                name.isEmpty() ? null : name, type, createdAt);
+    }
+
+    private static void decodeTrust(byte[] payload, Map<String, Set<String>> trustRelations) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        in.readByte();
+        String owner = in.readUTF();
+        int count = in.readInt();
+        Set<String> trusted = new HashSet<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            trusted.add(in.readUTF());
+        }
+        trustRelations.put(owner, trusted);
+    }
+
+    private static ContainerType parseType(String typeName) {
+        if (typeName.isEmpty()) {
+            return null;
+        }
+        try {
+            return ContainerType.valueOf(typeName);
+        } catch (IllegalArgumentException e) {
+            return null; // Unknown type (e.g. written by a newer version) - resolved from the block later
+        }
+    }
+
+    @Override
+    public void close() {
+        // Let a running compaction finish, so the log is never left half replaced
+        awaitCompaction();
+
+        synchronized (this) {
+            if (channel != null) {
+                try {
+                    durability.flush();
+                } catch (IOException e) {
+                    plugin.getLogger().warning("[PrivateChest] Error syncing log storage: " + e.getMessage());
+                }
+                try {
+                    channel.close();
+                    plugin.getLogger().info("[PrivateChest] Log storage closed successfully.");
+                } catch (IOException e) {
+                    plugin.getLogger().warning("[PrivateChest] Error closing log storage: " + e.getMessage());
+                } finally {
+                    channel = null;
+                }
+            }
+        }
+    }
+
+    @Override
+    public DurabilityPolicy getDurability() {
+        return durability;
+    }
+
+    @Override
+    public long getLastModified() {
+        return logFile != null ? logFile.lastModified() : 0L;
+    }
+
+    @Override
+    public String getStorageType() {
+        return "Log";
+    }
+
+    @Override
+    public boolean isReady() {
+        return channel != null && channel.isOpen();
+    }
+}
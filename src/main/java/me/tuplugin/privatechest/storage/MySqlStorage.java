@@ -0,0 +1,913 @@
+package me.tuplugin.privatechest.storage;
+
+import me.tuplugin.privatechest.OwnerRegistry;
+import me.tuplugin.privatechest.PrivateChest;
+import me.tuplugin.privatechest.ProtectionRecord;
+import me.tuplugin.privatechest.enums.ContainerType;
+import me.tuplugin.privatechest.util.BlockKey;
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * MySQL/MariaDB storage for networks where several servers share one protection store.
+ *
+ * Connections come from a small bounded {@link ConnectionPool}; every save is one transaction
+ * of batched prepared statements. The schema follows the SQLite layout: rows keyed by world id,
+ * packed chunk and block key (clustered by InnoDB), plus owner and partner indexes.
+ * Saves run on the storage writer thread and loads on an async task (see {@link #isRemote()}),
+ * so the main thread only waits for the database to connect at startup.
+ *
+ * Every save also appends one row per changed protection and trust owner to a change log numbered
+ * by an auto-increment sequence. Other servers poll it for rows past the last sequence they saw
+ * (see {@link #pollChanges(RemoteChangeConsumer)}) and re-read the current state of what changed.
+ *
+ * The SQL sticks to what MySQL, MariaDB and H2 in MySQL mode all accept, so setting {@code mysql.url}
+ * to an embedded H2 database (e.g. {@code jdbc:h2:./plugins/PrivateChest/test;MODE=MySQL}) runs this
+ * storage locally without a database server.
+ *
+ * @since 2.4
+ */
+public class MySqlStorage implements SharedDataStorage {
+
+    private static final String[] DRIVERS = {"com.mysql.cj.jdbc.Driver", "com.mysql.jdbc.Driver", "org.mariadb.jdbc.Driver", "org.h2.Driver"};
+
+    /** Version of the newest schema; bump it together with a new step in {@link #migrateSchema(Connection)}. */
+    private static final int SCHEMA_VERSION = 2;
+    private static final String SCHEMA_TABLE_NAME = "privatechest_schema_version";
+
+    // Each world name is stored once; protection rows refer to it by id
+    private static final String WORLD_TABLE_NAME = "privatechest_worlds";
+    private static final String CREATE_WORLD_TABLE_SQL =
+            "CREATE TABLE IF NOT EXISTS " + WORLD_TABLE_NAME + " (" +
+                    "id INT NOT NULL AUTO_INCREMENT, " +
+                    "name VARCHAR(128) NOT NULL, " +
+                    "PRIMARY KEY (id), " +
+                    "CONSTRAINT " + WORLD_TABLE_NAME + "_name UNIQUE (name)" +
+                    ")";
+
+    private static final String INSERT_WORLD_SQL =
+            "INSERT IGNORE INTO " + WORLD_TABLE_NAME + " (name) VALUES (?)";
+
+    private static final String SELECT_WORLD_ID_SQL =
+            "SELECT id FROM " + WORLD_TABLE_NAME + " WHERE name = ?";
+
+    // Same key layout as SQLite: a chunk is one range of the clustered primary key
+    private static final String TABLE_NAME = "privatechest_protections";
+    private static final String CREATE_TABLE_SQL =
+            "CREATE TABLE IF NOT EXISTS " + TABLE_NAME + " (" +
+                    "world_id INT NOT NULL, " +
+                    "chunk BIGINT NOT NULL, " +
+                    "block_key BIGINT NOT NULL, " +
+                    "partner_chunk BIGINT NULL, " +
+                    "partner_key BIGINT NULL, " +
+                    "owner VARCHAR(36) NOT NULL, " +
+                    "password VARCHAR(255) NOT NULL, " +
+                    "type VARCHAR(32) NULL, " +
+                    "name VARCHAR(255) NULL, " +
+                    "created BIGINT NOT NULL DEFAULT 0, " +
+                    "PRIMARY KEY (world_id, chunk, block_key), " +
+                    "INDEX " + TABLE_NAME + "_partner (world_id, partner_chunk), " +
+                    "INDEX " + TABLE_NAME + "_owner (owner)" +
+                    ")";
+
+    private static final String TRUST_TABLE_NAME = "privatechest_trust";
+    private static final String CREATE_TRUST_TABLE_SQL =
+            "CREATE TABLE IF NOT EXISTS " + TRUST_TABLE_NAME + " (" +
+                    "owner VARCHAR(36) NOT NULL, " +
+                    "trusted VARCHAR(36) NOT NULL, " +
+                    "PRIMARY KEY (owner, trusted), " +
+                    "INDEX " + TRUST_TABLE_NAME + "_trusted (trusted)" +
+                    ")";
+
+    private static final String UPSERT_SQL =
+            "INSERT INTO " + TABLE_NAME + " (world_id, chunk, block_key, partner_chunk, partner_key, owner, password, type, name, created) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+                    "ON DUPLICATE KEY UPDATE partner_chunk = VALUES(partner_chunk), partner_key = VALUES(partner_key), " +
+                    "owner = VALUES(owner), password = VALUES(password), type = VALUES(type), name = VALUES(name), " +
+                    "created = VALUES(created)";
+
+    private static final String SELECT_ALL_SQL =
+            "SELECT w.name AS world, p.block_key, p.partner_key, p.owner, p.password, p.type, p.name, p.created FROM " +
+                    TABLE_NAME + " p JOIN " + WORLD_TABLE_NAME + " w ON w.id = p.world_id";
+
+    private static final String SELECT_WORLD_SQL = SELECT_ALL_SQL + " WHERE w.name = ?";
+
+    private static final String DELETE_SQL =
+            "DELETE FROM " + TABLE_NAME + " WHERE world_id = ? AND chunk = ? AND block_key = ?";
+
+    private static final String DELETE_WORLD_SQL =
+            "DELETE FROM " + TABLE_NAME + " WHERE world_id = ?";
+
+    private static final String CLEAR_ALL_SQL =
+            "DELETE FROM " + TABLE_NAME;
+
+    private static final String SELECT_TRUST_SQL =
+            "SELECT owner, trusted FROM " + TRUST_TABLE_NAME;
+
+    private static final String INSERT_TRUST_SQL =
+            "INSERT IGNORE INTO " + TRUST_TABLE_NAME + " (owner, trusted) VALUES (?, ?)";
+
+    private static final String DELETE_TRUST_SQL =
+            "DELETE FROM " + TRUST_TABLE_NAME + " WHERE owner = ?";
+
+    private static final String CLEAR_TRUST_SQL =
+            "DELETE FROM " + TRUST_TABLE_NAME;
+
+    private static final String SELECT_BLOCK_SQL = SELECT_ALL_SQL + " WHERE p.world_id = ? AND p.chunk = ? AND p.block_key = ?";
+
+    private static final String SELECT_WORLD_NAME_SQL =
+            "SELECT name FROM " + WORLD_TABLE_NAME + " WHERE id = ?";
+
+    private static final String SELECT_OWNER_TRUST_SQL =
+            "SELECT trusted FROM " + TRUST_TABLE_NAME + " WHERE owner = ?";
+
+    // Change log: one row per protection and trust owner touched by a save, numbered by an auto-increment sequence
+    private static final String CHANGE_TABLE_NAME = "privatechest_changes";
+    private static final String CREATE_CHANGE_TABLE_SQL =
+            "CREATE TABLE IF NOT EXISTS " + CHANGE_TABLE_NAME + " (" +
+                    "seq BIGINT NOT NULL AUTO_INCREMENT, " +
+                    "server VARCHAR(36) NOT NULL, " +
+                    "kind TINYINT NOT NULL, " +
+                    "world_id INT NULL, " +
+                    "block_key BIGINT NULL, " +
+                    "owner VARCHAR(36) NULL, " +
+                    "changed_at BIGINT NOT NULL, " +
+                    "PRIMARY KEY (seq), " +
+                    "INDEX " + CHANGE_TABLE_NAME + "_changed_at (changed_at)" +
+                    ")";
+
+    private static final int CHANGE_PROTECTION = 0;
+    private static final int CHANGE_TRUST = 1;
+
+    private static final String INSERT_CHANGE_SQL =
+            "INSERT INTO " + CHANGE_TABLE_NAME + " (server, kind, world_id, block_key, owner, changed_at) VALUES (?, ?, ?, ?, ?, ?)";
+
+    private static final String SELECT_CHANGES_SQL =
+            "SELECT seq, server, kind, world_id, block_key, owner FROM " + CHANGE_TABLE_NAME;
+
+    private static final String SELECT_LAST_SEQ_SQL =
+            "SELECT MAX(seq) FROM " + CHANGE_TABLE_NAME;
+
+    private static final String PRUNE_CHANGES_SQL =
+            "DELETE FROM " + CHANGE_TABLE_NAME + " WHERE changed_at < ? AND seq < ?";
+
+    private static final int POLL_BATCH_SIZE = 1000;
+
+    // Sequence numbers are assigned at insert but become visible at commit, so a number skipped by a
+    // poll may belong to a save still in progress. Skipped numbers are asked for again until they
+    // show up or this long has passed (far longer than any save transaction takes).
+    private static final long GAP_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(60);
+    private static final int MAX_GAPS = 1000;
+
+    private static final long PRUNE_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    private final PrivateChest plugin;
+    private volatile ConnectionPool pool;
+
+    // World ids never change once assigned, so each is looked up once
+    private final Map<String, Integer> worldIds = new ConcurrentHashMap<>();
+    private final Map<Integer, String> worldNames = new ConcurrentHashMap<>();
+
+    // Tells this instance's change log rows apart from other servers'
+    private final String serverId = UUID.randomUUID().toString();
+    private long changeRetentionMillis;
+
+    // Poll position; guarded by this
+    private long lastSeenSeq;
+    private Map<Long, Long> gaps = new HashMap<>(); // Skipped sequence number -> when it was first skipped
+    private long nextPrune;
+
+    public MySqlStorage(PrivateChest plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public boolean initialize() {
+        ConfigurationSection config = plugin.getConfig().getConfigurationSection("mysql");
+        String url = config != null ? config.getString("url", "") : "";
+        if (url == null || url.isEmpty()) {
+            url = "jdbc:mysql://" + getString(config, "host", "localhost") + ":" + getInt(config, "port", 3306) + "/" +
+                    getString(config, "database", "privatechest") + "?" +
+                    getString(config, "properties", "useSSL=false&useUnicode=true&characterEncoding=utf8&rewriteBatchedStatements=true&cachePrepStmts=true");
+        }
+
+        Properties properties = new Properties();
+        properties.setProperty("user", getString(config, "username", "root"));
+        properties.setProperty("password", getString(config, "password", ""));
+
+        for (String driver : DRIVERS) {
+            try {
+                Class.forName(driver);
+            } catch (ClassNotFoundException ignored) {
+                // Only the driver matching the URL needs to be present
+            }
+        }
+
+        changeRetentionMillis = TimeUnit.MINUTES.toMillis(Math.max(1, getInt(config, "change-log-retention-minutes", 60)));
+        pool = new ConnectionPool(url, properties, getInt(config, "pool-size", 4), getInt(config, "connection-timeout-ms", 5000));
+        try (ConnectionPool.Lease lease = pool.borrow()) {
+            migrateSchema(lease.connection());
+            // Read before the data is loaded, so changes saved during the load are polled again rather than missed
+            synchronized (this) {
+                lastSeenSeq = readLastSeq(lease.connection());
+                gaps = new HashMap<>();
+                nextPrune = System.currentTimeMillis() + PRUNE_INTERVAL_MILLIS;
+            }
+            plugin.getLogger().info("[PrivateChest] MySQL storage initialized successfully.");
+            return true;
+        } catch (Exception e) {
+            plugin.getLogger().severe("[PrivateChest] Failed to initialize MySQL storage!");
+            e.printStackTrace();
+            pool.close();
+            pool = null;
+            return false;
+        }
+    }
+
+    private static String getString(ConfigurationSection config, String path, String def) {
+        return config != null ? config.getString(path, def) : def;
+    }
+
+    private static int getInt(ConfigurationSection config, String path, int def) {
+        return config != null ? config.getInt(path, def) : def;
+    }
+
+    @Override
+    public boolean loadData(Consumer<ProtectionRecord> records, Map<String, Set<String>> trustRelations) {
+        if (!isReady()) {
+            plugin.getLogger().warning("[PrivateChest] MySQL storage is not ready!");
+            return false;
+        }
+
+        try (ConnectionPool.Lease lease = pool.borrow();
+             Statement stmt = lease.connection().createStatement()) {
+            stmt.setFetchSize(1000);
+            int loaded = 0;
+            try (ResultSet rs = stmt.executeQuery(SELECT_ALL_SQL)) {
+                while (rs.next()) {
+                    records.accept(readRecord(rs));
+                    loaded++;
+                }
+            }
+            plugin.getLogger().info("[PrivateChest] Loaded " + loaded + " locked chests from MySQL storage.");
+
+            if (trustRelations != null) {
+                trustRelations.clear();
+                int relations = 0;
+                try (ResultSet rs = stmt.executeQuery(SELECT_TRUST_SQL)) {
+                    while (rs.next()) {
+                        trustRelations.computeIfAbsent(rs.getString("owner"), k -> new HashSet<>()).add(rs.getString("trusted"));
+                        relations++;
+                    }
+                }
+                plugin.getLogger().info("[PrivateChest] Loaded " + relations + " trust relations from MySQL storage.");
+            }
+            return true;
+        } catch (SQLException e) {
+            plugin.getLogger().severe("[PrivateChest] Failed to load data from MySQL storage!");
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    @Override
+    public boolean loadWorld(String worldName, Consumer<ProtectionRecord> records) {
+        if (!isReady()) {
+            plugin.getLogger().warning("[PrivateChest] MySQL storage is not ready!");
+            return false;
+        }
+
+        try (ConnectionPool.Lease lease = pool.borrow();
+             PreparedStatement pstmt = lease.connection().prepareStatement(SELECT_WORLD_SQL)) {
+            pstmt.setString(1, worldName);
+            int loaded = 0;
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    records.accept(readRecord(rs));
+                    loaded++;
+                }
+            }
+
+            plugin.getLogger().info("[PrivateChest] Loaded " + loaded + " locked chests for world '" + worldName + "' from MySQL storage.");
+            return true;
+        } catch (SQLException e) {
+            plugin.getLogger().severe("[PrivateChest] Failed to load world '" + worldName + "' from MySQL storage!");
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Writes the changed rows, deletes the removed ones and replaces the trust lists
+     * of the changed owners, all in one transaction and one batch per statement.
+     */
+    @Override
+    public boolean applyChanges(ChangeSet changes) {
+        if (!isReady()) {
+            plugin.getLogger().warning("[PrivateChest] MySQL storage is not ready!");
+            return false;
+        }
+
+        try (ConnectionPool.Lease lease = pool.borrow()) {
+            Connection connection = lease.connection();
+            resolveWorldIds(connection, changes.getUpserts());
+
+            connection.setAutoCommit(false);
+            if (!changes.getRemovals().isEmpty()) {
+                try (PreparedStatement pstmt = connection.prepareStatement(DELETE_SQL)) {
+                    boolean batched = false;
+                    for (ProtectionRecord record : changes.getRemovals()) {
+                        Integer worldId = lookupWorldId(connection, record.getWorld());
+                        if (worldId == null) {
+                            continue; // Nothing was ever stored for this world
+                        }
+                        pstmt.setInt(1, worldId);
+                        pstmt.setLong(2, BlockKey.chunkOf(record.getBlockKey()));
+                        pstmt.setLong(3, record.getBlockKey());
+                        pstmt.addBatch();
+                        batched = true;
+                    }
+                    if (batched) {
+                        pstmt.executeBatch();
+                    }
+                }
+            }
+
+            upsertRecords(connection, changes.getUpserts());
+
+            if (!changes.getTrustChanges().isEmpty()) {
+                try (PreparedStatement pstmt = connection.prepareStatement(DELETE_TRUST_SQL)) {
+                    for (String owner : changes.getTrustChanges().keySet()) {
+                        pstmt.setString(1, owner);
+                        pstmt.addBatch();
+                    }
+                    pstmt.executeBatch();
+                }
+                insertTrust(connection, changes.getTrustChanges());
+            }
+
+            logChanges(connection, changes);
+
+            connection.commit();
+            connection.setAutoCommit(true);
+            return true;
+        } catch (SQLException e) {
+            // Returning the connection to the pool rolls the transaction back
+            plugin.getLogger().severe("[PrivateChest] Failed to save changes to MySQL storage!");
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Rewrites the protection records of the given worlds (or the whole table) and, if given,
+     * all trust relations. Only used for migrations; regular saves write changed rows through applyChanges.
+     * Nothing is added to the change log, so other servers see migrated data after their next restart.
+     */
+    @Override
+    public boolean saveData(Collection<ProtectionRecord> records, Set<String> worlds, Map<String, Set<String>> trustRelations) {
+        if (!isReady()) {
+            plugin.getLogger().warning("[PrivateChest] MySQL storage is not ready!");
+            return false;
+        }
+
+        try (ConnectionPool.Lease lease = pool.borrow()) {
+            Connection connection = lease.connection();
+            resolveWorldIds(connection, records);
+
+            connection.setAutoCommit(false);
+            if (worlds == null) {
+                try (Statement stmt = connection.createStatement()) {
+                    stmt.execute(CLEAR_ALL_SQL);
+                }
+            } else {
+                try (PreparedStatement pstmt = connection.prepareStatement(DELETE_WORLD_SQL)) {
+                    boolean batched = false;
+                    for (String world : worlds) {
+                        Integer worldId = lookupWorldId(connection, world);
+                        if (worldId != null) {
+                            pstmt.setInt(1, worldId);
+                            pstmt.addBatch();
+                            batched = true;
+                        }
+                    }
+                    if (batched) {
+                        pstmt.executeBatch();
+                    }
+                }
+            }
+
+            upsertRecords(connection, records);
+
+            if (trustRelations != null) {
+                try (Statement stmt = connection.createStatement()) {
+                    stmt.execute(CLEAR_TRUST_SQL);
+                }
+                insertTrust(connection, trustRelations);
+            }
+
+            connection.commit();
+            connection.setAutoCommit(true);
+            return true;
+        } catch (SQLException e) {
+            plugin.getLogger().severe("[PrivateChest] Failed to save data to MySQL storage!");
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Empties the tables and inserts every batch in its own transaction. Like saveData, nothing
+     * is added to the change log: a migration would otherwise flood the other servers' polls.
+     */
+    @Override
+    public DataImport beginImport() {
+        if (!saveData(Collections.<ProtectionRecord>emptyList(), null, Collections.<String, Set<String>>emptyMap())) {
+            return null;
+        }
+
+        return new DataImport() {
+            @Override
+            public boolean addRecords(Collection<ProtectionRecord> records) {
+                return importBatch(records, Collections.<String, Set<String>>emptyMap());
+            }
+
+            @Override
+            public boolean addTrust(Map<String, Set<String>> trustRelations) {
+                return importBatch(Collections.<ProtectionRecord>emptyList(), trustRelations);
+            }
+
+            @Override
+            public boolean finish() {
+                return true; // Every batch was committed as it came
+            }
+
+            @Override
+            public void close() {
+                // Nothing held between batches
+            }
+        };
+    }
+
+    private boolean importBatch(Collection<ProtectionRecord> records, Map<String, Set<String>> trustRelations) {
+        if (!isReady()) {
+            plugin.getLogger().warning("[PrivateChest] MySQL storage is not ready!");
+            return false;
+        }
+
+        try (ConnectionPool.Lease lease = pool.borrow()) {
+            Connection connection = lease.connection();
+            resolveWorldIds(connection, records);
+
+            connection.setAutoCommit(false);
+            upsertRecords(connection, records);
+            insertTrust(connection, trustRelations);
+            connection.commit();
+            connection.setAutoCommit(true);
+            return true;
+        } catch (SQLException e) {
+            plugin.getLogger().severe("[PrivateChest] Failed to import data to MySQL storage!");
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    private void upsertRecords(Connection connection, Collection<ProtectionRecord> records) throws SQLException {
+        if (records.isEmpty()) {
+            return;
+        }
+
+        try (PreparedStatement pstmt = connection.prepareStatement(UPSERT_SQL)) {
+            boolean batched = false;
+            for (ProtectionRecord record : records) {
+                if (record.getPasswordHash() == null) {
+                    continue;
+                }
+                long partnerKey = record.getPartnerKey();
+                pstmt.setInt(1, worldIds.get(record.getWorld()));
+                pstmt.setLong(2, BlockKey.chunkOf(record.getBlockKey()));
+                pstmt.setLong(3, record.getBlockKey());
+                if (partnerKey != ProtectionRecord.NO_PARTNER) {
+                    pstmt.setLong(4, BlockKey.chunkOf(partnerKey));
+                    pstmt.setLong(5, partnerKey);
+                } else {
+                    pstmt.setNull(4, Types.BIGINT);
+                    pstmt.setNull(5, Types.BIGINT);
+                }
+                pstmt.setString(6, record.getOwnerUUID());
+                pstmt.setString(7, record.getPasswordHash());
+                if (record.getType() != null) {
+                    pstmt.setString(8, record.getType().name());
+                } else {
+                    pstmt.setNull(8, Types.VARCHAR);
+                }
+                String name = record.getName();
+                if (name != null && !name.trim().isEmpty()) {
+                    pstmt.setString(9, name.trim());
+                } else {
+                    pstmt.setNull(9, Types.VARCHAR);
+                }
+                pstmt.setLong(10, record.getCreatedAt());
+                pstmt.addBatch();
+                batched = true;
+            }
+            if (batched) {
+                pstmt.executeBatch();
+            }
+        }
+    }
+
+    private void insertTrust(Connection connection, Map<String, Set<String>> trustRelations) throws SQLException {
+        try (PreparedStatement pstmt = connection.prepareStatement(INSERT_TRUST_SQL)) {
+            boolean batched = false;
+            for (Map.Entry<String, Set<String>> entry : trustRelations.entrySet()) {
+                for (String trusted : entry.getValue()) {
+                    pstmt.setString(1, entry.getKey());
+                    pstmt.setString(2, trusted);
+                    pstmt.addBatch();
+                    batched = true;
+                }
+            }
+            if (batched) {
+                pstmt.executeBatch();
+            }
+        }
+    }
+
+    /**
+     * Appends the changes of a save to the change log, inside the save transaction,
+     * so a change log row is visible exactly when the data it points to is.
+     */
+    private void logChanges(Connection connection, ChangeSet changes) throws SQLException {
+        long now = System.currentTimeMillis();
+        try (PreparedStatement pstmt = connection.prepareStatement(INSERT_CHANGE_SQL)) {
+            boolean batched = false;
+            for (ProtectionRecord record : changes.getRemovals()) {
+                batched |= addChangeBatch(pstmt, connection, record, now);
+            }
+            for (ProtectionRecord record : changes.getUpserts()) {
+                batched |= addChangeBatch(pstmt, connection, record, now);
+            }
+            for (String owner : changes.getTrustChanges().keySet()) {
+                pstmt.setString(1, serverId);
+                pstmt.setInt(2, CHANGE_TRUST);
+                pstmt.setNull(3, Types.INTEGER);
+                pstmt.setNull(4, Types.BIGINT);
+                pstmt.setString(5, owner);
+                pstmt.setLong(6, now);
+                pstmt.addBatch();
+                batched = true;
+            }
+            if (batched) {
+                pstmt.executeBatch();
+            }
+        }
+    }
+
+    private boolean addChangeBatch(PreparedStatement pstmt, Connection connection, ProtectionRecord record, long now) throws SQLException {
+        Integer worldId = lookupWorldId(connection, record.getWorld());
+        if (worldId == null) {
+            return false; // Removal from a world that was never stored
+        }
+        pstmt.setString(1, serverId);
+        pstmt.setInt(2, CHANGE_PROTECTION);
+        pstmt.setInt(3, worldId);
+        pstmt.setLong(4, record.getBlockKey());
+        pstmt.setNull(5, Types.VARCHAR);
+        pstmt.setLong(6, now);
+        pstmt.addBatch();
+        return true;
+    }
+
+    /**
+     * Reads the change log rows past the last seen sequence number (plus the skipped numbers still
+     * expected), then reports the current stored state of every protection and trust owner they name.
+     * Re-reading the state instead of replaying the rows means a change that is reported twice,
+     * or after a newer one, still ends in the latest state.
+     */
+    @Override
+    public synchronized boolean pollChanges(RemoteChangeConsumer changes) {
+        if (!isReady()) {
+            return false;
+        }
+
+        long now = System.currentTimeMillis();
+        Map<Long, Long> pendingGaps = new HashMap<>(gaps);
+        pendingGaps.values().removeIf(since -> now - since > GAP_TIMEOUT_MILLIS);
+
+        try (ConnectionPool.Lease lease = pool.borrow()) {
+            Connection connection = lease.connection();
+            List<Long> gapSeqs = new ArrayList<>(pendingGaps.keySet());
+            StringBuilder sql = new StringBuilder(SELECT_CHANGES_SQL).append(" WHERE seq > ?");
+            if (!gapSeqs.isEmpty()) {
+                sql.append(" OR seq IN (?");
+                for (int i = 1; i < gapSeqs.size(); i++) {
+                    sql.append(", ?");
+                }
+                sql.append(')');
+            }
+            sql.append(" ORDER BY seq LIMIT ").append(POLL_BATCH_SIZE);
+
+            long seen = lastSeenSeq;
+            Map<Integer, Set<Long>> changedBlocks = new LinkedHashMap<>(); // World id -> block keys
+            Set<String> changedOwners = new LinkedHashSet<>();
+            try (PreparedStatement pstmt = connection.prepareStatement(sql.toString())) {
+                pstmt.setLong(1, seen);
+                for (int i = 0; i < gapSeqs.size(); i++) {
+                    pstmt.setLong(i + 2, gapSeqs.get(i));
+                }
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        long seq = rs.getLong("seq");
+                        if (seq > seen) {
+                            // A jump larger than the gap limit is not a save in progress (e.g. a reset counter)
+                            if (seq - seen - 1 <= MAX_GAPS) {
+                                for (long skipped = seen + 1; skipped < seq && pendingGaps.size() < MAX_GAPS; skipped++) {
+                                    pendingGaps.put(skipped, now);
+                                }
+                            }
+                            seen = seq;
+                        } else {
+                            pendingGaps.remove(seq);
+                        }
+
+                        if (serverId.equals(rs.getString("server"))) {
+                            continue; // Already in this server's memory
+                        }
+                        if (rs.getInt("kind") == CHANGE_TRUST) {
+                            changedOwners.add(rs.getString("owner"));
+                        } else {
+                            changedBlocks.computeIfAbsent(rs.getInt("world_id"), k -> new LinkedHashSet<>()).add(rs.getLong("block_key"));
+                        }
+                    }
+                }
+            }
+
+            if (!changedBlocks.isEmpty()) {
+                try (PreparedStatement pstmt = connection.prepareStatement(SELECT_BLOCK_SQL)) {
+                    for (Map.Entry<Integer, Set<Long>> entry : changedBlocks.entrySet()) {
+                        String worldName = lookupWorldName(connection, entry.getKey());
+                        if (worldName == null) {
+                            continue;
+                        }
+                        for (long blockKey : entry.getValue()) {
+                            pstmt.setInt(1, entry.getKey());
+                            pstmt.setLong(2, BlockKey.chunkOf(blockKey));
+                            pstmt.setLong(3, blockKey);
+                            ProtectionRecord current = null;
+                            try (ResultSet rs = pstmt.executeQuery()) {
+                                if (rs.next()) {
+                                    current = readRecord(rs);
+                                }
+                            }
+                            changes.protectionChanged(worldName, blockKey, current);
+                        }
+                    }
+                }
+            }
+
+            if (!changedOwners.isEmpty()) {
+                try (PreparedStatement pstmt = connection.prepareStatement(SELECT_OWNER_TRUST_SQL)) {
+                    for (String owner : changedOwners) {
+                        pstmt.setString(1, owner);
+                        Set<String> trusted = new HashSet<>();
+                        try (ResultSet rs = pstmt.executeQuery()) {
+                            while (rs.next()) {
+                                trusted.add(rs.getString("trusted"));
+                            }
+                        }
+                        changes.trustChanged(owner, trusted);
+                    }
+                }
+            }
+
+            lastSeenSeq = seen;
+            gaps = pendingGaps;
+
+            if (now >= nextPrune) {
+                nextPrune = now + PRUNE_INTERVAL_MILLIS;
+                pruneChanges(connection, now);
+            }
+            return true;
+        } catch (SQLException e) {
+            plugin.getLogger().severe("[PrivateChest] Failed to poll changes from MySQL storage!");
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Deletes change log rows older than the retention time. The newest row is always kept:
+     * some MySQL versions restart the auto-increment counter after the highest remaining row,
+     * and an emptied table would hand out sequence numbers that servers have already seen.
+     */
+    private void pruneChanges(Connection connection, long now) throws SQLException {
+        long lastSeq = readLastSeq(connection);
+        try (PreparedStatement pstmt = connection.prepareStatement(PRUNE_CHANGES_SQL)) {
+            pstmt.setLong(1, now - changeRetentionMillis);
+            pstmt.setLong(2, lastSeq);
+            pstmt.executeUpdate();
+        }
+    }
+
+    private static long readLastSeq(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery(SELECT_LAST_SEQ_SQL)) {
+            return rs.next() ? rs.getLong(1) : 0L; // MAX of an empty table is NULL, read as 0
+        }
+    }
+
+    /**
+     * Makes sure every world of the records has an id. Runs before the save transaction starts:
+     * a world row left behind by a failed save is harmless, while an id cached from a rolled
+     * back insert would not be.
+     */
+    private void resolveWorldIds(Connection connection, Collection<ProtectionRecord> records) throws SQLException {
+        Set<String> missing = new HashSet<>();
+        for (ProtectionRecord record : records) {
+            if (!worldIds.containsKey(record.getWorld())) {
+                missing.add(record.getWorld());
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+
+        try (PreparedStatement pstmt = connection.prepareStatement(INSERT_WORLD_SQL)) {
+            for (String world : missing) {
+                pstmt.setString(1, world);
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+        for (String world : missing) {
+            if (lookupWorldId(connection, world) == null) {
+                throw new SQLException("No id for world '" + world + "'");
+            }
+        }
+    }
+
+    /**
+     * Gets the id of a world, or null if the world has no row.
+     */
+    private Integer lookupWorldId(Connection connection, String world) throws SQLException {
+        Integer cached = worldIds.get(world);
+        if (cached != null) {
+            return cached;
+        }
+
+        try (PreparedStatement pstmt = connection.prepareStatement(SELECT_WORLD_ID_SQL)) {
+            pstmt.setString(1, world);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                int id = rs.getInt(1);
+                worldIds.put(world, id);
+                worldNames.put(id, world);
+                return id;
+            }
+        }
+    }
+
+    /**
+     * Gets the name of a world id, or null if the id has no row.
+     */
+    private String lookupWorldName(Connection connection, int worldId) throws SQLException {
+        String cached = worldNames.get(worldId);
+        if (cached != null) {
+            return cached;
+        }
+
+        try (PreparedStatement pstmt = connection.prepareStatement(SELECT_WORLD_NAME_SQL)) {
+            pstmt.setInt(1, worldId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                String world = rs.getString(1);
+                worldNames.put(worldId, world);
+                worldIds.put(world, worldId);
+                return world;
+            }
+        }
+    }
+
+    private ProtectionRecord readRecord(ResultSet rs) throws SQLException {
+        long partnerKey = rs.getLong("partner_key");
+        if (rs.wasNull()) {
+            partnerKey = ProtectionRecord.NO_PARTNER;
+        }
+
+        int ownerId = OwnerRegistry.getInstance().getOrCreateId(rs.getString("owner"));
+        return new ProtectionRecord(rs.getString("world"), rs.getLong("block_key"), partnerKey, ownerId,
+                rs.getString("password"), rs.getString("name"), parseType(rs.getString("type")), rs.getLong("created"));
+    }
+
+    private static ContainerType parseType(String typeName) {
+        if (typeName == null) {
+            return null;
+        }
+        try {
+            return ContainerType.valueOf(typeName);
+        } catch (IllegalArgumentException e) {
+            return null; // Unknown type (e.g. written by a newer version) - resolved from the block later
+        }
+    }
+
+    /**
+     * Brings the database up to {@link #SCHEMA_VERSION}, running every missing step in order.
+     * MySQL commits table changes implicitly, so steps must be safe to run again if the
+     * version update after them fails.
+     */
+    private void migrateSchema(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS " + SCHEMA_TABLE_NAME + " (version INT NOT NULL)");
+        }
+
+        int version = 0;
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT MAX(version) FROM " + SCHEMA_TABLE_NAME)) {
+            if (rs.next()) {
+                version = rs.getInt(1);
+            }
+        }
+
+        if (version > SCHEMA_VERSION) {
+            plugin.getLogger().warning("[PrivateChest] MySQL schema version " + version +
+                    " is newer than this plugin supports (" + SCHEMA_VERSION + ").");
+            return;
+        }
+
+        for (int step = version + 1; step <= SCHEMA_VERSION; step++) {
+            try (Statement stmt = connection.createStatement()) {
+                switch (step) {
+                    case 1:
+                        stmt.execute(CREATE_WORLD_TABLE_SQL);
+                        stmt.execute(CREATE_TABLE_SQL);
+                        stmt.execute(CREATE_TRUST_TABLE_SQL);
+                        break;
+                    case 2:
+                        stmt.execute(CREATE_CHANGE_TABLE_SQL);
+                        break;
+                    default:
+                        throw new IllegalStateException("Missing MySQL schema step " + step);
+                }
+                stmt.execute("DELETE FROM " + SCHEMA_TABLE_NAME);
+                stmt.execute("INSERT INTO " + SCHEMA_TABLE_NAME + " (version) VALUES (" + step + ")");
+            }
+        }
+
+        if (version < SCHEMA_VERSION) {
+            plugin.getLogger().info("[PrivateChest] MySQL schema upgraded from version " + version + " to " + SCHEMA_VERSION + ".");
+        }
+    }
+
+    @Override
+    public void close() {
+        if (pool != null) {
+            pool.close();
+            pool = null;
+            plugin.getLogger().info("[PrivateChest] MySQL storage closed successfully.");
+        }
+    }
+
+    /**
+     * Other servers may write to the same database, so a local snapshot can never be trusted.
+     */
+    @Override
+    public long getLastModified() {
+        return 0L;
+    }
+
+    @Override
+    public boolean isRemote() {
+        return true;
+    }
+
+    @Override
+    public String getStorageType() {
+        return "MySQL";
+    }
+
+    @Override
+    public boolean isReady() {
+        return pool != null;
+    }
+}
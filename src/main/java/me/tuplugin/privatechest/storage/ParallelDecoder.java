@@ -0,0 +1,91 @@
+package me.tuplugin.privatechest.storage;
+
+import me.tuplugin.privatechest.ProtectionRecord;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+
+/**
+ * Decodes batches of stored records on the common ForkJoinPool while the loading thread keeps
+ * reading raw data, then hands the records to the consumer on the loading thread, in submission order.
+ * Each batch decodes into its own list, so workers share nothing but read-only lookup tables;
+ * the consumer (usually ChestLocker) never sees more than one thread.
+ *
+ * <pre>
+ * try (ParallelDecoder decoder = new ParallelDecoder(records)) {
+ *     while (...) {
+ *         decoder.submit(() -&gt; decode(batch));
+ *     }
+ *     return decoder.finish();
+ * }
+ * </pre>
+ * Closing without {@link #finish()} (e.g. after a read error) cancels the batches not merged yet.
+ *
+ * @since 2.4
+ */
+final class ParallelDecoder implements AutoCloseable {
+
+    // Decoded batches waiting to be merged; bounds memory when reading outpaces merging
+    private static final int MAX_PENDING_PER_WORKER = 4;
+
+    private final ForkJoinPool pool = ForkJoinPool.commonPool();
+    private final int maxPending = Math.max(2, pool.getParallelism() * MAX_PENDING_PER_WORKER);
+    private final Deque<ForkJoinTask<List<ProtectionRecord>>> pending = new ArrayDeque<>();
+    private final Consumer<ProtectionRecord> records;
+    private int merged;
+
+    ParallelDecoder(Consumer<ProtectionRecord> records) {
+        this.records = records;
+    }
+
+    /**
+     * Schedules a batch. Merges the oldest batches first if too many are waiting.
+     *
+     * @param batch Decodes one batch into a new list; null entries are skipped
+     */
+    void submit(Callable<List<ProtectionRecord>> batch) {
+        pending.addLast(pool.submit(batch));
+        while (pending.size() > maxPending) {
+            mergeOldest();
+        }
+    }
+
+    /**
+     * Waits for every batch and merges it.
+     *
+     * @return The number of records handed to the consumer
+     */
+    int finish() {
+        while (!pending.isEmpty()) {
+            mergeOldest();
+        }
+        return merged;
+    }
+
+    /**
+     * Waits for the oldest batch (running it on this thread if no worker has started it yet)
+     * and hands its records to the consumer. Exceptions thrown by the batch are rethrown here.
+     */
+    private void mergeOldest() {
+        List<ProtectionRecord> batch = pending.removeFirst().join();
+        for (ProtectionRecord record : batch) {
+            if (record != null) {
+                records.accept(record);
+                merged++;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        ForkJoinTask<List<ProtectionRecord>> task;
+        while ((task = pending.pollFirst()) != null) {
+            task.cancel(false);
+        }
+    }
+}
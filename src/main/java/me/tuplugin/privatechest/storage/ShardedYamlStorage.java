@@ -0,0 +1,335 @@
+package me.tuplugin.privatechest.storage;
+
+import me.tuplugin.privatechest.PrivateChest;
+import me.tuplugin.privatechest.ProtectionRecord;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * YAML storage split into one file per world region, so saves rewrite only the regions that changed.
+ *
+ * Layout inside the plugin folder:
+ * <pre>
+ *   data/trust.yml               trust relations (trust section)
+ *   data/&lt;world&gt;/r.&lt;rx&gt;.&lt;rz&gt;.yml  protections whose primary block is in that region (chests section)
+ * </pre>
+ * A region covers 32x32 chunks, like the world's own region files. Every file uses the data.yml
+ * format, so entries can still be edited by hand or copied between files; a damaged file only
+ * takes its own region down instead of all protections.
+ *
+ * Methods are synchronized because the files are shared by the storage writer thread and world
+ * loads on the main thread.
+ *
+ * @since 2.4
+ */
+public class ShardedYamlStorage implements DataStorage {
+
+    private static final String TRUST_FILE = "trust.yml";
+    private static final int REGION_SHIFT = 9; // 512 blocks = 32 chunks
+    // Records collected per save during an import; a migration's batches spread over most regions
+    private static final int IMPORT_BUFFERED_RECORDS = 50000;
+
+    private final PrivateChest plugin;
+    private File dataDir;
+    private YamlDataFile trustFile;
+    private DurabilityPolicy durability;
+
+    public ShardedYamlStorage(PrivateChest plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public boolean initialize() {
+        dataDir = new File(plugin.getDataFolder(), "data");
+        if (!dataDir.isDirectory() && !dataDir.mkdirs()) {
+            plugin.getLogger().severe("[PrivateChest] Failed to initialize sharded YAML storage: could not create " + dataDir.getPath());
+            dataDir = null;
+            return false;
+        }
+
+        durability = DurabilityPolicy.fromConfig(plugin);
+        trustFile = new YamlDataFile(plugin, new File(dataDir, TRUST_FILE), durability);
+        return true;
+    }
+
+    @Override
+    public synchronized boolean loadData(Consumer<ProtectionRecord> records, Map<String, Set<String>> trustRelations) {
+        try {
+            if (trustRelations != null) {
+                trustRelations.clear();
+                trustFile.read(null, r -> { }, trustRelations);
+            }
+        } catch (Exception e) {
+            plugin.getLogger().severe("[PrivateChest] Failed to load " + TRUST_FILE + " from sharded YAML storage!");
+            e.printStackTrace();
+            return false;
+        }
+
+        int loaded;
+        int shards = 0;
+        try (ParallelDecoder decoder = new ParallelDecoder(records)) {
+            File[] worldDirs = dataDir.listFiles(File::isDirectory);
+            if (worldDirs != null) {
+                for (File worldDir : worldDirs) {
+                    for (File shard : listShards(worldDir)) {
+                        decoder.submit(() -> readShard(shard));
+                        shards++;
+                    }
+                }
+            }
+            loaded = decoder.finish();
+        }
+
+        plugin.getLogger().info("[PrivateChest] Loaded " + loaded + " locked chests from " + shards + " region files (sharded YAML storage).");
+        return true;
+    }
+
+    @Override
+    public synchronized boolean loadWorld(String worldName, Consumer<ProtectionRecord> records) {
+        int loaded;
+        try (ParallelDecoder decoder = new ParallelDecoder(records)) {
+            for (File shard : listShards(new File(dataDir, worldName))) {
+                decoder.submit(() -> readShard(shard));
+            }
+            loaded = decoder.finish();
+        }
+
+        plugin.getLogger().info("[PrivateChest] Loaded " + loaded + " locked chests for world '" + worldName + "' from sharded YAML storage.");
+        return true;
+    }
+
+    @Override
+    public synchronized boolean saveData(Collection<ProtectionRecord> records, Set<String> worlds, Map<String, Set<String>> trustRelations) {
+        // Every region of the saved worlds is replaced; regions left without records are deleted
+        Map<File, YamlDataFile.Rewrite> rewrites = new LinkedHashMap<>();
+        Set<String> savedWorlds = worlds != null ? worlds : new HashSet<>();
+        for (ProtectionRecord record : records) {
+            rewrites.computeIfAbsent(shardFile(record), f -> new YamlDataFile.Rewrite(key -> true, false))
+                    .chests.put(YamlDataFile.serializeKey(record), record);
+            if (worlds == null) {
+                savedWorlds.add(record.getWorld());
+            }
+        }
+        if (worlds == null) {
+            File[] worldDirs = dataDir.listFiles(File::isDirectory);
+            if (worldDirs != null) {
+                for (File worldDir : worldDirs) {
+                    savedWorlds.add(worldDir.getName());
+                }
+            }
+        }
+
+        try {
+            for (String world : savedWorlds) {
+                for (File shard : listShards(new File(dataDir, world))) {
+                    if (!rewrites.containsKey(shard)) {
+                        deleteShard(shard);
+                    }
+                }
+            }
+            for (Map.Entry<File, YamlDataFile.Rewrite> entry : rewrites.entrySet()) {
+                writeShard(entry.getKey(), entry.getValue());
+            }
+
+            if (trustRelations != null) {
+                YamlDataFile.Rewrite rewrite = new YamlDataFile.Rewrite(key -> false, true);
+                rewrite.trust.putAll(trustRelations);
+                trustFile.rewrite(rewrite);
+            }
+            durability.commit();
+            return true;
+        } catch (Exception e) {
+            plugin.getLogger().severe("[PrivateChest] Could not save data to sharded YAML storage!");
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Rewrites only the region files that hold a changed protection, and trust.yml if trust changed.
+     * Each file is saved on its own: one that fails (e.g. a damaged region file) is reported to the
+     * change set and retried on the next save, while the others are committed. Rewriting a region
+     * that was already written is harmless.
+     */
+    @Override
+    public synchronized boolean applyChanges(ChangeSet changes) {
+        Map<File, YamlDataFile.Rewrite> rewrites = new HashMap<>();
+        Map<File, List<ProtectionRecord>> shardRecords = new HashMap<>();
+        for (ProtectionRecord record : changes.getRemovals()) {
+            File shard = shardFile(record);
+            rewrites.computeIfAbsent(shard, f -> new YamlDataFile.Rewrite(key -> false, false))
+                    .chests.put(YamlDataFile.serializeKey(record), null);
+            shardRecords.computeIfAbsent(shard, f -> new ArrayList<>()).add(record);
+        }
+        for (ProtectionRecord record : changes.getUpserts()) {
+            File shard = shardFile(record);
+            rewrites.computeIfAbsent(shard, f -> new YamlDataFile.Rewrite(key -> false, false))
+                    .chests.put(YamlDataFile.serializeKey(record), record);
+            shardRecords.computeIfAbsent(shard, f -> new ArrayList<>()).add(record);
+        }
+
+        boolean saved = true;
+        for (Map.Entry<File, YamlDataFile.Rewrite> entry : rewrites.entrySet()) {
+            try {
+                writeShard(entry.getKey(), entry.getValue());
+            } catch (Exception e) {
+                plugin.getLogger().severe("[PrivateChest] Could not save region file " + entry.getKey().getPath()
+                        + "! Its changes will be retried on the next save.");
+                e.printStackTrace();
+                shardRecords.get(entry.getKey()).forEach(changes::markFailed);
+                saved = false;
+            }
+        }
+
+        if (!changes.getTrustChanges().isEmpty()) {
+            try {
+                YamlDataFile.Rewrite rewrite = new YamlDataFile.Rewrite(key -> false, false);
+                rewrite.trust.putAll(changes.getTrustChanges());
+                trustFile.rewrite(rewrite);
+            } catch (Exception e) {
+                plugin.getLogger().severe("[PrivateChest] Could not save " + TRUST_FILE + " to sharded YAML storage!");
+                e.printStackTrace();
+                changes.markTrustFailed();
+                saved = false;
+            }
+        }
+
+        try {
+            // One sync for all files of the save; a failed sync stays pending in the policy
+            durability.commit();
+        } catch (IOException e) {
+            plugin.getLogger().severe("[PrivateChest] Could not sync sharded YAML storage!");
+            e.printStackTrace();
+            return false;
+        }
+        return saved;
+    }
+
+    /**
+     * Imports through {@link #applyChanges(ChangeSet)}, but with up to {@value #IMPORT_BUFFERED_RECORDS}
+     * records per save: every save rewrites each region it touches, so small batches spread over
+     * the whole map would rewrite most region files every time.
+     */
+    @Override
+    public DataImport beginImport() {
+        if (!saveData(Collections.<ProtectionRecord>emptyList(), null, Collections.<String, Set<String>>emptyMap())) {
+            return null;
+        }
+        return new ChangeSetImport(this, IMPORT_BUFFERED_RECORDS);
+    }
+
+    @Override
+    public void close() {
+        // Files are only open while they are read or written; just sync what the policy deferred
+        if (durability != null) {
+            try {
+                durability.flush();
+            } catch (IOException e) {
+                plugin.getLogger().warning("[PrivateChest] Error syncing sharded YAML storage: " + e.getMessage());
+            }
+        }
+        dataDir = null;
+        trustFile = null;
+    }
+
+    @Override
+    public DurabilityPolicy getDurability() {
+        return durability;
+    }
+
+    /**
+     * Gets the latest change across all files. Directories are included because creating or
+     * deleting a region file changes its directory, not the remaining files.
+     */
+    @Override
+    public synchronized long getLastModified() {
+        if (dataDir == null) {
+            return 0L;
+        }
+
+        long lastModified = Math.max(dataDir.lastModified(), trustFile.getFile().lastModified());
+        File[] worldDirs = dataDir.listFiles(File::isDirectory);
+        if (worldDirs != null) {
+            for (File worldDir : worldDirs) {
+                lastModified = Math.max(lastModified, worldDir.lastModified());
+                for (File shard : listShards(worldDir)) {
+                    lastModified = Math.max(lastModified, shard.lastModified());
+                }
+            }
+        }
+        return lastModified;
+    }
+
+    @Override
+    public String getStorageType() {
+        return "Sharded YAML";
+    }
+
+    @Override
+    public boolean isReady() {
+        return dataDir != null;
+    }
+
+    // --- Region Files ---
+
+    private File shardFile(ProtectionRecord record) {
+        int regionX = record.getX() >> REGION_SHIFT;
+        int regionZ = record.getZ() >> REGION_SHIFT;
+        return new File(new File(dataDir, record.getWorld()), "r." + regionX + "." + regionZ + ".yml");
+    }
+
+    private static File[] listShards(File worldDir) {
+        File[] shards = worldDir.listFiles((dir, name) -> name.startsWith("r.") && name.endsWith(".yml"));
+        return shards != null ? shards : new File[0];
+    }
+
+    /**
+     * Reads one region file; region files are independent, so loads parse them in parallel.
+     * A damaged file is reported and skipped so the other regions still load. It is never
+     * overwritten: saves to it fail, and changes to its region are kept and retried on every
+     * save until it is fixed, while the other regions keep saving.
+     */
+    private List<ProtectionRecord> readShard(File shard) {
+        List<ProtectionRecord> records = new ArrayList<>();
+        try {
+            new YamlDataFile(plugin, shard, durability).read(null, records::add, null);
+            return records;
+        } catch (Exception e) {
+            plugin.getLogger().severe("[PrivateChest] Failed to load region file " + shard.getPath()
+                    + "! Its protections are not loaded until the file is fixed.");
+            e.printStackTrace();
+            return Collections.emptyList();
+        }
+    }
+
+    private void writeShard(File shard, YamlDataFile.Rewrite rewrite) throws IOException {
+        File worldDir = shard.getParentFile();
+        if (!worldDir.isDirectory() && !worldDir.mkdirs()) {
+            throw new IOException("Could not create " + worldDir.getPath());
+        }
+
+        if (new YamlDataFile(plugin, shard, durability).rewrite(rewrite) == 0) {
+            deleteShard(shard);
+        }
+    }
+
+    private void deleteShard(File shard) throws IOException {
+        if (shard.exists()) {
+            if (!shard.delete()) {
+                throw new IOException("Could not delete " + shard.getPath());
+            }
+            durability.defer(shard.getAbsoluteFile().getParentFile().toPath());
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package me.tuplugin.privatechest.storage;
+
+import me.tuplugin.privatechest.ProtectionRecord;
+
+import java.util.Set;
+
+/**
+ * A storage backend shared by several servers. Every save also records what it changed,
+ * so each server can poll for the changes the others made and keep its memory in step
+ * without reloading everything.
+ *
+ * @since 2.4
+ */
+public interface SharedDataStorage extends DataStorage {
+
+    /**
+     * Reads the changes saved by other servers since the last poll and reports the current
+     * stored state of everything they touched. Changes saved by this storage instance are skipped.
+     * Only advances past the changes once all of them were reported, so a failed poll is repeated.
+     *
+     * @param changes Receives the current state of every changed protection and trust list
+     * @return true if polling was successful, false otherwise
+     */
+    boolean pollChanges(RemoteChangeConsumer changes);
+
+    /**
+     * Receives the current state of protections and trust lists changed by other servers.
+     */
+    interface RemoteChangeConsumer {
+        /**
+         * @param worldName The world name
+         * @param blockKey The primary block key of the changed protection
+         * @param current The stored record, or null if the protection was removed
+         */
+        void protectionChanged(String worldName, long blockKey, ProtectionRecord current);
+
+        /**
+         * @param ownerUUID The owner UUID string
+         * @param trusted The owner's complete trusted set (empty if the owner trusts nobody now)
+         */
+        void trustChanged(String ownerUUID, Set<String> trusted);
+    }
+}
@@ -0,0 +1,343 @@
+package me.tuplugin.privatechest.storage;
+
+import me.tuplugin.privatechest.OwnerRegistry;
+import me.tuplugin.privatechest.ProtectionRecord;
+import me.tuplugin.privatechest.enums.ContainerType;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Compact binary copy of everything the primary storage holds, for fast startup.
+ * Loading a large data.yml means parsing YAML and splitting location strings; the snapshot is
+ * read from a memory mapped file with one fixed-width entry per protection instead.
+ *
+ * Layout (big endian):
+ * <pre>
+ *   header    magic, version, source last-modified, world/owner/type/record/trust counts, source type
+ *   worlds    name and protected block count (to pre-size the indexes)
+ *   owners    UUIDs, referenced by index from records and trust pairs
+ *   types     container type names
+ *   records   44 bytes each: block key, partner key, created, world, owner, type, password and name offsets
+ *   trust     owner and trusted player index pairs
+ *   pool      length-prefixed UTF-8 passwords and names
+ * </pre>
+ *
+ * Records are decoded in parallel slices (see {@link ParallelDecoder}); the fixed width lets each
+ * slice start at a computed offset without reading the records before it.
+ *
+ * A snapshot is only used while the primary storage is unchanged: DataManager invalidates it before
+ * every write, and the source type and last-modified time in the header catch edits made elsewhere.
+ *
+ * @since 2.4
+ */
+public final class SnapshotFile {
+
+    private static final int MAGIC = 0x50435331; // "PCS1"
+    private static final int VERSION = 1;
+    private static final int RECORD_SIZE = 44;
+    private static final int NONE = -1;
+    private static final int SLICE_RECORDS = 8192;
+
+    private final File file;
+
+    public SnapshotFile(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Checks if the snapshot exists and was written from the current state of the given storage.
+     */
+    public boolean matches(DataStorage storage) {
+        long sourceModified = storage.getLastModified();
+        if (sourceModified == 0L || !file.isFile()) {
+            return false;
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return readHeader(buffer) && buffer.getLong(8) == sourceModified
+                    && storage.getStorageType().equals(readSourceType(buffer));
+        } catch (IOException | RuntimeException e) {
+            return false; // Damaged or truncated - just fall back to the primary storage
+        }
+    }
+
+    /**
+     * Reads the snapshot.
+     *
+     * @param records Receives every protection record
+     * @param trustRelations Receives owner UUID -> trusted UUIDs (can be null to skip)
+     * @param worldSizes Receives each world and its number of protected blocks, before any of its records
+     * @return The number of records read
+     * @throws IOException If the file cannot be read or is damaged
+     */
+    public int load(Consumer<ProtectionRecord> records, Map<String, Set<String>> trustRelations,
+                    WorldSizeConsumer worldSizes) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (!readHeader(buffer)) {
+                throw new IOException("Not a PrivateChest snapshot: " + file.getName());
+            }
+
+            int worldCount = buffer.getInt(16);
+            int ownerCount = buffer.getInt(20);
+            int typeCount = buffer.getInt(24);
+            int recordCount = buffer.getInt(28);
+            int trustCount = buffer.getInt(32);
+            buffer.position(36);
+            readString(buffer); // Source type, checked by matches()
+
+            String[] worlds = new String[worldCount];
+            for (int i = 0; i < worldCount; i++) {
+                worlds[i] = readString(buffer);
+                worldSizes.accept(worlds[i], buffer.getInt());
+            }
+
+            // Resolved once per owner here instead of once per record
+            OwnerRegistry registry = OwnerRegistry.getInstance();
+            String[] ownerUUIDs = new String[ownerCount];
+            int[] ownerIds = new int[ownerCount];
+            for (int i = 0; i < ownerCount; i++) {
+                ownerUUIDs[i] = readString(buffer);
+                ownerIds[i] = registry.getOrCreateId(ownerUUIDs[i]);
+            }
+
+            ContainerType[] types = new ContainerType[typeCount];
+            for (int i = 0; i < typeCount; i++) {
+                try {
+                    types[i] = ContainerType.valueOf(readString(buffer));
+                } catch (IllegalArgumentException e) {
+                    types[i] = null; // Unknown type (e.g. written by a newer version) - resolved from the block later
+                }
+            }
+
+            int recordStart = buffer.position();
+            int trustStart = recordStart + recordCount * RECORD_SIZE;
+            int poolStart = trustStart + trustCount * 8;
+
+            try (ParallelDecoder decoder = new ParallelDecoder(records)) {
+                for (int first = 0; first < recordCount; first += SLICE_RECORDS) {
+                    int start = recordStart + first * RECORD_SIZE;
+                    int count = Math.min(SLICE_RECORDS, recordCount - first);
+                    ByteBuffer view = buffer.duplicate();
+                    decoder.submit(() -> decodeSlice(view, start, count, poolStart, worlds, ownerIds, types));
+                }
+                decoder.finish();
+            }
+
+            if (trustRelations != null) {
+                trustRelations.clear();
+                for (int i = 0, pos = trustStart; i < trustCount; i++, pos += 8) {
+                    trustRelations.computeIfAbsent(ownerUUIDs[buffer.getInt(pos)], k -> new HashSet<>())
+                            .add(ownerUUIDs[buffer.getInt(pos + 4)]);
+                }
+            }
+            return recordCount;
+        } catch (RuntimeException e) {
+            throw new IOException("Damaged snapshot: " + file.getName(), e);
+        }
+    }
+
+    /**
+     * Decodes consecutive records. Runs on a pool thread with its own view of the buffer,
+     * since reading the string pool moves the position.
+     */
+    private static List<ProtectionRecord> decodeSlice(ByteBuffer buffer, int start, int count, int poolStart,
+                                                      String[] worlds, int[] ownerIds, ContainerType[] types) {
+        List<ProtectionRecord> slice = new ArrayList<>(count);
+        for (int i = 0, pos = start; i < count; i++, pos += RECORD_SIZE) {
+            int type = buffer.getInt(pos + 32);
+            int nameOffset = buffer.getInt(pos + 40);
+            slice.add(new ProtectionRecord(
+                    worlds[buffer.getInt(pos + 24)],
+                    buffer.getLong(pos),
+                    buffer.getLong(pos + 8),
+                    ownerIds[buffer.getInt(pos + 28)],
+                    readPooled(buffer, poolStart, buffer.getInt(pos + 36)),
+                    nameOffset != NONE ? readPooled(buffer, poolStart, nameOffset) : null,
+                    type != NONE ? types[type] : null,
+                    buffer.getLong(pos + 16)));
+        }
+        return slice;
+    }
+
+    /**
+     * Writes a snapshot of the given data, replacing the previous one atomically (see {@link AtomicFileWriter}).
+     *
+     * @param source The primary storage the data was just saved to
+     * @param records Every stored protection record
+     * @param trustRelations Owner UUID -> trusted UUIDs
+     * @throws IOException If the file cannot be written
+     */
+    public void write(DataStorage source, Collection<ProtectionRecord> records,
+                      Map<String, Set<String>> trustRelations) throws IOException {
+        // Records without a password are not stored by any backend
+        List<ProtectionRecord> saved = new ArrayList<>(records.size());
+        for (ProtectionRecord record : records) {
+            if (record.getPasswordHash() != null) {
+                saved.add(record);
+            }
+        }
+        records = saved;
+
+        // First pass: the lookup tables, so records can refer to them by index
+        Map<String, Integer> worldIndex = new LinkedHashMap<>();
+        List<int[]> worldSizes = new ArrayList<>();
+        Map<String, Integer> ownerIndex = new LinkedHashMap<>();
+        Map<String, Integer> typeIndex = new LinkedHashMap<>();
+        for (ProtectionRecord record : records) {
+            Integer world = worldIndex.get(record.getWorld());
+            if (world == null) {
+                world = worldIndex.size();
+                worldIndex.put(record.getWorld(), world);
+                worldSizes.add(new int[1]);
+            }
+            worldSizes.get(world)[0] += record.getBlockCount();
+            indexOf(ownerIndex, record.getOwnerUUID());
+            if (record.getType() != null) {
+                indexOf(typeIndex, record.getType().name());
+            }
+        }
+        int trustCount = 0;
+        for (Map.Entry<String, Set<String>> entry : trustRelations.entrySet()) {
+            indexOf(ownerIndex, entry.getKey());
+            for (String trusted : entry.getValue()) {
+                indexOf(ownerIndex, trusted);
+                trustCount++;
+            }
+        }
+
+        ByteArrayOutputStream pool = new ByteArrayOutputStream(records.size() * 64);
+        DataOutputStream poolOut = new DataOutputStream(pool);
+        // Only a cache: a lost rename just means the primary storage is read on the next start
+        try (AtomicFileWriter target = new AtomicFileWriter(file, null);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(target.getStream(), 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(source.getLastModified());
+            out.writeInt(worldIndex.size());
+            out.writeInt(ownerIndex.size());
+            out.writeInt(typeIndex.size());
+            out.writeInt(records.size());
+            out.writeInt(trustCount);
+            writeString(out, source.getStorageType());
+
+            int i = 0;
+            for (String world : worldIndex.keySet()) {
+                writeString(out, world);
+                out.writeInt(worldSizes.get(i++)[0]);
+            }
+            for (String owner : ownerIndex.keySet()) {
+                writeString(out, owner);
+            }
+            for (String type : typeIndex.keySet()) {
+                writeString(out, type);
+            }
+
+            for (ProtectionRecord record : records) {
+                out.writeLong(record.getBlockKey());
+                out.writeLong(record.getPartnerKey());
+                out.writeLong(record.getCreatedAt());
+                out.writeInt(worldIndex.get(record.getWorld()));
+                out.writeInt(ownerIndex.get(record.getOwnerUUID()));
+                out.writeInt(record.getType() != null ? typeIndex.get(record.getType().name()) : NONE);
+                out.writeInt(pool(poolOut, record.getPasswordHash()));
+                String name = record.getName();
+                out.writeInt(name != null && !name.trim().isEmpty() ? pool(poolOut, name.trim()) : NONE);
+            }
+
+            for (Map.Entry<String, Set<String>> entry : trustRelations.entrySet()) {
+                int owner = ownerIndex.get(entry.getKey());
+                for (String trusted : entry.getValue()) {
+                    out.writeInt(owner);
+                    out.writeInt(ownerIndex.get(trusted));
+                }
+            }
+
+            pool.writeTo(out);
+            out.flush();
+            target.commit();
+        }
+    }
+
+    /**
+     * Marks the snapshot as outdated before the primary storage changes.
+     * The magic number is overwritten rather than the file deleted, which also works while
+     * a previous load still has the file mapped.
+     */
+    public void invalidate() throws IOException {
+        if (!file.isFile()) {
+            return;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rwd")) {
+            raf.writeInt(0);
+        }
+    }
+
+    private static boolean readHeader(ByteBuffer buffer) {
+        return buffer.limit() >= 36 && buffer.getInt(0) == MAGIC && buffer.getInt(4) == VERSION;
+    }
+
+    private static String readSourceType(ByteBuffer buffer) {
+        buffer.position(36);
+        return readString(buffer);
+    }
+
+    private static int indexOf(Map<String, Integer> index, String value) {
+        Integer existing = index.get(value);
+        if (existing != null) {
+            return existing;
+        }
+        int next = index.size();
+        index.put(value, next);
+        return next;
+    }
+
+    private static int pool(DataOutputStream pool, String value) throws IOException {
+        int offset = pool.size();
+        writeString(pool, value);
+        return offset;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String readPooled(ByteBuffer pool, int poolStart, int offset) {
+        pool.position(poolStart + offset);
+        return readString(pool);
+    }
+
+    /**
+     * Receives the number of protected blocks of a world before its records are read.
+     */
+    public interface WorldSizeConsumer {
+        void accept(String worldName, int blocks);
+    }
+}
@@ -1,28 +1,51 @@
 package me.tuplugin.privatechest.storage;
 
+import me.tuplugin.privatechest.OwnerRegistry;
 import me.tuplugin.privatechest.PrivateChest;
-import org.bukkit.Bukkit;
-import org.bukkit.Location;
-import org.bukkit.World;
+import me.tuplugin.privatechest.ProtectionRecord;
+import me.tuplugin.privatechest.enums.ContainerType;
+import me.tuplugin.privatechest.util.BlockKey;
 
 import java.io.File;
+import java.io.IOException;
 import java.sql.*;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 /**
  * SQLite-based storage implementation for chest data.
  * Provides better performance and reliability for large datasets.
+ * Everything runs on one connection, so every method that uses it is synchronized: the writer's
+ * transactions, chunk reads on async tasks, world loads and a migration reading this storage
+ * never interleave on it.
  */
-public class SqliteStorage implements DataStorage {
+public class SqliteStorage implements ChunkedDataStorage {
 
     private final PrivateChest plugin;
-    private Connection connection;
+    private volatile Connection connection; // Read without the lock by isReady()
     private File databaseFile;
 
-    private static final String TABLE_NAME = "privatechest_data";
-    private static final String CREATE_TABLE_SQL =
-            "CREATE TABLE IF NOT EXISTS " + TABLE_NAME + " (" +
+    // Prepared once and reused for every save; guarded by the storage lock like the connection
+    private PreparedStatement upsertStatement;
+    private PreparedStatement deleteStatement;
+    private PreparedStatement trustDeleteStatement;
+    private PreparedStatement trustInsertStatement;
+    private PreparedStatement worldInsertStatement;
+
+    /** Version of the newest schema; bump it together with a new step in {@link #migrateSchema()}. */
+    private static final int SCHEMA_VERSION = 4;
+    private static final String SCHEMA_TABLE_NAME = "privatechest_schema_version";
+    private static final Set<String> SYNCHRONOUS_LEVELS = new HashSet<>(Arrays.asList("OFF", "NORMAL", "FULL", "EXTRA"));
+
+    // Layout used up to schema version 3; only read to move its rows into the keyed table
+    private static final String LEGACY_TABLE_NAME = "privatechest_data";
+    private static final String CREATE_LEGACY_TABLE_SQL =
+            "CREATE TABLE IF NOT EXISTS " + LEGACY_TABLE_NAME + " (" +
                     "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
                     "world TEXT NOT NULL, " +
                     "x INTEGER NOT NULL, " +
@@ -30,27 +53,134 @@ public class SqliteStorage implements DataStorage {
                     "z INTEGER NOT NULL, " +
                     "owner TEXT NOT NULL, " +
                     "password TEXT NOT NULL, " +
+                    "partner_x INTEGER, " +
+                    "partner_y INTEGER, " +
+                    "partner_z INTEGER, " +
+                    "type TEXT, " +
+                    "name TEXT, " +
+                    "created INTEGER, " +
                     "UNIQUE(world, x, y, z)" +
                     ");";
 
-    private static final String INSERT_SQL =
-            "INSERT OR REPLACE INTO " + TABLE_NAME + " (world, x, y, z, owner, password) VALUES (?, ?, ?, ?, ?, ?)";
+    // Columns added in 2.4 (double chest partner, container type, custom name, creation time), added in place to older tables
+    private static final String[][] ADDED_COLUMNS = {
+            {"partner_x", "INTEGER"}, {"partner_y", "INTEGER"}, {"partner_z", "INTEGER"}, {"type", "TEXT"},
+            {"name", "TEXT"}, {"created", "INTEGER"}
+    };
+
+    private static final String CREATE_LEGACY_PARTNER_INDEX_SQL =
+            "CREATE INDEX IF NOT EXISTS " + LEGACY_TABLE_NAME + "_partner ON " + LEGACY_TABLE_NAME + " (world, partner_x, partner_z)";
+
+    private static final String CREATE_LEGACY_OWNER_INDEX_SQL =
+            "CREATE INDEX IF NOT EXISTS " + LEGACY_TABLE_NAME + "_owner ON " + LEGACY_TABLE_NAME + " (owner)";
+
+    private static final String SELECT_LEGACY_SQL =
+            "SELECT world, x, y, z, owner, password, partner_x, partner_y, partner_z, type, name, created FROM " + LEGACY_TABLE_NAME;
+
+    // Each world name is stored once; protection rows refer to it by id
+    private static final String WORLD_TABLE_NAME = "privatechest_worlds";
+    private static final String CREATE_WORLD_TABLE_SQL =
+            "CREATE TABLE IF NOT EXISTS " + WORLD_TABLE_NAME + " (" +
+                    "id INTEGER PRIMARY KEY, " +
+                    "name TEXT NOT NULL UNIQUE" +
+                    ");";
+
+    private static final String INSERT_WORLD_SQL =
+            "INSERT OR IGNORE INTO " + WORLD_TABLE_NAME + " (name) VALUES (?)";
+
+    private static final String WORLD_ID = "(SELECT id FROM " + WORLD_TABLE_NAME + " WHERE name = ?)";
+
+    // Rows are clustered by world and chunk (both packed as in BlockKey), so a chunk is one range of the primary key.
+    // block_key alone identifies the row; chunk is derived from it and only leads the key for locality.
+    private static final String TABLE_NAME = "privatechest_protections";
+    private static final String CREATE_TABLE_SQL =
+            "CREATE TABLE IF NOT EXISTS " + TABLE_NAME + " (" +
+                    "world_id INTEGER NOT NULL, " +
+                    "chunk INTEGER NOT NULL, " +
+                    "block_key INTEGER NOT NULL, " +
+                    "partner_chunk INTEGER, " +
+                    "partner_key INTEGER, " +
+                    "owner TEXT NOT NULL, " +
+                    "password TEXT NOT NULL, " +
+                    "type TEXT, " +
+                    "name TEXT, " +
+                    "created INTEGER, " +
+                    "PRIMARY KEY(world_id, chunk, block_key)" +
+                    ") WITHOUT ROWID;";
+
+    // Lets chunk queries find a double chest through its other half
+    private static final String CREATE_PARTNER_INDEX_SQL =
+            "CREATE INDEX IF NOT EXISTS " + TABLE_NAME + "_partner ON " + TABLE_NAME +
+                    " (world_id, partner_chunk) WHERE partner_chunk IS NOT NULL";
+
+    private static final String CREATE_OWNER_INDEX_SQL =
+            "CREATE INDEX IF NOT EXISTS " + TABLE_NAME + "_owner ON " + TABLE_NAME + " (owner)";
+
+    // One row per trusted player; the primary key serves lookups by owner
+    private static final String TRUST_TABLE_NAME = "privatechest_trust";
+    private static final String CREATE_TRUST_TABLE_SQL =
+            "CREATE TABLE IF NOT EXISTS " + TRUST_TABLE_NAME + " (" +
+                    "owner TEXT NOT NULL, " +
+                    "trusted TEXT NOT NULL, " +
+                    "PRIMARY KEY(owner, trusted)" +
+                    ");";
+
+    // "Who trusts this player" lookups without a table scan
+    private static final String CREATE_TRUSTED_INDEX_SQL =
+            "CREATE INDEX IF NOT EXISTS " + TRUST_TABLE_NAME + "_trusted ON " + TRUST_TABLE_NAME + " (trusted)";
+
+    // Updates the row in place on conflict; INSERT OR REPLACE would delete and reinsert it, touching every index
+    private static final String UPSERT_SQL =
+            "INSERT INTO " + TABLE_NAME + " (world_id, chunk, block_key, partner_chunk, partner_key, owner, password, type, name, created) " +
+                    "VALUES (" + WORLD_ID + ", ?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+                    "ON CONFLICT(world_id, chunk, block_key) DO UPDATE SET partner_chunk = excluded.partner_chunk, " +
+                    "partner_key = excluded.partner_key, owner = excluded.owner, password = excluded.password, " +
+                    "type = excluded.type, name = excluded.name, created = excluded.created";
 
     private static final String SELECT_ALL_SQL =
-            "SELECT world, x, y, z, owner, password FROM " + TABLE_NAME;
+            "SELECT w.name AS world, p.block_key, p.partner_key, p.owner, p.password, p.type, p.name, p.created FROM " +
+                    TABLE_NAME + " p JOIN " + WORLD_TABLE_NAME + " w ON w.id = p.world_id";
+
+    private static final String SELECT_WORLD_SQL = SELECT_ALL_SQL + " WHERE w.name = ?";
+
+    // A protection belongs to a chunk if either of its blocks is inside it; both halves are index range scans,
+    // and a double chest lying within one chunk is only reported by the first
+    private static final String SELECT_CHUNK_SQL =
+            SELECT_ALL_SQL + " WHERE w.name = ? AND p.chunk = ?" +
+                    " UNION ALL " +
+                    SELECT_ALL_SQL + " WHERE w.name = ? AND p.partner_chunk = ? AND p.chunk <> ?";
+
+    private static final String COUNT_BY_OWNER_SQL =
+            "SELECT owner, type, SUM(CASE WHEN partner_key IS NULL THEN 1 ELSE 2 END) AS blocks FROM " + TABLE_NAME +
+                    " GROUP BY owner, type";
+
+    private static final String DELETE_WORLD_SQL =
+            "DELETE FROM " + TABLE_NAME + " WHERE world_id = " + WORLD_ID;
 
     private static final String DELETE_SQL =
-            "DELETE FROM " + TABLE_NAME + " WHERE world = ? AND x = ? AND y = ? AND z = ?";
+            "DELETE FROM " + TABLE_NAME + " WHERE world_id = " + WORLD_ID + " AND chunk = ? AND block_key = ?";
 
     private static final String CLEAR_ALL_SQL =
             "DELETE FROM " + TABLE_NAME;
 
+    private static final String SELECT_TRUST_SQL =
+            "SELECT owner, trusted FROM " + TRUST_TABLE_NAME;
+
+    private static final String INSERT_TRUST_SQL =
+            "INSERT OR IGNORE INTO " + TRUST_TABLE_NAME + " (owner, trusted) VALUES (?, ?)";
+
+    private static final String DELETE_TRUST_SQL =
+            "DELETE FROM " + TRUST_TABLE_NAME + " WHERE owner = ?";
+
+    private static final String CLEAR_TRUST_SQL =
+            "DELETE FROM " + TRUST_TABLE_NAME;
+
     public SqliteStorage(PrivateChest plugin) {
         this.plugin = plugin;
     }
 
     @Override
-    public boolean initialize() {
+    public synchronized boolean initialize() {
         try {
             // Create database file
             databaseFile = new File(plugin.getDataFolder(), "privatechest.db");
@@ -62,10 +192,14 @@ public class SqliteStorage implements DataStorage {
             String url = "jdbc:sqlite:" + databaseFile.getAbsolutePath();
             connection = DriverManager.getConnection(url);
 
-            // Create table if it doesn't exist
-            try (Statement stmt = connection.createStatement()) {
-                stmt.execute(CREATE_TABLE_SQL);
-            }
+            applyPragmas();
+            migrateSchema();
+
+            upsertStatement = connection.prepareStatement(UPSERT_SQL);
+            deleteStatement = connection.prepareStatement(DELETE_SQL);
+            trustDeleteStatement = connection.prepareStatement(DELETE_TRUST_SQL);
+            trustInsertStatement = connection.prepareStatement(INSERT_TRUST_SQL);
+            worldInsertStatement = connection.prepareStatement(INSERT_WORLD_SQL);
 
             plugin.getLogger().info("[PrivateChest] SQLite storage initialized successfully.");
             return true;
@@ -76,44 +210,29 @@ public class SqliteStorage implements DataStorage {
         }
     }
 
+    /**
+     * Loads protection records (with their custom names) and trust relations from the database.
+     */
     @Override
-    public boolean loadData(Map<Location, String> owners, Map<Location, String> passwords) {
+    public synchronized boolean loadData(Consumer<ProtectionRecord> records, Map<String, Set<String>> trustRelations) {
         if (!isReady()) {
             plugin.getLogger().warning("[PrivateChest] SQLite storage is not ready!");
             return false;
         }
 
         try {
-            // Clear maps before loading
-            owners.clear();
-            passwords.clear();
-
             try (Statement stmt = connection.createStatement();
                  ResultSet rs = stmt.executeQuery(SELECT_ALL_SQL)) {
 
                 int loaded = 0;
                 while (rs.next()) {
-                    String worldName = rs.getString("world");
-                    int x = rs.getInt("x");
-                    int y = rs.getInt("y");
-                    int z = rs.getInt("z");
-                    String owner = rs.getString("owner");
-                    String password = rs.getString("password");
-
-                    World world = Bukkit.getWorld(worldName);
-                    if (world != null) {
-                        Location loc = new Location(world, x, y, z);
-                        owners.put(loc, owner);
-                        passwords.put(loc, password);
-                        loaded++;
-                    } else {
-                        plugin.getLogger().warning("[PrivateChest] World '" + worldName + "' not found for chest at " + worldName + "," + x + "," + y + "," + z);
-                    }
+                    records.accept(readRecord(rs));
+                    loaded++;
                 }
 
                 plugin.getLogger().info("[PrivateChest] Loaded " + loaded + " locked chests from SQLite storage.");
-                return true;
             }
+            return trustRelations == null || loadTrust(trustRelations);
         } catch (SQLException e) {
             plugin.getLogger().severe("[PrivateChest] Failed to load data from SQLite storage!");
             e.printStackTrace();
@@ -122,7 +241,190 @@ public class SqliteStorage implements DataStorage {
     }
 
     @Override
-    public boolean saveData(Map<Location, String> owners, Map<Location, String> passwords) {
+    public synchronized boolean loadWorld(String worldName, Consumer<ProtectionRecord> records) {
+        if (!isReady()) {
+            plugin.getLogger().warning("[PrivateChest] SQLite storage is not ready!");
+            return false;
+        }
+
+        try (PreparedStatement pstmt = connection.prepareStatement(SELECT_WORLD_SQL)) {
+            pstmt.setString(1, worldName);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                int loaded = 0;
+                while (rs.next()) {
+                    records.accept(readRecord(rs));
+                    loaded++;
+                }
+
+                plugin.getLogger().info("[PrivateChest] Loaded " + loaded + " locked chests for world '" + worldName + "' from SQLite storage.");
+                return true;
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().severe("[PrivateChest] Failed to load world '" + worldName + "' from SQLite storage!");
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    @Override
+    public synchronized boolean loadChunk(String worldName, int chunkX, int chunkZ, Consumer<ProtectionRecord> records) {
+        if (!isReady()) {
+            return false;
+        }
+
+        try (PreparedStatement pstmt = connection.prepareStatement(SELECT_CHUNK_SQL)) {
+            bindChunk(pstmt, worldName, chunkX, chunkZ);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    records.accept(readRecord(rs));
+                }
+            }
+            return true;
+        } catch (SQLException e) {
+            plugin.getLogger().severe("[PrivateChest] Failed to load chunk " + chunkX + "," + chunkZ + " of world '" + worldName + "' from SQLite storage!");
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    @Override
+    public synchronized boolean loadTrust(Map<String, Set<String>> trustRelations) {
+        if (!isReady()) {
+            plugin.getLogger().warning("[PrivateChest] SQLite storage is not ready!");
+            return false;
+        }
+
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery(SELECT_TRUST_SQL)) {
+            int relations = 0;
+            while (rs.next()) {
+                trustRelations.computeIfAbsent(rs.getString("owner"), k -> new HashSet<>()).add(rs.getString("trusted"));
+                relations++;
+            }
+
+            plugin.getLogger().info("[PrivateChest] Loaded " + relations + " trust relations from SQLite storage.");
+            return true;
+        } catch (SQLException e) {
+            plugin.getLogger().severe("[PrivateChest] Failed to load trust relations from SQLite storage!");
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Writes the changed rows, deletes the removed ones and replaces the trust lists
+     * of the changed owners, all in one transaction.
+     */
+    @Override
+    public synchronized boolean applyChanges(ChangeSet changes) {
+        if (!isReady()) {
+            plugin.getLogger().warning("[PrivateChest] SQLite storage is not ready!");
+            return false;
+        }
+
+        try {
+            connection.setAutoCommit(false);
+
+            if (!changes.getRemovals().isEmpty()) {
+                for (ProtectionRecord record : changes.getRemovals()) {
+                    deleteStatement.setString(1, record.getWorld());
+                    deleteStatement.setLong(2, BlockKey.chunkOf(record.getBlockKey()));
+                    deleteStatement.setLong(3, record.getBlockKey());
+                    deleteStatement.addBatch();
+                }
+                deleteStatement.executeBatch();
+            }
+
+            upsertRecords(changes.getUpserts());
+
+            if (!changes.getTrustChanges().isEmpty()) {
+                for (String owner : changes.getTrustChanges().keySet()) {
+                    trustDeleteStatement.setString(1, owner);
+                    trustDeleteStatement.addBatch();
+                }
+                trustDeleteStatement.executeBatch();
+                insertTrust(changes.getTrustChanges());
+            }
+
+            connection.commit();
+            connection.setAutoCommit(true);
+            return true;
+        } catch (SQLException e) {
+            plugin.getLogger().severe("[PrivateChest] Failed to save changes to SQLite storage!");
+            e.printStackTrace();
+
+            try {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            } catch (SQLException rollbackEx) {
+                plugin.getLogger().severe("[PrivateChest] Failed to rollback SQLite transaction!");
+                rollbackEx.printStackTrace();
+            }
+            return false;
+        }
+    }
+
+    @Override
+    public synchronized boolean loadOwnerCounts(OwnerCountConsumer counts) {
+        if (!isReady()) {
+            plugin.getLogger().warning("[PrivateChest] SQLite storage is not ready!");
+            return false;
+        }
+
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery(COUNT_BY_OWNER_SQL)) {
+            int owners = 0;
+            while (rs.next()) {
+                counts.accept(rs.getString("owner"), parseType(rs.getString("type")), rs.getInt("blocks"));
+                owners++;
+            }
+
+            plugin.getLogger().info("[PrivateChest] Loaded " + owners + " owner counters from SQLite storage.");
+            return true;
+        } catch (SQLException e) {
+            plugin.getLogger().severe("[PrivateChest] Failed to load owner counters from SQLite storage!");
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    private void bindChunk(PreparedStatement pstmt, String worldName, int chunkX, int chunkZ) throws SQLException {
+        long chunkKey = BlockKey.chunk(chunkX, chunkZ);
+        pstmt.setString(1, worldName);
+        pstmt.setLong(2, chunkKey);
+        pstmt.setString(3, worldName);
+        pstmt.setLong(4, chunkKey);
+        pstmt.setLong(5, chunkKey);
+    }
+
+    private ProtectionRecord readRecord(ResultSet rs) throws SQLException {
+        long partnerKey = rs.getLong("partner_key");
+        if (rs.wasNull()) {
+            partnerKey = ProtectionRecord.NO_PARTNER;
+        }
+
+        int ownerId = OwnerRegistry.getInstance().getOrCreateId(rs.getString("owner"));
+        return new ProtectionRecord(rs.getString("world"), rs.getLong("block_key"), partnerKey, ownerId,
+                rs.getString("password"), rs.getString("name"), parseType(rs.getString("type")), rs.getLong("created"));
+    }
+
+    private static ContainerType parseType(String typeName) {
+        if (typeName == null) {
+            return null;
+        }
+        try {
+            return ContainerType.valueOf(typeName);
+        } catch (IllegalArgumentException e) {
+            return null; // Unknown type (e.g. written by a newer version) - resolved from the block later
+        }
+    }
+
+    /**
+     * Rewrites the protection records of the given worlds (or the whole table) and, if given,
+     * all trust relations. Only used for migrations; regular saves write changed rows through applyChanges.
+     */
+    @Override
+    public synchronized boolean saveData(Collection<ProtectionRecord> records, Set<String> worlds, Map<String, Set<String>> trustRelations) {
         if (!isReady()) {
             plugin.getLogger().warning("[PrivateChest] SQLite storage is not ready!");
             return false;
@@ -132,29 +434,29 @@ public class SqliteStorage implements DataStorage {
             // Use transaction for better performance and consistency
             connection.setAutoCommit(false);
 
-            // Clear existing data
-            try (Statement clearStmt = connection.createStatement()) {
-                clearStmt.execute(CLEAR_ALL_SQL);
+            // Clear existing data of the saved worlds; rows of other worlds stay as they are
+            if (worlds == null) {
+                try (Statement clearStmt = connection.createStatement()) {
+                    clearStmt.execute(CLEAR_ALL_SQL);
+                }
+            } else {
+                try (PreparedStatement clearStmt = connection.prepareStatement(DELETE_WORLD_SQL)) {
+                    for (String world : worlds) {
+                        clearStmt.setString(1, world);
+                        clearStmt.addBatch();
+                    }
+                    clearStmt.executeBatch();
+                }
             }
 
             // Insert current data
-            try (PreparedStatement pstmt = connection.prepareStatement(INSERT_SQL)) {
-                for (Map.Entry<Location, String> entry : owners.entrySet()) {
-                    Location loc = entry.getKey();
-                    String owner = entry.getValue();
-                    String password = passwords.get(loc);
-
-                    if (loc.getWorld() != null && password != null) {
-                        pstmt.setString(1, loc.getWorld().getName());
-                        pstmt.setInt(2, loc.getBlockX());
-                        pstmt.setInt(3, loc.getBlockY());
-                        pstmt.setInt(4, loc.getBlockZ());
-                        pstmt.setString(5, owner);
-                        pstmt.setString(6, password);
-                        pstmt.addBatch();
-                    }
+            upsertRecords(records);
+
+            if (trustRelations != null) {
+                try (Statement clearStmt = connection.createStatement()) {
+                    clearStmt.execute(CLEAR_TRUST_SQL);
                 }
-                pstmt.executeBatch();
+                insertTrust(trustRelations);
             }
 
             // Commit transaction
@@ -178,10 +480,92 @@ public class SqliteStorage implements DataStorage {
         }
     }
 
+    private void upsertRecords(Collection<ProtectionRecord> records) throws SQLException {
+        if (records.isEmpty()) {
+            return;
+        }
+
+        insertWorlds(worldInsertStatement, records.stream().map(ProtectionRecord::getWorld).collect(Collectors.toSet()));
+
+        PreparedStatement pstmt = upsertStatement;
+        for (ProtectionRecord record : records) {
+            if (record.getPasswordHash() != null) {
+                bindUpsert(pstmt, record.getWorld(), record.getBlockKey(), record.getPartnerKey(), record.getOwnerUUID(),
+                        record.getPasswordHash(), record.getType() != null ? record.getType().name() : null,
+                        record.getName(), record.getCreatedAt());
+                pstmt.addBatch();
+            }
+        }
+        pstmt.executeBatch();
+    }
+
+    /**
+     * Makes sure every world has an id row. Runs inside the caller's transaction, so a rolled back
+     * save never leaves rows pointing at a world id that was not kept.
+     *
+     * @param pstmt The prepared {@code INSERT_WORLD_SQL} statement
+     */
+    private static void insertWorlds(PreparedStatement pstmt, Set<String> worlds) throws SQLException {
+        for (String world : worlds) {
+            pstmt.setString(1, world);
+            pstmt.addBatch();
+        }
+        pstmt.executeBatch();
+    }
+
+    private static void bindUpsert(PreparedStatement pstmt, String world, long blockKey, long partnerKey, String owner,
+                                   String password, String type, String name, long createdAt) throws SQLException {
+        pstmt.setString(1, world);
+        pstmt.setLong(2, BlockKey.chunkOf(blockKey));
+        pstmt.setLong(3, blockKey);
+        if (partnerKey != ProtectionRecord.NO_PARTNER) {
+            pstmt.setLong(4, BlockKey.chunkOf(partnerKey));
+            pstmt.setLong(5, partnerKey);
+        } else {
+            pstmt.setNull(4, Types.INTEGER);
+            pstmt.setNull(5, Types.INTEGER);
+        }
+        pstmt.setString(6, owner);
+        pstmt.setString(7, password);
+        if (type != null) {
+            pstmt.setString(8, type);
+        } else {
+            pstmt.setNull(8, Types.VARCHAR);
+        }
+        if (name != null && !name.trim().isEmpty()) {
+            pstmt.setString(9, name.trim());
+        } else {
+            pstmt.setNull(9, Types.VARCHAR);
+        }
+        pstmt.setLong(10, createdAt);
+    }
+
+    private void insertTrust(Map<String, Set<String>> trustRelations) throws SQLException {
+        PreparedStatement pstmt = trustInsertStatement;
+        boolean batched = false;
+        for (Map.Entry<String, Set<String>> entry : trustRelations.entrySet()) {
+            for (String trusted : entry.getValue()) {
+                pstmt.setString(1, entry.getKey());
+                pstmt.setString(2, trusted);
+                pstmt.addBatch();
+                batched = true;
+            }
+        }
+        if (batched) {
+            pstmt.executeBatch();
+        }
+    }
+
     @Override
-    public void close() {
+    public synchronized void close() {
         if (connection != null) {
             try {
+                // Closing the connection also closes the cached statements
+                upsertStatement = null;
+                deleteStatement = null;
+                trustDeleteStatement = null;
+                trustInsertStatement = null;
+                worldInsertStatement = null;
                 connection.close();
                 plugin.getLogger().info("[PrivateChest] SQLite storage closed successfully.");
             } catch (SQLException e) {
@@ -192,6 +576,36 @@ public class SqliteStorage implements DataStorage {
         }
     }
 
+    /**
+     * Copies the -wal file into the database file and empties it. Without this the checkpoint
+     * SQLite runs when the connection closes would change the database file after a snapshot.
+     */
+    @Override
+    public synchronized void checkpoint() throws IOException {
+        if (connection == null) {
+            return;
+        }
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("PRAGMA wal_checkpoint(TRUNCATE)");
+        } catch (SQLException e) {
+            throw new IOException("WAL checkpoint failed", e);
+        }
+    }
+
+    /**
+     * In WAL mode commits land in the -wal file and only reach the database file at checkpoints,
+     * so both are taken into account. An empty -wal file holds no commits; SQLite creates it again
+     * whenever the database is opened, so its time is ignored.
+     */
+    @Override
+    public long getLastModified() {
+        if (databaseFile == null) {
+            return 0L;
+        }
+        File wal = new File(databaseFile.getPath() + "-wal");
+        return wal.length() > 0 ? Math.max(databaseFile.lastModified(), wal.lastModified()) : databaseFile.lastModified();
+    }
+
     @Override
     public String getStorageType() {
         return "SQLite";
@@ -207,74 +621,179 @@ public class SqliteStorage implements DataStorage {
     }
 
     /**
-     * Deletes a specific chest entry from the database.
-     * Used for optimized single-entry removal.
+     * Configures the connection: WAL journaling, so reads no longer wait for a write to commit,
+     * plus the synchronous level, page cache size and memory mapped I/O from the config.
      */
-    public boolean deleteChest(Location location) {
-        if (!isReady() || location.getWorld() == null) {
-            return false;
+    private void applyPragmas() throws SQLException {
+        String synchronous = plugin.getConfig().getString("sqlite.synchronous", "NORMAL").toUpperCase();
+        if (!SYNCHRONOUS_LEVELS.contains(synchronous)) {
+            plugin.getLogger().warning("[PrivateChest] Unknown sqlite.synchronous level '" + synchronous + "', using NORMAL.");
+            synchronous = "NORMAL";
         }
+        int cacheSizeKb = Math.max(0, plugin.getConfig().getInt("sqlite.cache-size-kb", 8192));
+        long mmapSizeMb = Math.max(0L, plugin.getConfig().getLong("sqlite.mmap-size-mb", 64L));
 
-        try (PreparedStatement pstmt = connection.prepareStatement(DELETE_SQL)) {
-            pstmt.setString(1, location.getWorld().getName());
-            pstmt.setInt(2, location.getBlockX());
-            pstmt.setInt(3, location.getBlockY());
-            pstmt.setInt(4, location.getBlockZ());
-
-            return pstmt.executeUpdate() > 0;
-        } catch (SQLException e) {
-            plugin.getLogger().warning("[PrivateChest] Failed to delete chest from SQLite: " + e.getMessage());
-            return false;
+        try (Statement stmt = connection.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("PRAGMA journal_mode=WAL")) {
+                if (rs.next() && !"wal".equalsIgnoreCase(rs.getString(1))) {
+                    plugin.getLogger().warning("[PrivateChest] SQLite refused WAL mode, using journal mode '" + rs.getString(1) + "'.");
+                }
+            }
+            // With WAL, NORMAL only syncs at checkpoints; a crash can lose the last commits but never corrupts the file
+            stmt.execute("PRAGMA synchronous=" + synchronous);
+            // A negative cache size is in KiB rather than pages
+            stmt.execute("PRAGMA cache_size=-" + cacheSizeKb);
+            stmt.execute("PRAGMA mmap_size=" + (mmapSizeMb * 1024L * 1024L));
         }
     }
 
     /**
-     * Updates a specific chest entry in the database.
-     * Used for optimized single-entry updates.
+     * Brings the database up to {@link #SCHEMA_VERSION}, running every missing step in order.
+     * Each step commits together with its version number, so an interrupted upgrade resumes
+     * at the failed step. Steps are idempotent, because databases written before the version
+     * table existed start at version 0 whatever their actual layout.
      */
-    public boolean updateChest(Location location, String owner, String password) {
-        if (!isReady() || location.getWorld() == null) {
-            return false;
+    private void migrateSchema() throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS " + SCHEMA_TABLE_NAME + " (version INTEGER NOT NULL)");
         }
 
-        try (PreparedStatement pstmt = connection.prepareStatement(INSERT_SQL)) {
-            pstmt.setString(1, location.getWorld().getName());
-            pstmt.setInt(2, location.getBlockX());
-            pstmt.setInt(3, location.getBlockY());
-            pstmt.setInt(4, location.getBlockZ());
-            pstmt.setString(5, owner);
-            pstmt.setString(6, password);
+        int version = 0;
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT MAX(version) FROM " + SCHEMA_TABLE_NAME)) {
+            if (rs.next()) {
+                version = rs.getInt(1);
+            }
+        }
 
-            return pstmt.executeUpdate() > 0;
-        } catch (SQLException e) {
-            plugin.getLogger().warning("[PrivateChest] Failed to update chest in SQLite: " + e.getMessage());
-            return false;
+        if (version > SCHEMA_VERSION) {
+            plugin.getLogger().warning("[PrivateChest] SQLite schema version " + version +
+                    " is newer than this plugin supports (" + SCHEMA_VERSION + ").");
+            return;
+        }
+
+        for (int step = version + 1; step <= SCHEMA_VERSION; step++) {
+            connection.setAutoCommit(false);
+            try {
+                try (Statement stmt = connection.createStatement()) {
+                    switch (step) {
+                        case 1:
+                            // Protection records
+                            stmt.execute(CREATE_LEGACY_TABLE_SQL);
+                            break;
+                        case 2:
+                            // 2.4: double chest partner, container type, name and creation time
+                            addMissingColumns();
+                            stmt.execute(CREATE_LEGACY_PARTNER_INDEX_SQL);
+                            break;
+                        case 3:
+                            // 2.4: trust relations, owner lookups
+                            stmt.execute(CREATE_TRUST_TABLE_SQL);
+                            stmt.execute(CREATE_LEGACY_OWNER_INDEX_SQL);
+                            stmt.execute(CREATE_TRUSTED_INDEX_SQL);
+                            break;
+                        case 4:
+                            // 2.4: world ids and packed block and chunk keys
+                            stmt.execute(CREATE_WORLD_TABLE_SQL);
+                            stmt.execute(CREATE_TABLE_SQL);
+                            stmt.execute(CREATE_PARTNER_INDEX_SQL);
+                            stmt.execute(CREATE_OWNER_INDEX_SQL);
+                            copyLegacyRows();
+                            stmt.execute("DROP TABLE " + LEGACY_TABLE_NAME);
+                            break;
+                        default:
+                            throw new IllegalStateException("Missing SQLite schema step " + step);
+                    }
+                    stmt.execute("DELETE FROM " + SCHEMA_TABLE_NAME);
+                    stmt.execute("INSERT INTO " + SCHEMA_TABLE_NAME + " (version) VALUES (" + step + ")");
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        }
+
+        if (version < SCHEMA_VERSION) {
+            plugin.getLogger().info("[PrivateChest] SQLite schema upgraded from version " + version + " to " + SCHEMA_VERSION + ".");
         }
     }
 
     /**
-     * Implementation of the extended loadData method for compatibility.
-     * Currently only supports chest data; names and trust relations are ignored.
-     * This is a temporary implementation for v2.1 basic compatibility.
+     * Moves the rows of the old coordinate keyed table into the packed key layout.
+     * Rows without a world, owner or password (possible in tables created by old versions, which
+     * did not declare the columns NOT NULL, or edited by hand) cannot be stored and are skipped.
      */
-    @Override
-    public boolean loadData(Map<Location, String> owners, Map<Location, String> passwords,
-                           Map<Location, String> containerNames, Map<String, Set<String>> trustRelations) {
-        // For now, delegate to the existing method and ignore additional parameters
-        // Full SQLite implementation for names and trust will be added in future updates
-        return loadData(owners, passwords);
+    private void copyLegacyRows() throws SQLException {
+        Set<String> worlds = new HashSet<>();
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT DISTINCT world FROM " + LEGACY_TABLE_NAME + " WHERE world IS NOT NULL")) {
+            while (rs.next()) {
+                worlds.add(rs.getString("world"));
+            }
+        }
+        if (worlds.isEmpty()) {
+            return;
+        }
+
+        int copied = 0;
+        int skipped = 0;
+        try (PreparedStatement worldStmt = connection.prepareStatement(INSERT_WORLD_SQL);
+             Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery(SELECT_LEGACY_SQL);
+             PreparedStatement pstmt = connection.prepareStatement(UPSERT_SQL)) {
+            insertWorlds(worldStmt, worlds);
+
+            while (rs.next()) {
+                String world = rs.getString("world");
+                String owner = rs.getString("owner");
+                String password = rs.getString("password");
+                if (world == null || owner == null || password == null) {
+                    plugin.getLogger().warning("[PrivateChest] Skipping incomplete SQLite row at " + world + ":" + rs.getInt("x") + ","
+                            + rs.getInt("y") + "," + rs.getInt("z") + " (missing " + (world == null ? "world" : owner == null ? "owner" : "password") + ").");
+                    skipped++;
+                    continue;
+                }
+
+                long partnerKey = ProtectionRecord.NO_PARTNER;
+                int partnerX = rs.getInt("partner_x");
+                if (!rs.wasNull()) {
+                    partnerKey = BlockKey.pack(partnerX, rs.getInt("partner_y"), rs.getInt("partner_z"));
+                }
+                bindUpsert(pstmt, world, BlockKey.pack(rs.getInt("x"), rs.getInt("y"), rs.getInt("z")),
+                        partnerKey, owner, password, rs.getString("type"), rs.getString("name"), rs.getLong("created"));
+                pstmt.addBatch();
+                copied++;
+            }
+            pstmt.executeBatch();
+        }
+
+        plugin.getLogger().info("[PrivateChest] Moved " + copied + " locked chests to the packed key layout.");
+        if (skipped > 0) {
+            plugin.getLogger().warning("[PrivateChest] Skipped " + skipped + " incomplete rows that could not be moved.");
+        }
     }
 
     /**
-     * Implementation of the extended saveData method for compatibility.
-     * Currently only supports chest data; names and trust relations are ignored.
-     * This is a temporary implementation for v2.1 basic compatibility.
+     * Adds the columns introduced in 2.4 to a table created by an older version.
      */
-    @Override
-    public boolean saveData(Map<Location, String> owners, Map<Location, String> passwords,
-                           Map<Location, String> containerNames, Map<String, Set<String>> trustRelations) {
-        // For now, delegate to the existing method and ignore additional parameters
-        // Full SQLite implementation for names and trust will be added in future updates
-        return saveData(owners, passwords);
+    private void addMissingColumns() throws SQLException {
+        Set<String> existing = new HashSet<>();
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA table_info(" + LEGACY_TABLE_NAME + ")")) {
+            while (rs.next()) {
+                existing.add(rs.getString("name").toLowerCase());
+            }
+        }
+
+        for (String[] column : ADDED_COLUMNS) {
+            if (!existing.contains(column[0])) {
+                try (Statement stmt = connection.createStatement()) {
+                    stmt.execute("ALTER TABLE " + LEGACY_TABLE_NAME + " ADD COLUMN " + column[0] + " " + column[1]);
+                }
+            }
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,653 @@
+package me.tuplugin.privatechest.storage;
+
+import me.tuplugin.privatechest.OwnerRegistry;
+import me.tuplugin.privatechest.PrivateChest;
+import me.tuplugin.privatechest.ProtectionRecord;
+import me.tuplugin.privatechest.enums.ContainerType;
+import me.tuplugin.privatechest.util.BlockKey;
+import org.yaml.snakeyaml.DumperOptions;
+import org.yaml.snakeyaml.LoaderOptions;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.emitter.Emitter;
+import org.yaml.snakeyaml.events.CollectionEndEvent;
+import org.yaml.snakeyaml.events.CollectionStartEvent;
+import org.yaml.snakeyaml.events.DocumentEndEvent;
+import org.yaml.snakeyaml.events.DocumentStartEvent;
+import org.yaml.snakeyaml.events.Event;
+import org.yaml.snakeyaml.events.ImplicitTuple;
+import org.yaml.snakeyaml.events.MappingEndEvent;
+import org.yaml.snakeyaml.events.MappingStartEvent;
+import org.yaml.snakeyaml.events.ScalarEvent;
+import org.yaml.snakeyaml.events.SequenceEndEvent;
+import org.yaml.snakeyaml.events.SequenceStartEvent;
+import org.yaml.snakeyaml.events.StreamEndEvent;
+import org.yaml.snakeyaml.events.StreamStartEvent;
+import org.yaml.snakeyaml.nodes.NodeId;
+import org.yaml.snakeyaml.nodes.Tag;
+import org.yaml.snakeyaml.resolver.Resolver;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * One YAML data file in the data.yml format, streamed with SnakeYAML events.
+ * Reading hands entries to a consumer as they are parsed; writing copies the current file event
+ * by event into a new one, replacing only the changed entries, and moves it into place.
+ * No document tree is ever built, and sections this class does not know are carried over as they are.
+ *
+ * Shared by {@link YamlStorage} (a single data.yml) and {@link ShardedYamlStorage} (one file per region).
+ * Not thread-safe; callers synchronize.
+ *
+ * @since 2.4
+ */
+final class YamlDataFile {
+
+    private static final Resolver RESOLVER = new Resolver();
+
+    private final PrivateChest plugin;
+    private final File file;
+    private final DurabilityPolicy durability;
+    private final String name;
+
+    /**
+     * @param plugin The plugin, for warnings about malformed entries
+     * @param file The data file; it does not need to exist yet
+     * @param durability Decides when rewrites are synced to disk
+     */
+    YamlDataFile(PrivateChest plugin, File file, DurabilityPolicy durability) {
+        this.plugin = plugin;
+        this.file = file;
+        this.durability = durability;
+        this.name = plugin.getDataFolder().toPath().relativize(file.toPath()).toString();
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    // --- Reading ---
+
+    /**
+     * Streams the file, handing every matching record to the consumer.
+     *
+     * @param keyPrefix Only entries whose key starts with this are read, or null for all
+     * @param records Receives the records
+     * @param trustRelations Receives the trust lists, or null to skip them
+     * @return The number of records read
+     */
+    int read(String keyPrefix, Consumer<ProtectionRecord> records, Map<String, Set<String>> trustRelations) throws IOException {
+        if (file.length() == 0) {
+            return 0; // Missing or empty
+        }
+
+        int loaded = 0;
+        try (Reader reader = openReader()) {
+            Iterator<Event> events = newParser().parse(reader).iterator();
+            if (!enterRootMapping(events)) {
+                return 0;
+            }
+
+            Event event;
+            while (!((event = events.next()) instanceof MappingEndEvent)) {
+                String section = scalarValue(event);
+                if ("chests".equals(section)) {
+                    loaded += readChests(events, keyPrefix, records);
+                } else if ("trust".equals(section) && trustRelations != null) {
+                    readTrust(events, trustRelations);
+                } else {
+                    skipNode(events.next(), events);
+                }
+            }
+        }
+        return loaded;
+    }
+
+    private int readChests(Iterator<Event> events, String keyPrefix, Consumer<ProtectionRecord> records) {
+        Event start = events.next();
+        if (!(start instanceof MappingStartEvent)) {
+            skipNode(start, events); // Empty section
+            return 0;
+        }
+
+        int loaded = 0;
+        Map<String, String> fields = new HashMap<>();
+        Event event;
+        while (!((event = events.next()) instanceof MappingEndEvent)) {
+            String key = scalarValue(event);
+            Event value = events.next();
+            if (key == null || (keyPrefix != null && !key.startsWith(keyPrefix)) || !(value instanceof MappingStartEvent)) {
+                skipNode(value, events);
+                continue;
+            }
+
+            fields.clear();
+            readFields(events, fields);
+            ProtectionRecord record = readRecord(key, fields);
+            if (record != null) {
+                records.accept(record);
+                loaded++;
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Reads the scalar fields of an entry mapping whose start event was already consumed.
+     */
+    private void readFields(Iterator<Event> events, Map<String, String> fields) {
+        Event event;
+        while (!((event = events.next()) instanceof MappingEndEvent)) {
+            String field = scalarValue(event);
+            Event value = events.next();
+            if (field != null && value instanceof ScalarEvent) {
+                fields.put(field, ((ScalarEvent) value).getValue());
+            } else {
+                skipNode(value, events);
+            }
+        }
+    }
+
+    private void readTrust(Iterator<Event> events, Map<String, Set<String>> trustRelations) {
+        Event start = events.next();
+        if (!(start instanceof MappingStartEvent)) {
+            skipNode(start, events);
+            return;
+        }
+
+        Event event;
+        while (!((event = events.next()) instanceof MappingEndEvent)) {
+            String ownerUUID = scalarValue(event);
+            Event value = events.next();
+            if (ownerUUID == null || !(value instanceof SequenceStartEvent)) {
+                skipNode(value, events);
+                continue;
+            }
+
+            Set<String> trusted = new HashSet<>();
+            while (!((event = events.next()) instanceof SequenceEndEvent)) {
+                String trustedUUID = scalarValue(event);
+                if (trustedUUID != null) {
+                    trusted.add(trustedUUID);
+                } else {
+                    skipNode(event, events);
+                }
+            }
+            if (!trusted.isEmpty()) {
+                trustRelations.put(ownerUUID, trusted);
+            }
+        }
+    }
+
+    // --- Writing ---
+
+    /**
+     * The entries a rewrite replaces. A chest key mapped to null is removed; a trust owner
+     * mapped to an empty set is removed.
+     */
+    static final class Rewrite {
+        final Map<String, ProtectionRecord> chests = new LinkedHashMap<>();
+        final Map<String, Set<String>> trust = new LinkedHashMap<>();
+        final Predicate<String> dropChest;
+        final boolean dropAllTrust;
+
+        Rewrite(Predicate<String> dropChest, boolean dropAllTrust) {
+            this.dropChest = dropChest;
+            this.dropAllTrust = dropAllTrust;
+        }
+    }
+
+    /**
+     * Writes the file with the given entries replaced, through an {@link AtomicFileWriter}.
+     * The directory sync is left to the durability policy; the caller commits it.
+     *
+     * @return The number of entries left in the file (chests, trust owners and unknown sections)
+     */
+    int rewrite(Rewrite rewrite) throws IOException {
+        int entries = 0;
+        try (AtomicFileWriter out = new AtomicFileWriter(file, durability);
+             Writer writer = new BufferedWriter(new OutputStreamWriter(out.getStream(), StandardCharsets.UTF_8), 64 * 1024)) {
+            Emitter emitter = new Emitter(writer, dumperOptions());
+            emitter.emit(new StreamStartEvent(null, null));
+            emitter.emit(new DocumentStartEvent(null, null, false, null, null));
+            emitter.emit(new MappingStartEvent(null, null, true, null, null, DumperOptions.FlowStyle.BLOCK));
+
+            boolean chestsWritten = false;
+            boolean trustWritten = false;
+            if (file.length() > 0) {
+                try (Reader reader = openReader()) {
+                    Iterator<Event> events = newParser().parse(reader).iterator();
+                    if (enterRootMapping(events)) {
+                        Event event;
+                        while (!((event = events.next()) instanceof MappingEndEvent)) {
+                            String section = scalarValue(event);
+                            emitter.emit(event);
+                            if ("chests".equals(section) && !chestsWritten) {
+                                entries += mergeChests(events, emitter, rewrite);
+                                chestsWritten = true;
+                            } else if ("trust".equals(section) && !trustWritten) {
+                                entries += mergeTrust(events, emitter, rewrite);
+                                trustWritten = true;
+                            } else {
+                                copyNode(events.next(), events, emitter);
+                                entries++;
+                            }
+                        }
+                    }
+                }
+            }
+
+            if (!chestsWritten && !rewrite.chests.isEmpty()) {
+                emitString(emitter, "chests");
+                entries += mergeChests(null, emitter, rewrite);
+            }
+            if (!trustWritten && !rewrite.trust.isEmpty()) {
+                emitString(emitter, "trust");
+                entries += mergeTrust(null, emitter, rewrite);
+            }
+
+            emitter.emit(new MappingEndEvent(null, null));
+            emitter.emit(new DocumentEndEvent(null, null, false));
+            emitter.emit(new StreamEndEvent(null, null));
+            writer.flush();
+            out.commit();
+        }
+        return entries;
+    }
+
+    /**
+     * Writes the chests section: existing entries are copied unless replaced or dropped, changed
+     * entries are written in place, and new entries are appended.
+     *
+     * @param events The parser positioned at the section value, or null if the file has no such section
+     * @return The number of entries written
+     */
+    private int mergeChests(Iterator<Event> events, Emitter emitter, Rewrite rewrite) throws IOException {
+        emitter.emit(new MappingStartEvent(null, null, true, null, null, DumperOptions.FlowStyle.BLOCK));
+        Set<String> written = new HashSet<>();
+        int copied = 0;
+
+        Event start = events != null ? events.next() : null;
+        if (start instanceof MappingStartEvent) {
+            Event event;
+            while (!((event = events.next()) instanceof MappingEndEvent)) {
+                String key = scalarValue(event);
+                if (key != null && rewrite.chests.containsKey(key)) {
+                    skipNode(events.next(), events);
+                    ProtectionRecord record = rewrite.chests.get(key);
+                    if (record != null && written.add(key) && !writeRecord(emitter, key, record)) {
+                        written.remove(key);
+                    }
+                } else if (key != null && rewrite.dropChest.test(key)) {
+                    skipNode(events.next(), events);
+                } else {
+                    emitter.emit(event);
+                    copyNode(events.next(), events, emitter);
+                    copied++;
+                }
+            }
+        } else if (start != null) {
+            skipNode(start, events);
+        }
+
+        for (Map.Entry<String, ProtectionRecord> entry : rewrite.chests.entrySet()) {
+            if (entry.getValue() != null && !written.contains(entry.getKey())
+                    && writeRecord(emitter, entry.getKey(), entry.getValue())) {
+                written.add(entry.getKey());
+            }
+        }
+        emitter.emit(new MappingEndEvent(null, null));
+        return copied + written.size();
+    }
+
+    private int mergeTrust(Iterator<Event> events, Emitter emitter, Rewrite rewrite) throws IOException {
+        emitter.emit(new MappingStartEvent(null, null, true, null, null, DumperOptions.FlowStyle.BLOCK));
+        Set<String> written = new HashSet<>();
+        int copied = 0;
+
+        Event start = events != null ? events.next() : null;
+        if (start instanceof MappingStartEvent) {
+            Event event;
+            while (!((event = events.next()) instanceof MappingEndEvent)) {
+                String ownerUUID = scalarValue(event);
+                if (ownerUUID != null && rewrite.trust.containsKey(ownerUUID)) {
+                    skipNode(events.next(), events);
+                    if (written.add(ownerUUID) && !writeTrust(emitter, ownerUUID, rewrite.trust.get(ownerUUID))) {
+                        written.remove(ownerUUID);
+                    }
+                } else if (rewrite.dropAllTrust) {
+                    skipNode(events.next(), events);
+                } else {
+                    emitter.emit(event);
+                    copyNode(events.next(), events, emitter);
+                    copied++;
+                }
+            }
+        } else if (start != null) {
+            skipNode(start, events);
+        }
+
+        for (Map.Entry<String, Set<String>> entry : rewrite.trust.entrySet()) {
+            if (!written.contains(entry.getKey()) && writeTrust(emitter, entry.getKey(), entry.getValue())) {
+                written.add(entry.getKey());
+            }
+        }
+        emitter.emit(new MappingEndEvent(null, null));
+        return copied + written.size();
+    }
+
+    /**
+     * Starts writing a new file from scratch, entry by entry, through an {@link AtomicFileWriter}.
+     * The current file is not read: sections it holds are dropped when the new file is committed.
+     */
+    StreamWriter newStreamWriter() throws IOException {
+        return new StreamWriter();
+    }
+
+    /**
+     * Writes a new file in one pass: chests first, then trust lists. Only {@link #commit()} moves
+     * the file into place; closing without it leaves the current file untouched.
+     * The directory sync is left to the durability policy; the caller commits it.
+     */
+    final class StreamWriter implements Closeable {
+        private final AtomicFileWriter out;
+        private final Writer writer;
+        private final Emitter emitter;
+        private boolean inTrust;
+
+        private StreamWriter() throws IOException {
+            out = new AtomicFileWriter(file, durability);
+            writer = new BufferedWriter(new OutputStreamWriter(out.getStream(), StandardCharsets.UTF_8), 64 * 1024);
+            emitter = new Emitter(writer, dumperOptions());
+            emitter.emit(new StreamStartEvent(null, null));
+            emitter.emit(new DocumentStartEvent(null, null, false, null, null));
+            emitter.emit(new MappingStartEvent(null, null, true, null, null, DumperOptions.FlowStyle.BLOCK));
+            emitString(emitter, "chests");
+            emitter.emit(new MappingStartEvent(null, null, true, null, null, DumperOptions.FlowStyle.BLOCK));
+        }
+
+        /**
+         * Writes a record to the chests section. Records must come before any trust list.
+         *
+         * @return true if the record was written, false if it has no password
+         */
+        boolean write(ProtectionRecord record) throws IOException {
+            if (inTrust) {
+                throw new IllegalStateException("Records must be written before trust lists");
+            }
+            return writeRecord(emitter, serializeKey(record), record);
+        }
+
+        /**
+         * Writes an owner's trust list; empty lists are skipped.
+         */
+        void writeTrust(String ownerUUID, Set<String> trustedUUIDs) throws IOException {
+            if (!inTrust) {
+                emitter.emit(new MappingEndEvent(null, null));
+                emitString(emitter, "trust");
+                emitter.emit(new MappingStartEvent(null, null, true, null, null, DumperOptions.FlowStyle.BLOCK));
+                inTrust = true;
+            }
+            YamlDataFile.this.writeTrust(emitter, ownerUUID, trustedUUIDs);
+        }
+
+        void commit() throws IOException {
+            emitter.emit(new MappingEndEvent(null, null)); // chests or trust
+            emitter.emit(new MappingEndEvent(null, null));
+            emitter.emit(new DocumentEndEvent(null, null, false));
+            emitter.emit(new StreamEndEvent(null, null));
+            writer.flush();
+            out.commit();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    /**
+     * Writes one record of the chests section. Records without a password are not stored.
+     *
+     * @return true if the record was written
+     */
+    private boolean writeRecord(Emitter emitter, String key, ProtectionRecord record) throws IOException {
+        if (record.getPasswordHash() == null) {
+            return false;
+        }
+
+        emitString(emitter, key);
+        emitter.emit(new MappingStartEvent(null, null, true, null, null, DumperOptions.FlowStyle.BLOCK));
+        emitField(emitter, "owner", record.getOwnerUUID());
+        emitField(emitter, "password", record.getPasswordHash());
+
+        String name = record.getName();
+        if (name != null && !name.trim().isEmpty()) {
+            emitField(emitter, "name", name.trim());
+        }
+        if (record.hasPartner()) {
+            long partner = record.getPartnerKey();
+            emitField(emitter, "partner", BlockKey.x(partner) + "," + BlockKey.y(partner) + "," + BlockKey.z(partner));
+        }
+        if (record.getType() != null) {
+            emitField(emitter, "type", record.getType().name());
+        }
+        if (record.getCreatedAt() > 0) {
+            emitString(emitter, "created");
+            emitter.emit(new ScalarEvent(null, null, new ImplicitTuple(true, false), String.valueOf(record.getCreatedAt()),
+                    null, null, DumperOptions.ScalarStyle.PLAIN));
+        }
+        emitter.emit(new MappingEndEvent(null, null));
+        return true;
+    }
+
+    private boolean writeTrust(Emitter emitter, String ownerUUID, Set<String> trustedUUIDs) throws IOException {
+        if (trustedUUIDs == null || trustedUUIDs.isEmpty()) {
+            return false;
+        }
+
+        emitString(emitter, ownerUUID);
+        emitter.emit(new SequenceStartEvent(null, null, true, null, null, DumperOptions.FlowStyle.BLOCK));
+        for (String trustedUUID : trustedUUIDs) {
+            emitString(emitter, trustedUUID);
+        }
+        emitter.emit(new SequenceEndEvent(null, null));
+        return true;
+    }
+
+    private static void emitField(Emitter emitter, String field, String value) throws IOException {
+        emitString(emitter, field);
+        emitString(emitter, value);
+    }
+
+    /**
+     * Emits a string scalar, plain where that reads back as the same string and quoted otherwise
+     * (e.g. a name that looks like a number), just as a YamlConfiguration dump would.
+     */
+    private static void emitString(Emitter emitter, String value) throws IOException {
+        boolean plain = Tag.STR.equals(RESOLVER.resolve(NodeId.scalar, value, true));
+        emitter.emit(new ScalarEvent(null, null, new ImplicitTuple(plain, true), value, null, null, DumperOptions.ScalarStyle.PLAIN));
+    }
+
+    /**
+     * Newer SnakeYAML versions (1.32+, bundled by newer servers) refuse documents over 3 MB by
+     * default, which a large data file easily exceeds. The limit is lifted when the method exists.
+     */
+    private static Yaml newParser() {
+        LoaderOptions options = new LoaderOptions();
+        try {
+            LoaderOptions.class.getMethod("setCodePointLimit", int.class).invoke(options, Integer.MAX_VALUE);
+        } catch (ReflectiveOperationException ignored) {
+            // Older SnakeYAML without a limit
+        }
+        return new Yaml(options);
+    }
+
+    /**
+     * Same layout as the YamlConfiguration output of earlier versions.
+     */
+    private static DumperOptions dumperOptions() {
+        DumperOptions options = new DumperOptions();
+        options.setIndent(2);
+        options.setDefaultFlowStyle(DumperOptions.FlowStyle.BLOCK);
+        return options;
+    }
+
+    // --- Event Helpers ---
+
+    private Reader openReader() throws IOException {
+        // Plain streams rather than NIO channels, which would be closed if the writer thread is interrupted
+        return new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8), 64 * 1024);
+    }
+
+    /**
+     * Consumes the events up to and including the start of the root mapping.
+     *
+     * @return true if positioned inside the root mapping, false if the file is empty
+     */
+    private boolean enterRootMapping(Iterator<Event> events) throws IOException {
+        events.next(); // Stream start
+        Event event = events.next();
+        if (event instanceof StreamEndEvent) {
+            return false;
+        }
+        if (!(event instanceof DocumentStartEvent)) {
+            throw new IOException("Unexpected YAML event at the start of " + name + ": " + event);
+        }
+
+        event = events.next();
+        if (event instanceof MappingStartEvent) {
+            return true;
+        }
+        if (event instanceof ScalarEvent && ((ScalarEvent) event).getValue().isEmpty()) {
+            return false; // Document without content
+        }
+        throw new IOException(name + " does not hold a mapping");
+    }
+
+    private static String scalarValue(Event event) {
+        return event instanceof ScalarEvent ? ((ScalarEvent) event).getValue() : null;
+    }
+
+    /**
+     * Skips a node whose first event was already consumed.
+     */
+    private static void skipNode(Event first, Iterator<Event> events) {
+        int depth = first instanceof CollectionStartEvent ? 1 : 0;
+        while (depth > 0) {
+            Event event = events.next();
+            if (event instanceof CollectionStartEvent) {
+                depth++;
+            } else if (event instanceof CollectionEndEvent) {
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * Copies a node whose first event was already consumed to the emitter.
+     */
+    private static void copyNode(Event first, Iterator<Event> events, Emitter emitter) throws IOException {
+        emitter.emit(first);
+        int depth = first instanceof CollectionStartEvent ? 1 : 0;
+        while (depth > 0) {
+            Event event = events.next();
+            emitter.emit(event);
+            if (event instanceof CollectionStartEvent) {
+                depth++;
+            } else if (event instanceof CollectionEndEvent) {
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * Serializes a record location to a String (world,x,y,z)
+     */
+    static String serializeKey(ProtectionRecord record) {
+        return record.getWorld() + "," + record.getX() + "," + record.getY() + "," + record.getZ();
+    }
+
+    /**
+     * Builds a record from the fields of one entry of the chests section.
+     * The partner, type and created fields are optional so older data files still load.
+     */
+    private ProtectionRecord readRecord(String key, Map<String, String> entry) {
+        String[] parts = key.split(",");
+        if (parts.length != 4) {
+            plugin.getLogger().warning("[PrivateChest] Malformed location string in " + name + ": " + key);
+            return null;
+        }
+
+        String owner = entry.get("owner");
+        String password = entry.get("password");
+        if (owner == null || password == null) {
+            return null;
+        }
+
+        long blockKey;
+        try {
+            int x = Integer.parseInt(parts[1]);
+            int y = Integer.parseInt(parts[2]);
+            int z = Integer.parseInt(parts[3]);
+            blockKey = BlockKey.pack(x, y, z);
+        } catch (NumberFormatException e) {
+            plugin.getLogger().warning("[PrivateChest] Invalid number format in location from " + name + ": " + key);
+            return null;
+        }
+
+        String customName = entry.get("name");
+        if (customName != null) {
+            customName = customName.trim();
+            if (customName.isEmpty()) {
+                customName = null;
+            }
+        }
+
+        ContainerType type = null;
+        String typeName = entry.get("type");
+        if (typeName != null) {
+            try {
+                type = ContainerType.valueOf(typeName);
+            } catch (IllegalArgumentException ignored) {
+                // Unknown type (e.g. written by a newer version) - resolved from the block later
+            }
+        }
+
+        long partnerKey = ProtectionRecord.NO_PARTNER;
+        String partner = entry.get("partner");
+        if (partner != null) {
+            String[] coords = partner.split(",");
+            try {
+                partnerKey = BlockKey.pack(Integer.parseInt(coords[0]), Integer.parseInt(coords[1]), Integer.parseInt(coords[2]));
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                // Keep the primary block protected on its own rather than dropping the entry
+                plugin.getLogger().warning("[PrivateChest] Invalid partner location in " + name + " for " + key + ": " + partner);
+            }
+        }
+
+        long createdAt = 0L;
+        String created = entry.get("created");
+        if (created != null) {
+            try {
+                createdAt = Long.parseLong(created);
+            } catch (NumberFormatException ignored) {
+                // Treated as unknown, like data written before creation times were stored
+            }
+        }
+
+        int ownerId = OwnerRegistry.getInstance().getOrCreateId(owner);
+        return new ProtectionRecord(parts[0], blockKey, partnerKey, ownerId, password, customName, type, createdAt);
+    }
+}
@@ -1,26 +1,31 @@
 package me.tuplugin.privatechest.storage;
 
 import me.tuplugin.privatechest.PrivateChest;
-import org.bukkit.Bukkit;
-import org.bukkit.Location;
-import org.bukkit.World;
-import org.bukkit.configuration.ConfigurationSection;
-import org.bukkit.configuration.file.FileConfiguration;
-import org.bukkit.configuration.file.YamlConfiguration;
+import me.tuplugin.privatechest.ProtectionRecord;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.*;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * YAML-based storage implementation for chest data.
  * Uses the traditional data.yml file format.
+ *
+ * The file is streamed instead of loaded into a YamlConfiguration (see {@link YamlDataFile}),
+ * so memory stays flat however large data.yml grows.
+ *
+ * Methods are synchronized because the file is shared by the storage writer thread and world
+ * loads on the main thread.
  */
 public class YamlStorage implements DataStorage {
 
     private final PrivateChest plugin;
     private File dataFile;
-    private FileConfiguration dataConfig;
+    private YamlDataFile data;
+    private DurabilityPolicy durability;
 
     public YamlStorage(PrivateChest plugin) {
         this.plugin = plugin;
@@ -35,8 +40,8 @@ public class YamlStorage implements DataStorage {
                 dataFile.createNewFile();
                 plugin.getLogger().info("[PrivateChest] data.yml created.");
             }
-
-            dataConfig = YamlConfiguration.loadConfiguration(dataFile);
+            durability = DurabilityPolicy.fromConfig(plugin);
+            data = new YamlDataFile(plugin, dataFile, durability);
             return true;
         } catch (IOException e) {
             plugin.getLogger().severe("[PrivateChest] Failed to initialize YAML storage!");
@@ -46,56 +51,16 @@ public class YamlStorage implements DataStorage {
     }
 
     @Override
-    public boolean loadData(Map<Location, String> owners, Map<Location, String> passwords,
-                           Map<Location, String> containerNames, Map<String, Set<String>> trustRelations) {
+    public synchronized boolean loadData(Consumer<ProtectionRecord> records, Map<String, Set<String>> trustRelations) {
         try {
-            // Clear maps before loading to avoid duplicates
-            owners.clear();
-            passwords.clear();
-            if (containerNames != null) {
-                containerNames.clear();
-            }
+            // Clear trust map before loading to avoid duplicates
             if (trustRelations != null) {
                 trustRelations.clear();
             }
 
-            // Load chest data from YAML
-            ConfigurationSection chestsSection = dataConfig.getConfigurationSection("chests");
-            if (chestsSection != null) {
-                for (String key : chestsSection.getKeys(false)) {
-                    Location loc = deserializeLocation(key);
-                    String owner = dataConfig.getString("chests." + key + ".owner");
-                    String password = dataConfig.getString("chests." + key + ".password");
-
-                    if (loc != null && owner != null && password != null) {
-                        owners.put(loc, owner);
-                        passwords.put(loc, password);
-                        
-                        // Load container name if provided and exists
-                        if (containerNames != null) {
-                            String name = dataConfig.getString("chests." + key + ".name");
-                            if (name != null && !name.trim().isEmpty()) {
-                                containerNames.put(loc, name.trim());
-                            }
-                        }
-                    }
-                }
-            }
-            
-            // Load trust relationships if provided
-            if (trustRelations != null) {
-                ConfigurationSection trustSection = dataConfig.getConfigurationSection("trust");
-                if (trustSection != null) {
-                    for (String ownerUUID : trustSection.getKeys(false)) {
-                        List<String> trustedList = dataConfig.getStringList("trust." + ownerUUID);
-                        if (!trustedList.isEmpty()) {
-                            trustRelations.put(ownerUUID, new HashSet<>(trustedList));
-                        }
-                    }
-                }
-            }
+            int loaded = data.read(null, records, trustRelations);
 
-            plugin.getLogger().info("[PrivateChest] Loaded " + owners.size() + " locked chests from YAML storage.");
+            plugin.getLogger().info("[PrivateChest] Loaded " + loaded + " locked chests from YAML storage.");
             return true;
         } catch (Exception e) {
             plugin.getLogger().severe("[PrivateChest] Failed to load data from YAML storage!");
@@ -105,107 +70,180 @@ public class YamlStorage implements DataStorage {
     }
 
     @Override
-    public boolean saveData(Map<Location, String> owners, Map<Location, String> passwords,
-                           Map<Location, String> containerNames, Map<String, Set<String>> trustRelations) {
+    public synchronized boolean loadWorld(String worldName, Consumer<ProtectionRecord> records) {
         try {
-            // Clear existing data to avoid old entries
-            dataConfig.set("chests", null);
-            dataConfig.set("trust", null);
-
-            // Save chest data
-            for (Location loc : owners.keySet()) {
-                String path = serializeLocation(loc);
-                if (path != null) {
-                    dataConfig.set("chests." + path + ".owner", owners.get(loc));
-                    dataConfig.set("chests." + path + ".password", passwords.get(loc));
-                    
-                    // Save container name if provided and exists
-                    if (containerNames != null && containerNames.containsKey(loc)) {
-                        String name = containerNames.get(loc);
-                        if (name != null && !name.trim().isEmpty()) {
-                            dataConfig.set("chests." + path + ".name", name.trim());
-                        }
-                    }
-                }
-            }
-            
-            // Save trust relationships if provided
-            if (trustRelations != null && !trustRelations.isEmpty()) {
-                for (Map.Entry<String, Set<String>> entry : trustRelations.entrySet()) {
-                    String ownerUUID = entry.getKey();
-                    Set<String> trustedUUIDs = entry.getValue();
-                    if (!trustedUUIDs.isEmpty()) {
-                        dataConfig.set("trust." + ownerUUID, new ArrayList<>(trustedUUIDs));
-                    }
-                }
-            }
+            int loaded = data.read(worldName + ",", records, null);
 
-            dataConfig.save(dataFile);
+            plugin.getLogger().info("[PrivateChest] Loaded " + loaded + " locked chests for world '" + worldName + "' from YAML storage.");
             return true;
-        } catch (IOException e) {
-            plugin.getLogger().severe("[PrivateChest] Could not save data to YAML storage!");
+        } catch (Exception e) {
+            plugin.getLogger().severe("[PrivateChest] Failed to load world '" + worldName + "' from YAML storage!");
             e.printStackTrace();
             return false;
         }
     }
 
     @Override
-    public void close() {
-        // YAML doesn't require explicit closing
-        dataConfig = null;
-        dataFile = null;
-    }
+    public synchronized boolean saveData(Collection<ProtectionRecord> records, Set<String> worlds, Map<String, Set<String>> trustRelations) {
+        // Entries of the saved worlds are dropped, entries of other worlds are kept
+        YamlDataFile.Rewrite rewrite = new YamlDataFile.Rewrite(worlds == null ? key -> true : key -> {
+            int comma = key.indexOf(',');
+            return comma > 0 && worlds.contains(key.substring(0, comma));
+        }, trustRelations != null);
+
+        for (ProtectionRecord record : records) {
+            rewrite.chests.put(YamlDataFile.serializeKey(record), record);
+        }
+        if (trustRelations != null) {
+            rewrite.trust.putAll(trustRelations);
+        }
 
-    @Override
-    public String getStorageType() {
-        return "YAML";
+        try {
+            data.rewrite(rewrite);
+            durability.commit();
+            return true;
+        } catch (Exception e) {
+            plugin.getLogger().severe("[PrivateChest] Could not save data to YAML storage!");
+            e.printStackTrace();
+            return false;
+        }
     }
 
+    /**
+     * Streams data.yml into a new file with the changed entries replaced.
+     * The YAML format has no partial writes, so the file itself is still written in full.
+     */
     @Override
-    public boolean isReady() {
-        return dataFile != null && dataConfig != null;
-    }
+    public synchronized boolean applyChanges(ChangeSet changes) {
+        YamlDataFile.Rewrite rewrite = new YamlDataFile.Rewrite(key -> false, false);
+        for (ProtectionRecord record : changes.getRemovals()) {
+            rewrite.chests.put(YamlDataFile.serializeKey(record), null);
+        }
+        for (ProtectionRecord record : changes.getUpserts()) {
+            rewrite.chests.put(YamlDataFile.serializeKey(record), record);
+        }
+        rewrite.trust.putAll(changes.getTrustChanges());
 
-    // --- Helper Methods ---
+        try {
+            data.rewrite(rewrite);
+            durability.commit();
+            return true;
+        } catch (Exception e) {
+            plugin.getLogger().severe("[PrivateChest] Could not save data to YAML storage!");
+            e.printStackTrace();
+            return false;
+        }
+    }
 
     /**
-     * Serializes a Location to a String (world,x,y,z)
+     * Writes a new data.yml in a single pass instead of rewriting the file for every batch.
+     * The current file stays in place until {@link DataImport#finish()}.
      */
-    private String serializeLocation(Location loc) {
-        if (loc == null || loc.getWorld() == null) {
-            plugin.getLogger().warning("[PrivateChest] Attempted to save a null location or location with null world. Skipping.");
+    @Override
+    public DataImport beginImport() {
+        try {
+            return new StreamImport(data.newStreamWriter());
+        } catch (IOException e) {
+            plugin.getLogger().severe("[PrivateChest] Could not start writing YAML storage!");
+            e.printStackTrace();
             return null;
         }
-        return loc.getWorld().getName() + "," +
-                loc.getBlockX() + "," +
-                loc.getBlockY() + "," +
-                loc.getBlockZ();
     }
 
-    /**
-     * Deserializes a String to a Location (world,x,y,z)
-     */
-    private Location deserializeLocation(String str) {
-        String[] parts = str.split(",");
-        if (parts.length != 4) {
-            plugin.getLogger().warning("[PrivateChest] Malformed location string in data.yml: " + str);
-            return null;
+    private final class StreamImport implements DataImport {
+        private final YamlDataFile.StreamWriter writer;
+
+        StreamImport(YamlDataFile.StreamWriter writer) {
+            this.writer = writer;
         }
 
-        World world = Bukkit.getWorld(parts[0]);
-        if (world == null) {
-            plugin.getLogger().warning("[PrivateChest] World '" + parts[0] + "' not found for location in data.yml: " + str);
-            return null;
+        @Override
+        public boolean addRecords(Collection<ProtectionRecord> records) {
+            synchronized (YamlStorage.this) {
+                try {
+                    for (ProtectionRecord record : records) {
+                        writer.write(record);
+                    }
+                    return true;
+                } catch (IOException e) {
+                    plugin.getLogger().severe("[PrivateChest] Could not write data to YAML storage!");
+                    e.printStackTrace();
+                    return false;
+                }
+            }
         }
 
-        try {
-            int x = Integer.parseInt(parts[1]);
-            int y = Integer.parseInt(parts[2]);
-            int z = Integer.parseInt(parts[3]);
-            return new Location(world, x, y, z);
-        } catch (NumberFormatException e) {
-            plugin.getLogger().warning("[PrivateChest] Invalid number format in location from data.yml: " + str);
-            return null;
+        @Override
+        public boolean addTrust(Map<String, Set<String>> trustRelations) {
+            synchronized (YamlStorage.this) {
+                try {
+                    for (Map.Entry<String, Set<String>> entry : trustRelations.entrySet()) {
+                        writer.writeTrust(entry.getKey(), entry.getValue());
+                    }
+                    return true;
+                } catch (IOException e) {
+                    plugin.getLogger().severe("[PrivateChest] Could not write data to YAML storage!");
+                    e.printStackTrace();
+                    return false;
+                }
+            }
+        }
+
+        @Override
+        public boolean finish() {
+            synchronized (YamlStorage.this) {
+                try {
+                    writer.commit();
+                    durability.commit();
+                    return true;
+                } catch (IOException e) {
+                    plugin.getLogger().severe("[PrivateChest] Could not save data to YAML storage!");
+                    e.printStackTrace();
+                    return false;
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                plugin.getLogger().warning("[PrivateChest] Error discarding YAML import: " + e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if (durability != null) {
+            try {
+                durability.flush();
+            } catch (IOException e) {
+                plugin.getLogger().warning("[PrivateChest] Error syncing YAML storage: " + e.getMessage());
+            }
         }
+        dataFile = null;
+        data = null;
+    }
+
+    @Override
+    public DurabilityPolicy getDurability() {
+        return durability;
+    }
+
+    @Override
+    public long getLastModified() {
+        return dataFile != null ? dataFile.lastModified() : 0L;
+    }
+
+    @Override
+    public String getStorageType() {
+        return "YAML";
+    }
+
+    @Override
+    public boolean isReady() {
+        return dataFile != null;
     }
-}
\ No newline at end of file
+}
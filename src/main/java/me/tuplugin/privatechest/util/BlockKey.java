@@ -0,0 +1,86 @@
+package me.tuplugin.privatechest.util;
+
+/**
+ * Packs block and chunk coordinates into primitive long keys.
+ * Used by the protection index so lookups never have to allocate
+ * a Location or hash doubles and a World reference.
+ *
+ * Layout (same as vanilla BlockPos): 26 bits X, 26 bits Z, 12 bits Y.
+ * This covers the full world border and the extended 1.18+ height range.
+ *
+ * @since 2.4
+ */
+public final class BlockKey {
+
+    private static final long XZ_MASK = 0x3FFFFFFL;
+    private static final long Y_MASK = 0xFFFL;
+
+    private BlockKey() {
+        // Utility class - prevent instantiation
+    }
+
+    /**
+     * Packs block coordinates into a long key.
+     *
+     * @param x Block X coordinate
+     * @param y Block Y coordinate
+     * @param z Block Z coordinate
+     * @return The packed key
+     */
+    public static long pack(int x, int y, int z) {
+        return ((x & XZ_MASK) << 38) | ((z & XZ_MASK) << 12) | (y & Y_MASK);
+    }
+
+    /**
+     * Extracts the X coordinate from a packed key.
+     */
+    public static int x(long key) {
+        return (int) (key >> 38);
+    }
+
+    /**
+     * Extracts the Y coordinate from a packed key.
+     */
+    public static int y(long key) {
+        return (int) (key << 52 >> 52);
+    }
+
+    /**
+     * Extracts the Z coordinate from a packed key.
+     */
+    public static int z(long key) {
+        return (int) (key << 26 >> 38);
+    }
+
+    /**
+     * Packs chunk coordinates into a long key (X in the low 32 bits, Z in the high 32 bits).
+     *
+     * @param chunkX Chunk X coordinate
+     * @param chunkZ Chunk Z coordinate
+     * @return The packed chunk key
+     */
+    public static long chunk(int chunkX, int chunkZ) {
+        return (chunkX & 0xFFFFFFFFL) | ((long) chunkZ << 32);
+    }
+
+    /**
+     * Gets the packed chunk key of the chunk containing a packed block key.
+     */
+    public static long chunkOf(long blockKey) {
+        return chunk(x(blockKey) >> 4, z(blockKey) >> 4);
+    }
+
+    /**
+     * Extracts the chunk X coordinate from a packed chunk key.
+     */
+    public static int chunkX(long chunkKey) {
+        return (int) chunkKey;
+    }
+
+    /**
+     * Extracts the chunk Z coordinate from a packed chunk key.
+     */
+    public static int chunkZ(long chunkKey) {
+        return (int) (chunkKey >> 32);
+    }
+}
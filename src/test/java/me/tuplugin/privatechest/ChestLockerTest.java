@@ -0,0 +1,181 @@
+package me.tuplugin.privatechest;
+
+import me.tuplugin.privatechest.enums.ContainerType;
+import me.tuplugin.privatechest.util.BlockKey;
+import org.bukkit.World;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unloading and reloading a chunk or world before the writer saves the change journal: storage
+ * still returns the old state, and the journaled one has to win.
+ */
+public class ChestLockerTest {
+
+    private static final String WORLD = "world";
+
+    private final String owner = UUID.randomUUID().toString();
+    private ChestLocker chestLocker;
+    private int ownerId;
+
+    @Before
+    public void setUp() {
+        // The plugin is only used to log lock and unlock failures
+        chestLocker = new ChestLocker(null);
+        ownerId = OwnerRegistry.getInstance().getOrCreateId(owner);
+    }
+
+    @Test
+    public void lockSurvivesChunkReloadBeforeSave() {
+        chestLocker.setLazyLoading(true);
+        chestLocker.bindWorld(WORLD);
+        cache(Collections.<ProtectionRecord>emptyList());
+        ProtectionRecord locked = lock(record(1, 64, 1));
+
+        chestLocker.evictChunk(WORLD, 0, 0);
+        assertEquals(Collections.emptyList(), chestLocker.getAllProtections());
+        // Not saved yet, so storage has nothing for the chunk
+        cache(Collections.<ProtectionRecord>emptyList());
+
+        assertEquals(Collections.singletonList(locked), chestLocker.getAllProtections());
+        assertEquals(Collections.singletonList(locked), chestLocker.getProtectionsOwnedBy(ownerId));
+        assertEquals(1, chestLocker.getProtectionCount(ownerId));
+    }
+
+    @Test
+    public void unlockSurvivesChunkReloadBeforeSave() {
+        chestLocker.setLazyLoading(true);
+        chestLocker.bindWorld(WORLD);
+        chestLocker.addOwnerCount(owner, ContainerType.CHEST, 1);
+        ProtectionRecord stored = record(1, 64, 1);
+        cache(Collections.singletonList(stored));
+        chestLocker.removeProtection(stored);
+
+        chestLocker.evictChunk(WORLD, 0, 0);
+        // Not saved yet, so storage still returns the removed protection
+        cache(Collections.singletonList(record(1, 64, 1)));
+
+        assertEquals(Collections.emptyList(), chestLocker.getAllProtections());
+        assertEquals(0, chestLocker.getProtectionCount(ownerId));
+        assertFalse(chestLocker.hasProtections(ownerId));
+    }
+
+    @Test
+    public void journaledDoubleChestReplacesStoredHalfOnChunkReload() {
+        chestLocker.setLazyLoading(true);
+        chestLocker.bindWorld(WORLD);
+        cache(Collections.<ProtectionRecord>emptyList());
+        ProtectionRecord pair = lock(new ProtectionRecord(WORLD, BlockKey.pack(1, 64, 1), BlockKey.pack(2, 64, 1),
+                ownerId, "hash", null, ContainerType.CHEST, 0L));
+
+        chestLocker.evictChunk(WORLD, 0, 0);
+        // Storage still has the single chest that was extended into the pair
+        cache(Collections.singletonList(record(2, 64, 1)));
+
+        assertEquals(Collections.singletonList(pair), chestLocker.getAllProtections());
+        assertEquals(2, chestLocker.getProtectionCount(ownerId));
+    }
+
+    @Test
+    public void worldReloadBeforeSaveKeepsJournaledChanges() {
+        chestLocker.bindWorld(WORLD);
+        ProtectionRecord unlocked = record(1, 64, 1);
+        chestLocker.addStoredProtections(WORLD, Collections.singletonList(unlocked));
+        chestLocker.removeProtection(unlocked);
+        ProtectionRecord locked = lock(record(5, 64, 5));
+
+        chestLocker.releaseWorld(WORLD);
+        assertEquals(1, chestLocker.getProtectionCount(ownerId));
+        chestLocker.bindWorld(WORLD);
+        List<ProtectionRecord> stale = new ArrayList<>();
+        stale.add(record(1, 64, 1));
+        chestLocker.addStoredProtections(WORLD, stale);
+
+        assertEquals(Collections.singletonList(locked), chestLocker.getAllProtections());
+        assertEquals(1, chestLocker.getProtectionCount(ownerId));
+    }
+
+    @Test
+    public void savedChangesAreReadFromStorage() {
+        chestLocker.setLazyLoading(true);
+        chestLocker.bindWorld(WORLD);
+        cache(Collections.<ProtectionRecord>emptyList());
+        lock(record(1, 64, 1));
+        chestLocker.drainChanges(new ArrayList<ProtectionRecord>(), new ArrayList<ProtectionRecord>());
+
+        chestLocker.evictChunk(WORLD, 0, 0);
+        ProtectionRecord stored = record(1, 64, 1);
+        cache(Collections.singletonList(stored));
+
+        assertEquals(Collections.singletonList(stored), chestLocker.getAllProtections());
+    }
+
+    @Test
+    public void chunkCountsAsProtectedUntilCached() {
+        chestLocker.setLazyLoading(true);
+        chestLocker.bindWorld(WORLD);
+        World world = world();
+        assertTrue(chestLocker.markChunkPending(WORLD, 0, 0));
+
+        assertTrue(chestLocker.isProtectionPending(world, 5, 5));
+        assertTrue(chestLocker.mayBeProtected(world, 5, 5));
+        // The other half of a double chest can be across the border
+        assertTrue(chestLocker.isProtectionPending(world, 16, 5));
+        assertFalse(chestLocker.isProtectionPending(world, 20, 5));
+
+        chestLocker.cacheChunk(WORLD, 0, 0, Collections.<ProtectionRecord>emptyList());
+        assertFalse(chestLocker.isProtectionPending(world, 5, 5));
+        assertFalse(chestLocker.mayBeProtected(world, 5, 5));
+        assertFalse(chestLocker.markChunkPending(WORLD, 0, 0));
+    }
+
+    @Test
+    public void chunkUnloadedWhileReadIsNotCached() {
+        chestLocker.setLazyLoading(true);
+        chestLocker.bindWorld(WORLD);
+        chestLocker.markChunkPending(WORLD, 0, 0);
+
+        chestLocker.evictChunk(WORLD, 0, 0);
+        chestLocker.cacheChunk(WORLD, 0, 0, Collections.singletonList(record(1, 64, 1)));
+
+        assertFalse(chestLocker.isChunkPending(WORLD, 0, 0));
+        assertFalse(chestLocker.isChunkCached(WORLD, 0, 0));
+        assertEquals(Collections.emptyList(), chestLocker.getAllProtections());
+    }
+
+    /**
+     * Caches chunk 0, 0 the way DataManager does once its protections are read.
+     */
+    private void cache(List<ProtectionRecord> records) {
+        chestLocker.markChunkPending(WORLD, 0, 0);
+        chestLocker.cacheChunk(WORLD, 0, 0, records);
+    }
+
+    private static World world() {
+        return (World) Proxy.newProxyInstance(World.class.getClassLoader(), new Class<?>[]{World.class},
+                (proxy, method, args) -> method.getName().equals("getName") ? WORLD : null);
+    }
+
+    /**
+     * Same as {@link ChestLocker#lockChest}, without the block and player it reads the record from.
+     */
+    private ProtectionRecord lock(ProtectionRecord record) {
+        assertTrue(chestLocker.addProtection(record));
+        chestLocker.markChanged(record);
+        return record;
+    }
+
+    private ProtectionRecord record(int x, int y, int z) {
+        return new ProtectionRecord(WORLD, BlockKey.pack(x, y, z), ownerId, "hash", null, ContainerType.CHEST, 0L);
+    }
+}
@@ -0,0 +1,337 @@
+package me.tuplugin.privatechest.storage;
+
+import me.tuplugin.privatechest.OwnerRegistry;
+import me.tuplugin.privatechest.PrivateChest;
+import me.tuplugin.privatechest.ProtectionRecord;
+import me.tuplugin.privatechest.enums.ContainerType;
+import me.tuplugin.privatechest.util.BlockKey;
+import org.bukkit.Server;
+import org.bukkit.plugin.PluginDescriptionFile;
+import org.bukkit.plugin.java.JavaPluginLoader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs {@link MySqlStorage} against an in-memory H2 database in MySQL mode, which accepts
+ * the same SQL as MySQL and MariaDB (see the storage's class comment).
+ */
+public class MySqlStorageTest {
+
+    private static final AtomicInteger DATABASES = new AtomicInteger();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private String url;
+    private PrivateChest plugin;
+    private final List<MySqlStorage> storages = new ArrayList<>();
+
+    private final String owner = UUID.randomUUID().toString();
+    private final String trusted = UUID.randomUUID().toString();
+
+    @Before
+    public void setUp() throws Exception {
+        // A fresh database per test; DB_CLOSE_DELAY keeps it alive between the pool's connections
+        url = "jdbc:h2:mem:privatechest" + DATABASES.incrementAndGet() + ";MODE=MySQL;DB_CLOSE_DELAY=-1";
+        plugin = createPlugin(folder.newFolder("PrivateChest"));
+        plugin.getConfig().set("mysql.url", url);
+        plugin.getConfig().set("mysql.username", "sa");
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        for (MySqlStorage storage : storages) {
+            storage.close();
+        }
+        try (Connection connection = connect(); Statement stmt = connection.createStatement()) {
+            stmt.execute("SHUTDOWN");
+        }
+    }
+
+    @Test
+    public void initializeCreatesTheCurrentSchema() throws SQLException {
+        MySqlStorage storage = open();
+
+        assertTrue(storage.isReady());
+        assertEquals(2, querySchemaVersion());
+        assertEquals(0, count("privatechest_protections"));
+        assertEquals(0, count("privatechest_changes"));
+    }
+
+    @Test
+    public void initializeUpgradesAnOlderSchema() throws SQLException {
+        // Version 1 had no change log
+        try (Connection connection = connect(); Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE TABLE privatechest_schema_version (version INT NOT NULL)");
+            stmt.execute("INSERT INTO privatechest_schema_version (version) VALUES (1)");
+            stmt.execute("CREATE TABLE privatechest_worlds (id INT NOT NULL AUTO_INCREMENT, name VARCHAR(128) NOT NULL, "
+                    + "PRIMARY KEY (id), CONSTRAINT privatechest_worlds_name UNIQUE (name))");
+            stmt.execute("CREATE TABLE privatechest_protections (world_id INT NOT NULL, chunk BIGINT NOT NULL, "
+                    + "block_key BIGINT NOT NULL, partner_chunk BIGINT NULL, partner_key BIGINT NULL, owner VARCHAR(36) NOT NULL, "
+                    + "password VARCHAR(255) NOT NULL, type VARCHAR(32) NULL, name VARCHAR(255) NULL, "
+                    + "created BIGINT NOT NULL DEFAULT 0, PRIMARY KEY (world_id, chunk, block_key))");
+            stmt.execute("CREATE TABLE privatechest_trust (owner VARCHAR(36) NOT NULL, trusted VARCHAR(36) NOT NULL, "
+                    + "PRIMARY KEY (owner, trusted))");
+            stmt.execute("INSERT INTO privatechest_worlds (name) VALUES ('world')");
+            stmt.execute("INSERT INTO privatechest_protections (world_id, chunk, block_key, owner, password) VALUES (1, "
+                    + BlockKey.chunkOf(BlockKey.pack(1, 64, 1)) + ", " + BlockKey.pack(1, 64, 1) + ", '" + owner + "', 'hash')");
+        }
+
+        MySqlStorage storage = open();
+
+        assertEquals(2, querySchemaVersion());
+        assertEquals(0, count("privatechest_changes"));
+        List<ProtectionRecord> loaded = new ArrayList<>();
+        assertTrue(storage.loadData(loaded::add, null));
+        assertEquals(1, loaded.size());
+        assertEquals("hash", loaded.get(0).getPasswordHash());
+    }
+
+    @Test
+    public void applyChangesUpsertsAndDeletes() {
+        MySqlStorage storage = open();
+        ProtectionRecord single = record("world", 10, 64, 10, "first");
+        ProtectionRecord pair = new ProtectionRecord("world", BlockKey.pack(20, 64, 20), BlockKey.pack(21, 64, 20),
+                ownerId(), "hash", "Loot", ContainerType.CHEST, 1234L);
+
+        assertTrue(storage.applyChanges(upserts(single, pair)));
+        // Same block with a new password replaces the row
+        assertTrue(storage.applyChanges(upserts(record("world", 10, 64, 10, "second"))));
+
+        Map<Long, ProtectionRecord> loaded = loadAll(storage);
+        assertEquals(2, loaded.size());
+        assertEquals("second", loaded.get(single.getBlockKey()).getPasswordHash());
+        ProtectionRecord loadedPair = loaded.get(pair.getBlockKey());
+        assertEquals(pair.getPartnerKey(), loadedPair.getPartnerKey());
+        assertEquals(owner, loadedPair.getOwnerUUID());
+        assertEquals("Loot", loadedPair.getName());
+        assertEquals(ContainerType.CHEST, loadedPair.getType());
+        assertEquals(1234L, loadedPair.getCreatedAt());
+
+        assertTrue(storage.applyChanges(new ChangeSet(Collections.<ProtectionRecord>emptyList(),
+                Collections.singletonList(single), Collections.<String, Set<String>>emptyMap())));
+
+        loaded = loadAll(storage);
+        assertEquals(1, loaded.size());
+        assertTrue(loaded.containsKey(pair.getBlockKey()));
+    }
+
+    @Test
+    public void loadWorldOnlyReadsThatWorld() {
+        MySqlStorage storage = open();
+        assertTrue(storage.applyChanges(upserts(record("world", 1, 64, 1, "hash"), record("world", 2, 64, 2, "hash"),
+                record("world_nether", 1, 64, 1, "hash"))));
+
+        List<ProtectionRecord> world = new ArrayList<>();
+        assertTrue(storage.loadWorld("world", world::add));
+        assertEquals(2, world.size());
+        for (ProtectionRecord record : world) {
+            assertEquals("world", record.getWorld());
+        }
+
+        List<ProtectionRecord> nether = new ArrayList<>();
+        assertTrue(storage.loadWorld("world_nether", nether::add));
+        assertEquals(1, nether.size());
+
+        List<ProtectionRecord> unknown = new ArrayList<>();
+        assertTrue(storage.loadWorld("world_the_end", unknown::add));
+        assertTrue(unknown.isEmpty());
+    }
+
+    @Test
+    public void trustRelationsRoundTrip() {
+        MySqlStorage storage = open();
+        String other = UUID.randomUUID().toString();
+
+        assertTrue(storage.applyChanges(trust(owner, trusted, other)));
+        assertEquals(new HashSet<>(Arrays.asList(trusted, other)), loadTrust(storage).get(owner));
+
+        // A change carries the owner's complete set, so it replaces the stored one
+        assertTrue(storage.applyChanges(trust(owner, other)));
+        assertEquals(Collections.singleton(other), loadTrust(storage).get(owner));
+
+        assertTrue(storage.applyChanges(trust(owner)));
+        assertFalse(loadTrust(storage).containsKey(owner));
+    }
+
+    @Test
+    public void pollChangesReportsOtherServersOnly() {
+        MySqlStorage local = open();
+        MySqlStorage remote = open();
+        ProtectionRecord record = record("world", 5, 64, 5, "hash");
+
+        assertTrue(remote.applyChanges(upserts(record)));
+        assertTrue(remote.applyChanges(trust(owner, trusted)));
+
+        Changes changes = poll(local);
+        assertEquals(1, changes.protections.size());
+        assertEquals("hash", changes.protections.get(record.getBlockKey()).getPasswordHash());
+        assertEquals(Collections.singleton(trusted), changes.trust.get(owner));
+
+        // Nothing new, and a server never sees its own saves
+        assertTrue(poll(local).isEmpty());
+        assertTrue(poll(remote).isEmpty());
+
+        assertTrue(remote.applyChanges(new ChangeSet(Collections.<ProtectionRecord>emptyList(),
+                Collections.singletonList(record), Collections.<String, Set<String>>emptyMap())));
+        changes = poll(local);
+        assertTrue(changes.protections.containsKey(record.getBlockKey()));
+        assertNull(changes.protections.get(record.getBlockKey()));
+    }
+
+    @Test
+    public void pollChangesPicksUpSkippedSequenceNumbers() throws SQLException {
+        MySqlStorage local = open();
+        MySqlStorage remote = open();
+        ProtectionRecord first = record("world", 1, 64, 1, "hash");
+        ProtectionRecord late = record("world", 2, 64, 2, "hash");
+        assertTrue(remote.applyChanges(upserts(first)));
+        assertEquals(1, poll(local).protections.size());
+
+        // A save whose sequence number was assigned first but committed after a later one
+        long seq = queryLastSeq();
+        assertTrue(remote.applyChanges(upserts(late)));
+        try (Connection connection = connect(); Statement stmt = connection.createStatement()) {
+            stmt.execute("UPDATE privatechest_changes SET seq = " + (seq + 2) + " WHERE seq = " + (seq + 1));
+        }
+
+        Changes changes = poll(local);
+        assertEquals(Collections.singleton(late.getBlockKey()), changes.protections.keySet());
+
+        try (Connection connection = connect(); Statement stmt = connection.createStatement()) {
+            stmt.execute("INSERT INTO privatechest_changes (seq, server, kind, world_id, block_key, changed_at) "
+                    + "SELECT " + (seq + 1) + ", 'other', 0, world_id, " + first.getBlockKey() + ", 0 FROM privatechest_changes WHERE seq = " + (seq + 2));
+        }
+
+        changes = poll(local);
+        assertEquals(Collections.singleton(first.getBlockKey()), changes.protections.keySet());
+        assertTrue(poll(local).isEmpty());
+    }
+
+    // --- Helpers ---
+
+    /**
+     * A plugin instance outside a server: only its config, data folder and logger are used by the storage.
+     */
+    private static PrivateChest createPlugin(File dataFolder) {
+        Server server = (Server) Proxy.newProxyInstance(Server.class.getClassLoader(), new Class<?>[]{Server.class},
+                (proxy, method, args) -> method.getName().equals("getLogger") ? Logger.getLogger("Minecraft") : null);
+        @SuppressWarnings("deprecation")
+        JavaPluginLoader loader = new JavaPluginLoader(server);
+        PluginDescriptionFile description = new PluginDescriptionFile("PrivateChest", "test", PrivateChest.class.getName());
+        return new PrivateChest(loader, description, dataFolder, new File(dataFolder, "PrivateChest.jar")) { };
+    }
+
+    private MySqlStorage open() {
+        MySqlStorage storage = new MySqlStorage(plugin);
+        assertTrue(storage.initialize());
+        storages.add(storage);
+        return storage;
+    }
+
+    private Connection connect() throws SQLException {
+        return DriverManager.getConnection(url, "sa", "");
+    }
+
+    private int querySchemaVersion() throws SQLException {
+        return queryInt("SELECT MAX(version) FROM privatechest_schema_version");
+    }
+
+    private long queryLastSeq() throws SQLException {
+        return queryInt("SELECT MAX(seq) FROM privatechest_changes");
+    }
+
+    private int count(String table) throws SQLException {
+        return queryInt("SELECT COUNT(*) FROM " + table);
+    }
+
+    private int queryInt(String sql) throws SQLException {
+        try (Connection connection = connect(); Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            assertTrue(rs.next());
+            return rs.getInt(1);
+        }
+    }
+
+    private int ownerId() {
+        return OwnerRegistry.getInstance().getOrCreateId(owner);
+    }
+
+    private ProtectionRecord record(String world, int x, int y, int z, String passwordHash) {
+        return new ProtectionRecord(world, BlockKey.pack(x, y, z), ownerId(), passwordHash, null, ContainerType.BARREL, 0L);
+    }
+
+    private static ChangeSet upserts(ProtectionRecord... records) {
+        return new ChangeSet(Arrays.asList(records), Collections.<ProtectionRecord>emptyList(),
+                Collections.<String, Set<String>>emptyMap());
+    }
+
+    private static ChangeSet trust(String owner, String... trusted) {
+        return new ChangeSet(Collections.<ProtectionRecord>emptyList(), Collections.<ProtectionRecord>emptyList(),
+                Collections.<String, Set<String>>singletonMap(owner, new HashSet<>(Arrays.asList(trusted))));
+    }
+
+    private static Map<Long, ProtectionRecord> loadAll(MySqlStorage storage) {
+        Map<Long, ProtectionRecord> records = new HashMap<>();
+        assertTrue(storage.loadData(record -> records.put(record.getBlockKey(), record), null));
+        return records;
+    }
+
+    private static Map<String, Set<String>> loadTrust(MySqlStorage storage) {
+        Map<String, Set<String>> trustRelations = new HashMap<>();
+        assertTrue(storage.loadData(record -> { }, trustRelations));
+        return trustRelations;
+    }
+
+    private static Changes poll(MySqlStorage storage) {
+        Changes changes = new Changes();
+        assertTrue(storage.pollChanges(changes));
+        return changes;
+    }
+
+    private static final class Changes implements SharedDataStorage.RemoteChangeConsumer {
+        private final Map<Long, ProtectionRecord> protections = new HashMap<>();
+        private final Map<String, Set<String>> trust = new HashMap<>();
+
+        @Override
+        public void protectionChanged(String worldName, long blockKey, ProtectionRecord current) {
+            protections.put(blockKey, current);
+        }
+
+        @Override
+        public void trustChanged(String ownerUUID, Set<String> trusted) {
+            trust.put(ownerUUID, trusted);
+        }
+
+        boolean isEmpty() {
+            return protections.isEmpty() && trust.isEmpty();
+        }
+    }
+}